@@ -2,7 +2,13 @@ package io.reactivesocket.aeron.client;
 
 import io.reactivesocket.DuplexConnection;
 import io.reactivesocket.Frame;
+import io.reactivesocket.aeron.internal.ConnectionLatency;
+import io.reactivesocket.aeron.internal.LatencyMetrics;
 import io.reactivesocket.aeron.internal.Loggable;
+import io.reactivesocket.aeron.internal.MetadataDictionary;
+import io.reactivesocket.aeron.internal.ResumeState;
+import io.reactivesocket.aeron.internal.SessionLiveness;
+import io.reactivesocket.aeron.internal.TransportCounters;
 import io.reactivesocket.rx.Completable;
 import io.reactivesocket.rx.Disposable;
 import io.reactivesocket.rx.Observable;
@@ -12,17 +18,24 @@ import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import uk.co.real_logic.aeron.Publication;
 import uk.co.real_logic.agrona.concurrent.AbstractConcurrentArrayQueue;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
 
 import java.io.IOException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 public class AeronClientDuplexConnection implements DuplexConnection, Loggable {
+    private static final AtomicCounter FRAMES_QUEUED = TransportCounters.getInstance().newCounter("client: frames queued");
 
-    private final Publication publication;
+    private volatile Publication publication;
+    private volatile boolean suspended;
     private final CopyOnWriteArrayList<Observer<Frame>> subjects;
     private final AbstractConcurrentArrayQueue<FrameHolder> frameSendQueue;
     private final Consumer<Publication> onClose;
+    private final ResumeState resumeState;
+    private final ConnectionLatency latency;
+    private SessionLiveness liveness;
+    private MetadataDictionary metadataDictionary;
 
     public AeronClientDuplexConnection(
         Publication publication,
@@ -32,6 +45,8 @@ public class AeronClientDuplexConnection implements DuplexConnection, Loggable {
         this.subjects = new CopyOnWriteArrayList<>();
         this.frameSendQueue = frameSendQueue;
         this.onClose = onClose;
+        this.resumeState = new ResumeState();
+        this.latency = LatencyMetrics.getInstance().newConnection("client session " + publication.sessionId());
     }
 
     @Override
@@ -77,11 +92,12 @@ public class AeronClientDuplexConnection implements DuplexConnection, Loggable {
                         trace("onNext subscription => {} and frame => {}", s.toString(), frame.toString());
                     }
 
-                    final FrameHolder fh = FrameHolder.get(frame, publication, s);
+                    final FrameHolder fh = FrameHolder.get(frame, AeronClientDuplexConnection.this, s);
                     boolean offer;
                     do {
                         offer = frameSendQueue.offer(fh);
                     } while (!offer);
+                    FRAMES_QUEUED.orderedIncrement();
                 }
 
                 @Override
@@ -98,12 +114,72 @@ public class AeronClientDuplexConnection implements DuplexConnection, Loggable {
 
     @Override
     public void close() throws IOException {
+        LatencyMetrics.getInstance().remove(latency);
         onClose.accept(publication);
     }
 
+    public Publication getPublication() {
+        return publication;
+    }
+
+    /**
+     * The state used to resume the connection's session. Apart from the token, only used from the client's
+     * polling thread.
+     */
+    ResumeState getResumeState() {
+        return resumeState;
+    }
+
+    /**
+     * The latency histograms of the connection. Only recorded from the client's polling thread.
+     */
+    public ConnectionLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return true while the connection's publication is closed and the session is waiting to be resumed. Frames
+     * sent meanwhile are kept in the replay buffer and sent once it has been resumed.
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    void suspend() {
+        suspended = true;
+    }
+
+    void resume(Publication publication) {
+        this.publication = publication;
+        suspended = false;
+    }
+
     public CopyOnWriteArrayList<Observer<Frame>> getSubjects() {
         return subjects;
     }
 
+    /**
+     * The liveness of the server, or null if it isn't tracked. Only used from the client's polling thread.
+     */
+    SessionLiveness getLiveness() {
+        return liveness;
+    }
+
+    void setLiveness(SessionLiveness liveness) {
+        this.liveness = liveness;
+    }
+
+    /**
+     * The table of metadata sent on the connection, or null if the server didn't agree to one. Only used from the
+     * client's polling thread.
+     */
+    MetadataDictionary getMetadataDictionary() {
+        return metadataDictionary;
+    }
+
+    void setMetadataDictionary(MetadataDictionary metadataDictionary) {
+        this.metadataDictionary = metadataDictionary;
+    }
+
 
 }
@@ -1,10 +1,22 @@
 package io.reactivesocket.aeron.client;
 
 import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
 import io.reactivesocket.aeron.internal.AeronUtil;
+import io.reactivesocket.aeron.internal.ConnectionLatency;
 import io.reactivesocket.aeron.internal.Constants;
+import io.reactivesocket.aeron.internal.EventCode;
+import io.reactivesocket.aeron.internal.EventLog;
+import io.reactivesocket.aeron.internal.LatencyStage;
+import io.reactivesocket.aeron.internal.LatencyStamp;
 import io.reactivesocket.aeron.internal.Loggable;
 import io.reactivesocket.aeron.internal.MessageType;
+import io.reactivesocket.aeron.internal.MetadataDictionary;
+import io.reactivesocket.aeron.internal.NotConnectedException;
+import io.reactivesocket.aeron.internal.ResumeState;
+import io.reactivesocket.aeron.internal.SessionLiveness;
+import io.reactivesocket.aeron.internal.TimedOutException;
+import io.reactivesocket.aeron.internal.TransportCounters;
 import io.reactivesocket.rx.Observer;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -13,14 +25,19 @@ import uk.co.real_logic.aeron.logbuffer.FragmentHandler;
 import uk.co.real_logic.aeron.logbuffer.Header;
 import uk.co.real_logic.agrona.BitUtil;
 import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.MutableDirectBuffer;
+import uk.co.real_logic.agrona.collections.Int2ObjectHashMap;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
 import uk.co.real_logic.agrona.concurrent.ManyToManyConcurrentArrayQueue;
+import uk.co.real_logic.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
 import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -28,51 +45,307 @@ import java.util.function.Consumer;
 import static io.reactivesocket.aeron.internal.Constants.SERVER_STREAM_ID;
 
 public final class AeronClientDuplexConnectionFactory implements Loggable {
-    private static final AeronClientDuplexConnectionFactory instance = new AeronClientDuplexConnectionFactory();
+    private static final AeronUtil.BufferFiller DISCONNECT = (offset, buffer) -> {
+        buffer.putShort(offset, (short) 0);
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.CONNECTION_DISCONNECT.getEncodedType());
+    };
 
-    private static ThreadLocal<UnsafeBuffer> buffers = ThreadLocal.withInitial(() -> new UnsafeBuffer(Constants.EMTPY));
+    private static final AeronClientDuplexConnectionFactory instance = new AeronClientDuplexConnectionFactory();
 
-    private final ConcurrentSkipListMap<Integer, AeronClientDuplexConnection> connections;
+    /**
+     * Connections by server session id. Only used from the polling thread.
+     */
+    private final Int2ObjectHashMap<AeronClientDuplexConnection> connections;
 
     private final ManyToManyConcurrentArrayQueue<FrameHolder> frameSendQueue = new ManyToManyConcurrentArrayQueue<>(Constants.QUEUE_SIZE);
 
     private final ConcurrentHashMap<Integer, EstablishConnectionHolder> establishConnectionHolders;
 
+    private final ManyToOneConcurrentLinkedQueue<Publication> closingPublications = new ManyToOneConcurrentLinkedQueue<>();
+
+    /**
+     * Publications of suspended connections, which are closed without telling the server so it keeps the session,
+     * and of handshakes that failed.
+     */
+    private final ManyToOneConcurrentLinkedQueue<Publication> suspendedPublications = new ManyToOneConcurrentLinkedQueue<>();
+
+    /**
+     * Publications being closed in the current duty cycle. Only used from the polling thread.
+     */
+    private final ArrayList<Publication> closingBatch = new ArrayList<>();
+
+    private final ManyToOneConcurrentLinkedQueue<Handshake> handshakes = new ManyToOneConcurrentLinkedQueue<>();
+
+    /**
+     * Handshakes that haven't been offered yet, retried every duty cycle. Only used from the polling thread.
+     */
+    private final ArrayList<Handshake> pendingHandshakes = new ArrayList<>();
+
+    /**
+     * Disconnect messages that haven't been sent yet, retried every duty cycle until they time out. Only used from
+     * the polling thread.
+     */
+    private final ArrayList<Disconnect> pendingDisconnects = new ArrayList<>();
+
+    private final Consumer<FrameHolder> frameSender = this::sendFrame;
+
+    private final AeronUtil.BufferFiller frameWriter = this::writeFrame;
+
+    /**
+     * The frame being written by the frameWriter, and what it writes with it. Only used from the polling thread.
+     */
+    private FrameHolder sending;
+
+    private short sendingSequence;
+
+    private MetadataDictionary sendingDictionary;
+
+    private long sendingClaimStartNs;
+
     private final ClientAeronManager manager;
 
+    private final AtomicCounter frameSendQueueDepth;
+
+    private final AtomicCounter framesSent;
+
+    private final AtomicCounter framesNotSent;
+
+    private final AtomicCounter metadataIndexed;
+
+    private final AtomicCounter metadataBytesSaved;
+
+    private final AtomicCounter framesReceived;
+
+    private final AtomicCounter connectionsEstablished;
+
+    private final AtomicCounter activeConnections;
+
+    private final AtomicCounter connectionsResumed;
+
     private AeronClientDuplexConnectionFactory() {
-        connections = new ConcurrentSkipListMap<>();
+        connections = new Int2ObjectHashMap<>();
         establishConnectionHolders = new ConcurrentHashMap<>();
         manager = ClientAeronManager.getInstance();
 
+        final TransportCounters counters = TransportCounters.getInstance();
+        frameSendQueueDepth = counters.newCounter("client: frame send queue depth");
+        framesSent = counters.newCounter("client: frames sent");
+        framesNotSent = counters.newCounter("client: frames not sent");
+        metadataIndexed = counters.newCounter("client: metadata sent as dictionary ids");
+        metadataBytesSaved = counters.newCounter("client: metadata bytes saved");
+        framesReceived = counters.newCounter("client: frames received");
+        connectionsEstablished = counters.newCounter("client: connections established");
+        activeConnections = counters.newCounter("client: active connections");
+        connectionsResumed = counters.newCounter("client: connections resumed");
+
         manager.addClientAction(() -> {
-            final boolean traceEnabled = isTraceEnabled();
-            frameSendQueue
-                .drain(fh -> {
-                    final Frame frame = fh.getFrame();
-                    final ByteBuffer byteBuffer = frame.getByteBuffer();
-                    final Publication publication = fh.getPublication();
-                    final int length = frame.length() + BitUtil.SIZE_OF_INT;
-
-                    // Can release the FrameHolder at this point as we got everything we need
-                    fh.release();
-
-                    if (!publication.isClosed()) {
-                        AeronUtil
-                                .tryClaimOrOffer(publication, (offset, buffer) -> {
-                                    if (traceEnabled) {
-                                        trace("Sending Frame => {} on Aeron", frame.toString());
-                                    }
-
-                                    buffer.putShort(offset, (short) 0);
-                                    buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.FRAME.getEncodedType());
-                                    buffer.putBytes(offset + BitUtil.SIZE_OF_INT, byteBuffer, frame.offset(), frame.length());
-                                }, length);
-                    }
-                });
+            // Take the publications to close before draining, so every frame queued before a connection was
+            // closed is sent ahead of its disconnect message
+            Publication closing;
+            while ((closing = closingPublications.poll()) != null) {
+                closingBatch.add(closing);
+                removeConnection(closing);
+            }
+
+            int work = 0;
+            Publication suspended;
+            while ((suspended = suspendedPublications.poll()) != null) {
+                AeronUtil.removePublicationStats(suspended);
+                suspended.close();
+                work++;
+            }
+
+            // After the suspended publications are closed, so a resumed session can create its new publication
+            Handshake handshake;
+            while ((handshake = handshakes.poll()) != null) {
+                pendingHandshakes.add(handshake);
+            }
+            if (!pendingHandshakes.isEmpty()) {
+                work += offerHandshakes();
+            }
+
+            // Frames replayed after a connection was resumed go out before anything queued since
+            if (ResumeState.isEnabled()) {
+                for (AeronClientDuplexConnection connection : connections.values()) {
+                    work += replayAndAck(connection);
+                }
+            }
+
+            frameSendQueueDepth.setOrdered(frameSendQueue.size());
+            final int sent = frameSendQueue.drain(frameSender);
+
+            if (sent > 0) {
+                framesSent.addOrdered(sent);
+            }
+
+            final int closed = closingBatch.size();
+            for (int i = 0; i < closed; i++) {
+                pendingDisconnects.add(new Disconnect(closingBatch.get(i)));
+            }
+            closingBatch.clear();
+            if (!pendingDisconnects.isEmpty()) {
+                work += sendDisconnects();
+            }
+
+            return work + sent;
         });
     }
 
+    /*
+     * Sends a frame taken from the send queue. Runs on the polling thread.
+     */
+    private void sendFrame(FrameHolder fh) {
+        final AeronClientDuplexConnection connection = fh.getConnection();
+        final Frame frame = fh.getFrame();
+        final ByteBuffer byteBuffer = frame.getByteBuffer();
+        final Publication publication = connection.getPublication();
+        final ResumeState resumeState = connection.getResumeState();
+        final short sequence = resumeState.nextSequence();
+        final int headerLength = LatencyStamp.headerLength();
+        final MetadataDictionary dictionary = connection.getMetadataDictionary();
+
+        try {
+            if (!connection.isSuspended() && !resumeState.isReplaying() && !publication.isClosed()) {
+                final boolean indexed = dictionary != null && dictionary.prepare(frame);
+                final int length = indexed
+                    ? BitUtil.SIZE_OF_INT + dictionary.encodedLength(frame.length())
+                    : frame.length() + headerLength;
+                final long claimStartNs = LatencyStamp.TIMED ? System.nanoTime() : 0;
+
+                sending = fh;
+                sendingSequence = sequence;
+                sendingDictionary = indexed ? dictionary : null;
+                sendingClaimStartNs = claimStartNs;
+                try {
+                    AeronUtil.tryClaimOrOffer(publication, frameWriter, length);
+                } finally {
+                    sending = null;
+                    sendingDictionary = null;
+                }
+
+                if (indexed) {
+                    dictionary.commit();
+                    metadataIndexed.orderedIncrement();
+                    metadataBytesSaved.addOrdered(frame.length() + headerLength - length);
+                }
+
+                if (Constants.LATENCY_METRICS_ENABLED) {
+                    final ConnectionLatency latency = connection.getLatency();
+                    final FrameType type = frame.getType();
+                    latency.record(type, LatencyStage.SEND_QUEUE_WAIT, claimStartNs - fh.getEnqueuedNs());
+                    latency.record(type, LatencyStage.CLAIM, System.nanoTime() - claimStartNs);
+                }
+            } else {
+                // Also counted in frames sent, which counts every frame taken from the queue
+                framesNotSent.orderedIncrement();
+            }
+        } finally {
+            // Frames that couldn't be sent are still kept for replay if the session is resumed
+            resumeState.onSent(sequence, byteBuffer, frame.offset(), frame.length());
+            fh.release();
+        }
+    }
+
+    /*
+     * Writes the frame being sent into the claimed buffer, from the fields set by sendFrame, so sending a frame
+     * doesn't allocate a lambda. Runs on the polling thread.
+     */
+    private void writeFrame(int offset, MutableDirectBuffer buffer) {
+        final Frame frame = sending.getFrame();
+        final ByteBuffer byteBuffer = frame.getByteBuffer();
+        if (isTraceEnabled()) {
+            trace("Sending Frame => {} on Aeron", frame.toString());
+        }
+
+        buffer.putShort(offset, sendingSequence);
+        if (sendingDictionary != null) {
+            buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.METADATA_INDEXED_FRAME.getEncodedType());
+            sendingDictionary.write(buffer, offset + BitUtil.SIZE_OF_INT, byteBuffer, frame.offset(), frame.length());
+            return;
+        }
+
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) LatencyStamp.frameType().getEncodedType());
+        if (LatencyStamp.ENABLED) {
+            LatencyStamp.write(buffer, offset + BitUtil.SIZE_OF_INT, sending.getEnqueuedNs(), sendingClaimStartNs);
+        }
+        buffer.putBytes(offset + LatencyStamp.headerLength(), byteBuffer, frame.offset(), frame.length());
+    }
+
+    /*
+     * Removes the connection of a publication that is being closed. Looked up by publication, because the server
+     * session id changes when the connection is resumed. Runs on the polling thread.
+     */
+    private void removeConnection(Publication publication) {
+        final Iterator<AeronClientDuplexConnection> iterator = connections.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getPublication() == publication) {
+                iterator.remove();
+                activeConnections.add(-1);
+                return;
+            }
+        }
+    }
+
+    /*
+     * Replays the frames the server missed while a resumed connection was suspended, and acks the frames
+     * received from the server. Runs on the polling thread.
+     */
+    private int replayAndAck(AeronClientDuplexConnection connection) {
+        final Publication publication = connection.getPublication();
+        if (connection.isSuspended() || publication.isClosed()) {
+            return 0;
+        }
+
+        final ResumeState resumeState = connection.getResumeState();
+        int work = 0;
+        try {
+            if (resumeState.isReplaying()) {
+                work += resumeState.replay(publication);
+            }
+
+            if (resumeState.sendAck(publication)) {
+                work++;
+            }
+        } catch (NotConnectedException e) {
+            debug("Publication closed while replaying for session id => {}", publication.sessionId());
+        }
+
+        return work;
+    }
+
+    /*
+     * Offers the pending handshakes, dropping the ones that were sent or have failed. Runs on the polling thread.
+     */
+    private int offerHandshakes() {
+        final long nowNs = System.nanoTime();
+        int work = 0;
+        for (int i = pendingHandshakes.size() - 1; i >= 0; i--) {
+            if (pendingHandshakes.get(i).offer(nowNs)) {
+                pendingHandshakes.remove(i);
+                work++;
+            }
+        }
+
+        return work;
+    }
+
+    /*
+     * Sends the pending disconnect messages, dropping the ones that were sent or have timed out. Runs on the
+     * polling thread.
+     */
+    private int sendDisconnects() {
+        final long nowNs = System.nanoTime();
+        int work = 0;
+        for (int i = pendingDisconnects.size() - 1; i >= 0; i--) {
+            if (pendingDisconnects.get(i).send(nowNs)) {
+                pendingDisconnects.remove(i);
+                work++;
+            }
+        }
+
+        return work;
+    }
+
     public static AeronClientDuplexConnectionFactory getInstance() {
         return instance;
     }
@@ -119,48 +392,81 @@ public final class AeronClientDuplexConnectionFactory implements Loggable {
         debug("Created a publication with sessionId => {} to channel => {}", publication.sessionId(), channel);
 
         return subscriber -> {
-            EstablishConnectionHolder establishConnectionHolder = new EstablishConnectionHolder(publication, subscriber);
+            EstablishConnectionHolder establishConnectionHolder = new EstablishConnectionHolder(publication, subscriber, null);
             establishConnectionHolders.putIfAbsent(publication.sessionId(), establishConnectionHolder);
 
-            establishConnection(publication);
+            establishConnection(publication, subscriber);
         };
     }
 
     /**
-     * Establishes a connection between the client and server. Waits for 30 seconds before throwing a exception.
+     * Resumes the session of a connection on a new publication to the server, after the server stopped
+     * responding or the network went away. The server replays the frames the client missed, and the client
+     * replays the frames the server missed, so streams carry on where they were. Frames sent on the connection
+     * while it is being resumed are queued behind the replayed frames.
+     * <p>
+     * Only possible when sessions can be resumed, which is turned on with the reactivesocket.aeron.resumeWindowMs
+     * property, and within that window. Otherwise, or if the server has dropped frames the client hasn't received
+     * from its replay buffer, the returned Publisher signals an error and the connection should be closed.
+     *
+     * @param socketAddress the address of the server the connection was established with
+     * @param connection    the connection to resume
      */
-    void establishConnection(final Publication publication) {
-        final int sessionId = publication.sessionId();
-
-        debug("Establishing connection for channel => {}, stream id => {}",
-            publication.channel(),
-            publication.sessionId());
+    public Publisher<AeronClientDuplexConnection> resumeAeronClientDuplexConnection(SocketAddress socketAddress, AeronClientDuplexConnection connection) {
+        if (!(socketAddress instanceof InetSocketAddress)) {
+            throw new RuntimeException("unknown socket address type => " + socketAddress.getClass());
+        }
 
-        UnsafeBuffer buffer = buffers.get();
-        buffer.wrap(new byte[BitUtil.SIZE_OF_INT]);
-        buffer.putShort(0, (short) 0);
-        buffer.putShort(BitUtil.SIZE_OF_SHORT, (short) MessageType.ESTABLISH_CONNECTION_REQUEST.getEncodedType());
+        final InetSocketAddress inetSocketAddress = (InetSocketAddress) socketAddress;
+        final String channel = "udp://" + inetSocketAddress.getHostName() + ":" + inetSocketAddress.getPort();
 
-        long offer = -1;
-        final long start = System.nanoTime();
-        for (;;) {
-            final long current = System.nanoTime();
-            if ((current - start) > TimeUnit.MILLISECONDS.toNanos(Constants.CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS)) {
-                throw new RuntimeException("Timed out waiting to establish connection for session id => " + sessionId);
+        return subscriber -> {
+            final ResumeState resumeState = connection.getResumeState();
+            final long token = resumeState.getToken();
+            if (!ResumeState.isEnabled() || token == 0) {
+                subscriber.onError(new IllegalStateException("Session can't be resumed for connection => " + connection));
+                return;
             }
 
-            if (offer < 0) {
-                if (publication.isClosed()) {
-                    throw new RuntimeException("A closed publication was found when trying to establish for session id => " + sessionId);
-                }
+            final Publication previous = connection.getPublication();
+            suspend(connection);
 
-                offer = publication.offer(buffer);
-            } else {
-                break;
-            }
+            final UnsafeBuffer buffer = new UnsafeBuffer(new byte[BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG]);
+            buffer.putShort(0, resumeState.getLastReceived());
+            buffer.putShort(BitUtil.SIZE_OF_SHORT, (short) MessageType.RESUME_REQUEST.getEncodedType());
+            buffer.putLong(BitUtil.SIZE_OF_INT, token);
 
+            // The polling thread creates the new publication once it has closed the old one
+            handshakes.offer(new Handshake(null, subscriber, buffer, connection, previous, channel));
+        };
+    }
+
+    /*
+     * Stops sending on a connection and closes its publication, without telling the server, so the session can be
+     * resumed.
+     */
+    private void suspend(AeronClientDuplexConnection connection) {
+        if (!connection.isSuspended()) {
+            connection.suspend();
+            suspendedPublications.offer(connection.getPublication());
         }
+    }
+
+    /**
+     * Establishes a connection between the client and server. The polling thread offers the handshake, and
+     * signals an error to the subscriber if it can't be sent within CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS.
+     */
+    void establishConnection(final Publication publication, final Subscriber<? super AeronClientDuplexConnection> subscriber) {
+        debug("Establishing connection for channel => {}, stream id => {}",
+            publication.channel(),
+            publication.sessionId());
+
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[2 * BitUtil.SIZE_OF_INT]);
+        buffer.putShort(0, (short) 0);
+        buffer.putShort(BitUtil.SIZE_OF_SHORT, (short) MessageType.ESTABLISH_CONNECTION_REQUEST.getEncodedType());
+        buffer.putInt(BitUtil.SIZE_OF_INT, MetadataDictionary.requestedSize());
 
+        handshakes.offer(new Handshake(publication, subscriber, buffer, null, null, null));
     }
 
     void fragmentHandler(DirectBuffer buffer, int offset, int length, Header header) {
@@ -169,15 +475,35 @@ public final class AeronClientDuplexConnectionFactory implements Loggable {
             short messageTypeInt = buffer.getShort(offset + BitUtil.SIZE_OF_SHORT);
 
             final MessageType messageType = MessageType.from(messageTypeInt);
-            if (messageType == MessageType.FRAME) {
-                AeronClientDuplexConnection aeronClientDuplexConnection = connections.get(header.sessionId());
-                if (aeronClientDuplexConnection != null) {
+            final AeronClientDuplexConnection aeronClientDuplexConnection = connections.get(header.sessionId());
+            if (aeronClientDuplexConnection != null) {
+                final SessionLiveness liveness = aeronClientDuplexConnection.getLiveness();
+                if (liveness != null) {
+                    liveness.onReceive();
+                }
+            }
+
+            if (messageType == MessageType.FRAME || messageType == MessageType.STAMPED_FRAME) {
+                if (aeronClientDuplexConnection == null) {
+                    EventLog.getInstance().record(EventCode.FRAME_DROPPED, header.sessionId());
+                    if (isDebugEnabled()) {
+                        debug("no connection found for Aeron Session Id {}", header.sessionId());
+                    }
+                } else if (!aeronClientDuplexConnection.getResumeState().onReceive(messageCount)) {
+                    EventLog.getInstance().record(EventCode.DUPLICATE_DROPPED, header.sessionId(), messageCount);
+                } else {
+                    framesReceived.orderedIncrement();
                     CopyOnWriteArrayList<Observer<Frame>> subjects = aeronClientDuplexConnection.getSubjects();
                     if (!subjects.isEmpty()) {
                         //TODO think about how to recycle these, hard because could be handed to another thread I think?
-                        final ByteBuffer bytes = ByteBuffer.allocate(length);
-                        buffer.getBytes(BitUtil.SIZE_OF_INT + offset, bytes, length);
+                        final int headerLength = LatencyStamp.headerLength(messageType);
+                        final ByteBuffer bytes = ByteBuffer.allocate(length - headerLength);
+                        buffer.getBytes(offset + headerLength, bytes, length - headerLength);
                         final Frame frame = Frame.from(bytes);
+                        if (messageType == MessageType.STAMPED_FRAME) {
+                            LatencyStamp.record(buffer, offset + BitUtil.SIZE_OF_INT, frame.getType(), aeronClientDuplexConnection.getLatency());
+                        }
+                        final long dispatchStartNs = Constants.LATENCY_METRICS_ENABLED ? System.nanoTime() : 0;
                         int i = 0;
                         final int size = subjects.size();
                         do {
@@ -186,39 +512,64 @@ public final class AeronClientDuplexConnectionFactory implements Loggable {
 
                             i++;
                         } while (i < size);
+
+                        if (Constants.LATENCY_METRICS_ENABLED) {
+                            aeronClientDuplexConnection
+                                .getLatency()
+                                .record(frame.getType(), LatencyStage.INBOUND_DISPATCH, System.nanoTime() - dispatchStartNs);
+                        }
                     }
-                } else {
-                    debug("no connection found for Aeron Session Id {}", header.sessionId());
                 }
+            } else if (messageType == MessageType.ACK) {
+                if (aeronClientDuplexConnection != null) {
+                    aeronClientDuplexConnection.getResumeState().onAck(messageCount);
+                }
+            } else if (messageType == MessageType.PING) {
+                if (aeronClientDuplexConnection != null && !aeronClientDuplexConnection.getPublication().isClosed()) {
+                    SessionLiveness.sendPong(aeronClientDuplexConnection.getPublication());
+                }
+            } else if (messageType == MessageType.PONG) {
+                // liveness has already been updated
             } else if (messageType == MessageType.ESTABLISH_CONNECTION_RESPONSE) {
                 final int ackSessionId = buffer.getInt(offset + BitUtil.SIZE_OF_INT);
+                final int serverSessionId = header.sessionId();
                 EstablishConnectionHolder establishConnectionHolder = establishConnectionHolders.remove(ackSessionId);
                 if (establishConnectionHolder != null) {
                     try {
-                        AeronClientDuplexConnection aeronClientDuplexConnection
+                        AeronClientDuplexConnection connection
                             = new AeronClientDuplexConnection(establishConnectionHolder.getPublication(), frameSendQueue, new Consumer<Publication>() {
                             @Override
                             public void accept(Publication publication) {
-                                connections.remove(publication.sessionId());
-
-                                // Send a message to the server that the connection is closed and that it needs to clean-up resources on it's side
-                                if (publication != null && !publication.isClosed()) {
-                                    try {
-                                        AeronUtil.tryClaimOrOffer(publication, (offset, buffer) -> {
-                                            buffer.putShort(offset, (short) 0);
-                                            buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.CONNECTION_DISCONNECT.getEncodedType());
-                                        }, BitUtil.SIZE_OF_INT, Constants.CLIENT_SEND_ESTABLISH_CONNECTION_MSG_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-                                    } catch (Throwable t) {
-                                        debug("error closing  publication with session id => {}", publication.sessionId());
-                                    }
-                                    publication.close();
-                                }
+                                // The polling thread removes the connection, sends the frames already queued for the
+                                // publication, and then the disconnect message, before closing it
+                                closingPublications.offer(publication);
+                                EventLog.getInstance().record(EventCode.CONNECTION_CLOSED, publication.sessionId());
                             }
                         });
 
-                        connections.put(header.sessionId(), aeronClientDuplexConnection);
+                        if (length >= 2 * BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG) {
+                            connection.getResumeState().setToken(buffer.getLong(offset + 2 * BitUtil.SIZE_OF_INT));
+                        }
 
-                        establishConnectionHolder.getSubscriber().onNext(aeronClientDuplexConnection);
+                        // Servers that don't support the metadata dictionary don't send its size
+                        if (length >= 3 * BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG) {
+                            final int dictionarySize = buffer.getInt(offset + 2 * BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG);
+                            if (dictionarySize > 0) {
+                                connection.setMetadataDictionary(new MetadataDictionary(dictionarySize));
+                            }
+                        }
+
+                        connections.put(serverSessionId, connection);
+                        connectionsEstablished.orderedIncrement();
+                        EventLog.getInstance().record(EventCode.CONNECTION_ESTABLISHED, ackSessionId, serverSessionId);
+                        activeConnections.increment();
+
+                        if (SessionLiveness.isEnabled()) {
+                            final ServerLivenessListener listener = new ServerLivenessListener(connection, serverSessionId);
+                            connection.setLiveness(new SessionLiveness(manager.getTimerWheel(), serverSessionId, listener));
+                        }
+
+                        establishConnectionHolder.getSubscriber().onNext(connection);
                         establishConnectionHolder.getSubscriber().onComplete();
 
                         debug("Connection established for channel => {}, stream id => {}",
@@ -228,6 +579,13 @@ public final class AeronClientDuplexConnectionFactory implements Loggable {
                         establishConnectionHolder.getSubscriber().onError(t);
                     }
                 }
+            } else if (messageType == MessageType.RESUME_RESPONSE) {
+                final int ackSessionId = buffer.getInt(offset + BitUtil.SIZE_OF_INT);
+                final boolean accepted = buffer.getInt(offset + 2 * BitUtil.SIZE_OF_INT) != 0;
+                EstablishConnectionHolder establishConnectionHolder = establishConnectionHolders.remove(ackSessionId);
+                if (establishConnectionHolder != null && establishConnectionHolder.getResumedConnection() != null) {
+                    onResumeResponse(establishConnectionHolder, header.sessionId(), messageCount, accepted);
+                }
             } else {
                 debug("Unknown message type => " + messageTypeInt);
             }
@@ -236,16 +594,246 @@ public final class AeronClientDuplexConnectionFactory implements Loggable {
         }
     }
 
+    /*
+     * Moves a resumed connection to the server's new session, and starts replaying the frames the server hasn't
+     * received. Runs on the polling thread.
+     */
+    private void onResumeResponse(EstablishConnectionHolder establishConnectionHolder, int serverSessionId, short serverLastReceived, boolean accepted) {
+        final AeronClientDuplexConnection connection = establishConnectionHolder.getResumedConnection();
+        final Publication publication = establishConnectionHolder.getPublication();
+        final Subscriber<? super AeronClientDuplexConnection> subscriber = establishConnectionHolder.getSubscriber();
+        final ResumeState resumeState = connection.getResumeState();
+
+        if (!accepted || !resumeState.canResumeAfter(serverLastReceived)) {
+            closingPublications.offer(publication);
+            subscriber.onError(new RuntimeException("Unable to resume session for session id => " + publication.sessionId()));
+            return;
+        }
+
+        connections.values().remove(connection);
+        connections.put(serverSessionId, connection);
+        connection.resume(publication);
+        resumeState.onResumed(serverLastReceived);
+        connectionsResumed.orderedIncrement();
+        EventLog.getInstance().record(EventCode.SESSION_RESUMED, serverSessionId, publication.sessionId());
+
+        final SessionLiveness liveness = connection.getLiveness();
+        if (liveness != null) {
+            liveness.cancel();
+        }
+        if (SessionLiveness.isEnabled()) {
+            final ServerLivenessListener listener = new ServerLivenessListener(connection, serverSessionId);
+            connection.setLiveness(new SessionLiveness(manager.getTimerWheel(), serverSessionId, listener));
+        }
+
+        subscriber.onNext(connection);
+        subscriber.onComplete();
+
+        debug("Connection resumed for channel => {}, session id => {}", publication.channel(), publication.sessionId());
+    }
+
     /*
      * Inner Classes
      */
+
+    /**
+     * Probes the server when it goes quiet, and fails the connection if nothing is heard from the server for
+     * LIVENESS_TIMEOUT_MS. Runs on the polling thread.
+     */
+    class ServerLivenessListener implements SessionLiveness.Listener {
+        private final AeronClientDuplexConnection connection;
+        private final int serverSessionId;
+
+        public ServerLivenessListener(AeronClientDuplexConnection connection, int serverSessionId) {
+            this.connection = connection;
+            this.serverSessionId = serverSessionId;
+        }
+
+        @Override
+        public void onIdle() {
+            final Publication publication = connection.getPublication();
+            if (publication.isClosed()) {
+                connection.getLiveness().cancel();
+                return;
+            }
+
+            try {
+                SessionLiveness.sendPing(publication);
+            } catch (NotConnectedException e) {
+                debug("Publication closed before ping for session id => {}", publication.sessionId());
+            }
+        }
+
+        @Override
+        public void onDead() {
+            final Publication publication = connection.getPublication();
+            if (publication.isClosed()) {
+                return;
+            }
+
+            EventLog.getInstance().record(EventCode.PEER_DEAD, serverSessionId);
+            if (ResumeState.isEnabled() && connection.getResumeState().getToken() != 0) {
+                // Give the application RESUME_WINDOW_MS to resume the session before failing the connection
+                debug("no traffic from server, suspending connection for server session id => {}", serverSessionId);
+                suspend(connection);
+                EventLog.getInstance().record(EventCode.SESSION_DETACHED, serverSessionId);
+                manager.getTimerWheel().newTimeout(Constants.RESUME_WINDOW_MS, TimeUnit.MILLISECONDS, () -> {
+                    if (connection.isSuspended() && connection.getPublication() == publication) {
+                        fail();
+                    }
+                });
+                return;
+            }
+
+            fail();
+        }
+
+        private void fail() {
+            final TimedOutException timedOutException = new TimedOutException();
+            error("no traffic from server, closing connection for server session id => " + serverSessionId, timedOutException);
+            connection.getSubjects().forEach(o -> o.onError(timedOutException));
+
+            try {
+                connection.close();
+            } catch (Throwable t) {
+                debug("error closing connection for server session id => {}", serverSessionId);
+            }
+        }
+    }
+
+    /**
+     * A handshake waiting to be offered by the polling thread. When a session is being resumed, the new publication
+     * is only created once the previous one is closed, because Aeron shares publications to the same channel and
+     * stream.
+     */
+    class Handshake {
+        private final Subscriber<? super AeronClientDuplexConnection> subscriber;
+        private final UnsafeBuffer buffer;
+        private final AeronClientDuplexConnection resumedConnection;
+        private final Publication previous;
+        private final String channel;
+        private final long deadlineNs;
+        private Publication publication;
+
+        public Handshake(Publication publication, Subscriber<? super AeronClientDuplexConnection> subscriber, UnsafeBuffer buffer,
+                         AeronClientDuplexConnection resumedConnection, Publication previous, String channel) {
+            this.publication = publication;
+            this.subscriber = subscriber;
+            this.buffer = buffer;
+            this.resumedConnection = resumedConnection;
+            this.previous = previous;
+            this.channel = channel;
+            this.deadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS);
+        }
+
+        /**
+         * @return true once the handshake has been sent or has failed
+         */
+        boolean offer(long nowNs) {
+            if (nowNs - deadlineNs > 0) {
+                if (publication == null) {
+                    fail(new RuntimeException("Timed out waiting to close publication for session id => " + previous.sessionId()));
+                } else {
+                    EventLog.getInstance().record(EventCode.HANDSHAKE_TIMED_OUT, publication.sessionId());
+                    fail(new RuntimeException("Timed out waiting to establish connection for session id => " + publication.sessionId()));
+                }
+                return true;
+            }
+
+            try {
+                if (publication == null) {
+                    if (!previous.isClosed()) {
+                        return false;
+                    }
+
+                    publication = manager.getAeron().addPublication(channel, SERVER_STREAM_ID);
+                    debug("Resuming session id => {} with session id => {}", previous.sessionId(), publication.sessionId());
+                    establishConnectionHolders.putIfAbsent(publication.sessionId(), new EstablishConnectionHolder(publication, subscriber, resumedConnection));
+                }
+
+                if (publication.isClosed()) {
+                    fail(new RuntimeException("A closed publication was found when trying to establish for session id => " + publication.sessionId()));
+                    return true;
+                }
+
+                if (publication.offer(buffer) < 0) {
+                    return false;
+                }
+            } catch (Throwable t) {
+                fail(t);
+                return true;
+            }
+
+            if (resumedConnection == null) {
+                EventLog.getInstance().record(EventCode.HANDSHAKE_SENT, publication.sessionId());
+            }
+            return true;
+        }
+
+        private void fail(Throwable t) {
+            if (publication != null) {
+                establishConnectionHolders.remove(publication.sessionId());
+                suspendedPublications.offer(publication);
+            }
+
+            subscriber.onError(t);
+        }
+    }
+
+    /**
+     * Tells the server that the connection is closed and that it needs to clean-up resources on it's side, and
+     * closes the publication once the message was sent or couldn't be sent before the timeout.
+     */
+    class Disconnect {
+        private final Publication publication;
+        private final long deadlineNs;
+
+        Disconnect(Publication publication) {
+            this.publication = publication;
+            this.deadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.CLIENT_SEND_ESTABLISH_CONNECTION_MSG_TIMEOUT_MS);
+        }
+
+        /**
+         * @return true once the publication is closed
+         */
+        boolean send(long nowNs) {
+            if (publication.isClosed()) {
+                return true;
+            }
+
+            try {
+                if (!AeronUtil.tryClaimOrOfferOnce(publication, DISCONNECT, BitUtil.SIZE_OF_INT)) {
+                    if (nowNs - deadlineNs <= 0) {
+                        return false;
+                    }
+                    debug("Timed out sending disconnect for session id => {}", publication.sessionId());
+                }
+            } catch (Throwable t) {
+                debug("error closing  publication with session id => {}", publication.sessionId());
+            }
+
+            AeronUtil.removePublicationStats(publication);
+            publication.close();
+            return true;
+        }
+    }
+
     class EstablishConnectionHolder  {
         private Publication publication;
         private Subscriber<? super AeronClientDuplexConnection> subscriber;
+        private AeronClientDuplexConnection resumedConnection;
 
-        public EstablishConnectionHolder(Publication publication, Subscriber<? super AeronClientDuplexConnection> subscriber) {
+        public EstablishConnectionHolder(Publication publication, Subscriber<? super AeronClientDuplexConnection> subscriber, AeronClientDuplexConnection resumedConnection) {
             this.publication = publication;
             this.subscriber = subscriber;
+            this.resumedConnection = resumedConnection;
+        }
+
+        /**
+         * The connection being resumed, or null if a new connection is being established
+         */
+        public AeronClientDuplexConnection getResumedConnection() {
+            return resumedConnection;
         }
 
         public Publication getPublication() {
@@ -15,14 +15,15 @@
  */
 package io.reactivesocket.aeron.client;
 
+import io.reactivesocket.aeron.internal.Constants;
 import io.reactivesocket.aeron.internal.Loggable;
-import rx.Scheduler;
-import rx.schedulers.Schedulers;
 import uk.co.real_logic.aeron.Aeron;
 import uk.co.real_logic.aeron.FragmentAssembler;
 import uk.co.real_logic.aeron.Image;
 import uk.co.real_logic.aeron.Subscription;
 import uk.co.real_logic.aeron.logbuffer.FragmentHandler;
+import uk.co.real_logic.agrona.TimerWheel;
+import uk.co.real_logic.agrona.concurrent.IdleStrategy;
 
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
@@ -39,11 +40,12 @@ public class ClientAeronManager implements Loggable {
 
     private final Aeron aeron;
 
-    private final Scheduler.Worker worker;
+    private final TimerWheel timerWheel;
 
     private ClientAeronManager() {
         this.clientActions = new CopyOnWriteArrayList<>();
         this.subscriptionGroups = new CopyOnWriteArrayList<>();
+        this.timerWheel = new TimerWheel(Constants.CLIENT_TIMER_WHEEL_TICK_DURATION_MS, TimeUnit.MILLISECONDS, Constants.CLIENT_TIMER_WHEEL_BUCKETS);
 
         final Aeron.Context ctx = new Aeron.Context();
         ctx.errorHandler(t -> error("an exception occurred", t));
@@ -52,7 +54,6 @@ public class ClientAeronManager implements Loggable {
         );
 
         aeron = Aeron.connect(ctx);
-        worker = Schedulers.computation().createWorker();
         poll();
     }
 
@@ -80,6 +81,14 @@ public class ClientAeronManager implements Loggable {
         return aeron;
     }
 
+    /**
+     * Timer wheel run by the polling loop. Only use it from the polling thread, such as from a
+     * {@link ClientAction} or a subscription's fragment handler.
+     */
+    public TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
     /**
      * Adds an Aeron subscription to be polled. This method will create a subscription for each of the polling threads.
      *
@@ -103,13 +112,33 @@ public class ClientAeronManager implements Loggable {
     }
 
     /*
-     * Starts polling for the Aeron client. Will run registered client actions and will automatically start polling
-     * subscriptions
+     * Starts polling for the Aeron client on a dedicated thread. Will run registered client actions and will
+     * automatically start polling subscriptions, backing off with the client's idle strategy when there is
+     * nothing to do.
      */
     void poll() {
         info("ReactiveSocket Aeron Client poll");
-        worker.schedulePeriodically(new PollingAction(subscriptionGroups, clientActions),
-            0, 20, TimeUnit.MICROSECONDS);
+        final PollingAction pollingAction = new PollingAction(subscriptionGroups, clientActions);
+        final IdleStrategy idleStrategy = Constants.newIdleStrategy(Constants.CLIENT_AGENT);
+
+        Thread dutyThread = new Thread(() -> {
+            for (; ; ) {
+                int workCount = pollingAction.call();
+
+                try {
+                    if (timerWheel.computeDelayInMs() < 0) {
+                        workCount += timerWheel.expireTimers();
+                    }
+                } catch (Throwable t) {
+                    error("error expiring client timers", t);
+                }
+
+                pollingAction.idle(idleStrategy, workCount);
+            }
+        });
+        dutyThread.setName("reactive-socket-aeron-client");
+        dutyThread.setDaemon(true);
+        dutyThread.start();
     }
 
     /*
@@ -152,8 +181,14 @@ public class ClientAeronManager implements Loggable {
         }
     }
 
+    /**
+     * An action run by the polling loop.
+     */
     @FunctionalInterface
     public interface ClientAction {
-        void call();
+        /**
+         * @return the amount of work done, or 0 if there was nothing to do
+         */
+        int call();
     }
 }
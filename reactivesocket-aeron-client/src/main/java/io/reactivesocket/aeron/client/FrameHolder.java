@@ -16,39 +16,46 @@
 package io.reactivesocket.aeron.client;
 
 import io.reactivesocket.Frame;
-import org.HdrHistogram.Recorder;
+import io.reactivesocket.aeron.internal.LatencyStamp;
+import io.reactivesocket.aeron.internal.TransportCounters;
 import org.reactivestreams.Subscription;
-import uk.co.real_logic.aeron.Publication;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
 import uk.co.real_logic.agrona.concurrent.OneToOneConcurrentArrayQueue;
 
 /**
- * Holds a frame and the publication that it's supposed to be sent on.
+ * Holds a frame and the connection that it's supposed to be sent on. The publication is looked up when the frame
+ * is sent, because it changes when the connection is resumed.
  * Pools instances on an {@link uk.co.real_logic.agrona.concurrent.OneToOneConcurrentArrayQueue}
  */
 public class FrameHolder {
     private static final ThreadLocal<OneToOneConcurrentArrayQueue<FrameHolder>> FRAME_HOLDER_QUEUE
         = ThreadLocal.withInitial(() -> new OneToOneConcurrentArrayQueue<>(16));
 
-    public static final Recorder histogram = new Recorder(3600000000000L, 3);
+    private static final AtomicCounter POOL_HITS = TransportCounters.getInstance().newCounter("client: frame holder pool hits");
+
+    private static final AtomicCounter POOL_MISSES = TransportCounters.getInstance().newCounter("client: frame holder pool misses");
 
     private Frame frame;
-    private Publication publication;
+    private AeronClientDuplexConnection connection;
     private Subscription s;
-    private long getTime;
+    private long enqueuedNs;
 
     private FrameHolder() {}
 
-    public static FrameHolder get(Frame frame, Publication publication, Subscription s) {
+    public static FrameHolder get(Frame frame, AeronClientDuplexConnection connection, Subscription s) {
         FrameHolder frameHolder = FRAME_HOLDER_QUEUE.get().poll();
 
         if (frameHolder == null) {
+            POOL_MISSES.increment();
             frameHolder = new FrameHolder();
+        } else {
+            POOL_HITS.increment();
         }
 
         frameHolder.frame = frame;
         frameHolder.s = s;
-        frameHolder.publication = publication;
-        frameHolder.getTime = System.nanoTime();
+        frameHolder.connection = connection;
+        frameHolder.enqueuedNs = LatencyStamp.TIMED ? System.nanoTime() : 0;
 
         return frameHolder;
     }
@@ -57,8 +64,15 @@ public class FrameHolder {
         return frame;
     }
 
-    public Publication getPublication() {
-        return publication;
+    public AeronClientDuplexConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return when the frame was queued to be sent, or 0 if neither latency metrics nor stamping are enabled
+     */
+    public long getEnqueuedNs() {
+        return enqueuedNs;
     }
 
     public void release() {
@@ -68,7 +82,5 @@ public class FrameHolder {
 
         frame.release();
         FRAME_HOLDER_QUEUE.get().offer(this);
-
-        histogram.recordValue(System.nanoTime() - getTime);
     }
 }
@@ -1,37 +1,61 @@
 package io.reactivesocket.aeron.client;
 
 import io.reactivesocket.aeron.internal.Loggable;
-import rx.functions.Action0;
+import io.reactivesocket.aeron.internal.TransportCounters;
 import uk.co.real_logic.aeron.Subscription;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
+import uk.co.real_logic.agrona.concurrent.IdleStrategy;
 
 import java.util.List;
 
-class PollingAction implements Action0, Loggable {
+/**
+ * A single duty cycle of the client polling thread: polls the subscriptions and runs the client actions.
+ */
+class PollingAction implements Loggable {
     private final List<ClientAeronManager.SubscriptionGroup> subscriptionGroups;
     private final List<ClientAeronManager.ClientAction> clientActions;
+    private final AtomicCounter dutyCycles;
+    private final AtomicCounter idleCycles;
+    private final AtomicCounter idleTimeNs;
+    private final AtomicCounter fragmentsRead;
 
     public PollingAction(
             List<ClientAeronManager.SubscriptionGroup> subscriptionGroups,
             List<ClientAeronManager.ClientAction> clientActions) {
         this.subscriptionGroups = subscriptionGroups;
         this.clientActions = clientActions;
+
+        final TransportCounters counters = TransportCounters.getInstance();
+        this.dutyCycles = counters.newCounter("client: duty cycles");
+        this.idleCycles = counters.newCounter("client: idle cycles");
+        this.idleTimeNs = counters.newCounter("client: idle time ns");
+        this.fragmentsRead = counters.newCounter("client: fragments read");
     }
 
-    @Override
-    public void call() {
+    /**
+     * @return the amount of work done
+     */
+    public int call() {
+        int workCount = 0;
         try {
-            for (ClientAeronManager.SubscriptionGroup sg : subscriptionGroups) {
+            // indexed, so a duty cycle doesn't allocate iterators
+            for (int i = 0; i < subscriptionGroups.size(); i++) {
+                final ClientAeronManager.SubscriptionGroup sg = subscriptionGroups.get(i);
                 try {
                     int poll = 0;
                     do {
                         Subscription subscription = sg.getSubscription();
                         if (!subscription.isClosed()) {
                             poll = subscription.poll(sg.getFragmentAssembler(), Integer.MAX_VALUE);
+                            if (poll > 0) {
+                                fragmentsRead.addOrdered(poll);
+                                workCount += poll;
+                            }
                         }
                     } while (poll > 0);
 
-                    for (ClientAeronManager.ClientAction action : clientActions) {
-                        action.call();
+                    for (int j = 0; j < clientActions.size(); j++) {
+                        workCount += clientActions.get(j).call();
                     }
                 } catch (Throwable t) {
                     error("error polling aeron subscription", t);
@@ -41,5 +65,22 @@ class PollingAction implements Action0, Loggable {
         } catch (Throwable t) {
             error("error in client polling loop", t);
         }
+
+        return workCount;
+    }
+
+    /**
+     * Idles after a duty cycle, recording the idle time when no work was done.
+     */
+    void idle(IdleStrategy idleStrategy, int workCount) {
+        dutyCycles.orderedIncrement();
+        if (workCount == 0) {
+            final long start = System.nanoTime();
+            idleStrategy.idle(0);
+            idleTimeNs.addOrdered(System.nanoTime() - start);
+            idleCycles.orderedIncrement();
+        } else {
+            idleStrategy.idle(workCount);
+        }
     }
 }
@@ -0,0 +1,413 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.client;
+
+import io.reactivesocket.Payload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.internal.Constants;
+import io.reactivesocket.aeron.internal.Loggable;
+import io.reactivesocket.aeron.internal.TransportCounters;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Sends requests on one of a group of ReactiveSockets, chosen by the subclass for each request, and tracks the
+ * outstanding requests and their latency per socket and for the whole group.
+ * <p>
+ * A request is outstanding until its first response, which is its first element or its terminal signal, and its
+ * latency is the time to that response. A long lived stream is no longer outstanding once it has started producing,
+ * so it doesn't count against its socket for as long as it stays open.
+ * <p>
+ * The number of sockets, outstanding requests, requests and failures are kept in the transport counters, and the
+ * latency of requests is recorded in a histogram.
+ */
+abstract class ReactiveSocketGroup implements AutoCloseable, Loggable {
+    private static final TrackedSocket[] EMPTY = new TrackedSocket[0];
+    private static final int MAX_SELECT_ATTEMPTS = 3;
+
+    protected final String name;
+    private final long decayNs;
+
+    protected volatile TrackedSocket[] sockets = EMPTY;
+    protected volatile boolean closed;
+
+    private final Recorder latency = new Recorder(3600000000000L, 3);
+    private final LongAdder outstanding = new LongAdder();
+    private final AtomicCounter socketsCounter;
+    private final AtomicCounter outstandingRequests;
+    private final AtomicCounter requests;
+    private final AtomicCounter failures;
+
+    /**
+     * @param name          the name of the group
+     * @param counterPrefix the prefix of the labels of the group's counters
+     */
+    protected ReactiveSocketGroup(String name, String counterPrefix) {
+        this.name = name;
+        this.decayNs = TimeUnit.MILLISECONDS.toNanos(Constants.CLIENT_LATENCY_DECAY_MS);
+
+        final TransportCounters counters = TransportCounters.getInstance();
+        this.socketsCounter = counters.newCounter(counterPrefix + "sockets");
+        this.outstandingRequests = counters.newCounter(counterPrefix + "outstanding requests");
+        this.requests = counters.newCounter(counterPrefix + "requests");
+        this.failures = counters.newCounter(counterPrefix + "failures");
+    }
+
+    /*
+     * Requests
+     */
+
+    public Publisher<Payload> requestResponse(Payload payload) {
+        return request(socket -> socket.requestResponse(payload));
+    }
+
+    public Publisher<Payload> requestStream(Payload payload) {
+        return request(socket -> socket.requestStream(payload));
+    }
+
+    public Publisher<Payload> requestSubscription(Payload payload) {
+        return request(socket -> socket.requestSubscription(payload));
+    }
+
+    public Publisher<Void> fireAndForget(Payload payload) {
+        return request(socket -> socket.fireAndForget(payload));
+    }
+
+    public Publisher<Void> metadataPush(Payload payload) {
+        return request(socket -> socket.metadataPush(payload));
+    }
+
+    public Publisher<Payload> requestChannel(Publisher<Payload> payloads) {
+        return request(socket -> socket.requestChannel(payloads));
+    }
+
+    /**
+     * Chooses the socket to send a request on.
+     *
+     * @return the socket, or null if there's none available
+     */
+    abstract TrackedSocket select();
+
+    /*
+     * The socket is chosen when the request is subscribed to, and the request is outstanding until its first
+     * response or until it's cancelled.
+     */
+    private <T> Publisher<T> request(Function<ReactiveSocket, Publisher<T>> request) {
+        return subscriber -> {
+            final long startNs = System.nanoTime();
+            final TrackedSocket socket = start(startNs);
+            if (socket == null) {
+                failures.orderedIncrement();
+                subscriber.onSubscribe(EmptySubscription.INSTANCE);
+                subscriber.onError(new IllegalStateException("No sockets available in " + name));
+                return;
+            }
+
+            requests.orderedIncrement();
+            outstanding.increment();
+            outstandingRequests.setOrdered(outstanding.sum());
+
+            final Publisher<T> publisher;
+            try {
+                publisher = request.apply(socket.getSocket());
+            } catch (Throwable t) {
+                onResponse(socket, startNs);
+                socket.onEnd(System.nanoTime());
+                failures.orderedIncrement();
+                subscriber.onSubscribe(EmptySubscription.INSTANCE);
+                subscriber.onError(t);
+                return;
+            }
+
+            publisher.subscribe(new TrackingSubscriber<>(subscriber, socket, startNs));
+        };
+    }
+
+    /*
+     * A socket removed from the group between being selected and the request starting on it may already be
+     * closed, in which case another socket is selected.
+     */
+    private TrackedSocket start(long startNs) {
+        for (int i = 0; i < MAX_SELECT_ATTEMPTS; i++) {
+            final TrackedSocket socket = select();
+            if (socket == null) {
+                return null;
+            } else if (socket.onStart(startNs)) {
+                return socket;
+            }
+        }
+
+        return null;
+    }
+
+    private void onResponse(TrackedSocket socket, long startNs) {
+        final long nowNs = System.nanoTime();
+        final long latencyNs = Math.max(0, nowNs - startNs);
+        socket.onResponse(latencyNs, nowNs);
+        outstanding.decrement();
+        latency.recordValue(latencyNs);
+        outstandingRequests.setOrdered(outstanding.sum());
+    }
+
+    /*
+     * A request cancelled before its first response doesn't say how long the socket would have taken to answer,
+     * so it isn't a latency sample.
+     */
+    private void onCancel(TrackedSocket socket) {
+        socket.onCancel();
+        outstanding.decrement();
+        outstandingRequests.setOrdered(outstanding.sum());
+    }
+
+    /*
+     * Membership
+     */
+
+    TrackedSocket track(ReactiveSocket socket) {
+        return new TrackedSocket(socket, decayNs);
+    }
+
+    /**
+     * Adds a socket to the group, or closes it if the group has been closed.
+     *
+     * @return true if the socket was added
+     */
+    boolean addSocket(TrackedSocket socket) {
+        synchronized (this) {
+            if (!closed) {
+                final TrackedSocket[] sockets = Arrays.copyOf(this.sockets, this.sockets.length + 1);
+                sockets[sockets.length - 1] = socket;
+                this.sockets = sockets;
+                socketsCounter.setOrdered(sockets.length);
+                debug("Added socket to {}, sockets => {}", name, sockets.length);
+                return true;
+            }
+        }
+
+        socket.close();
+        return false;
+    }
+
+    /**
+     * Removes a socket from the group, unless that would leave fewer than minSize sockets, and closes it once the
+     * requests still active on it have ended.
+     *
+     * @return true if the socket was removed
+     */
+    boolean removeSocket(TrackedSocket socket, int minSize) {
+        synchronized (this) {
+            final TrackedSocket[] sockets = this.sockets;
+            if (sockets.length <= minSize) {
+                return false;
+            }
+
+            final List<TrackedSocket> remaining = new ArrayList<>(sockets.length);
+            for (TrackedSocket s : sockets) {
+                if (s != socket) {
+                    remaining.add(s);
+                }
+            }
+
+            if (remaining.size() == sockets.length) {
+                return false;
+            }
+
+            this.sockets = remaining.toArray(new TrackedSocket[remaining.size()]);
+            socketsCounter.setOrdered(this.sockets.length);
+            debug("Removed socket from {}, sockets => {}", name, this.sockets.length);
+        }
+
+        socket.retire();
+        return true;
+    }
+
+    /*
+     * Stats
+     */
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of sockets in the group
+     */
+    public int getSize() {
+        return sockets.length;
+    }
+
+    public long getOutstanding() {
+        return outstanding.sum();
+    }
+
+    /**
+     * @return the number of outstanding requests of each socket
+     */
+    public int[] getOutstandingPerSocket() {
+        final TrackedSocket[] sockets = this.sockets;
+        final int[] outstanding = new int[sockets.length];
+        for (int i = 0; i < sockets.length; i++) {
+            outstanding[i] = sockets[i].getOutstanding();
+        }
+
+        return outstanding;
+    }
+
+    /**
+     * @return the latency EWMA of each socket, in nanoseconds
+     */
+    public double[] getLatencyPerSocket() {
+        final long nowNs = System.nanoTime();
+        final TrackedSocket[] sockets = this.sockets;
+        final double[] latency = new double[sockets.length];
+        for (int i = 0; i < sockets.length; i++) {
+            latency[i] = sockets[i].getLatencyNs(nowNs);
+        }
+
+        return latency;
+    }
+
+    /**
+     * @return the time to the first response of the requests answered since the last call to this method, in
+     * nanoseconds
+     */
+    public Histogram getLatencyHistogram() {
+        return latency.getIntervalHistogram();
+    }
+
+    /**
+     * Closes every socket in the group.
+     */
+    @Override
+    public void close() {
+        final TrackedSocket[] sockets;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            sockets = this.sockets;
+            this.sockets = EMPTY;
+        }
+
+        for (TrackedSocket socket : sockets) {
+            socket.close();
+        }
+
+        final TransportCounters counters = TransportCounters.getInstance();
+        counters.free(socketsCounter);
+        counters.free(outstandingRequests);
+        counters.free(requests);
+        counters.free(failures);
+    }
+
+    /*
+     * Inner Classes
+     */
+
+    /**
+     * Passes a request's signals on, and stops tracking it as outstanding at its first response or when it's
+     * cancelled.
+     */
+    private class TrackingSubscriber<T> implements Subscriber<T> {
+        private final Subscriber<? super T> subscriber;
+        private final TrackedSocket socket;
+        private final long startNs;
+        private final AtomicBoolean responded = new AtomicBoolean();
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        TrackingSubscriber(Subscriber<? super T> subscriber, TrackedSocket socket, long startNs) {
+            this.subscriber = subscriber;
+            this.socket = socket;
+            this.startNs = startNs;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                    s.request(n);
+                }
+
+                @Override
+                public void cancel() {
+                    if (responded.compareAndSet(false, true)) {
+                        onCancel(socket);
+                    }
+                    end();
+                    s.cancel();
+                }
+            });
+        }
+
+        @Override
+        public void onNext(T t) {
+            respond();
+            subscriber.onNext(t);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            respond();
+            end();
+            failures.orderedIncrement();
+            subscriber.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            respond();
+            end();
+            subscriber.onComplete();
+        }
+
+        private void respond() {
+            if (!responded.get() && responded.compareAndSet(false, true)) {
+                onResponse(socket, startNs);
+            }
+        }
+
+        private void end() {
+            if (ended.compareAndSet(false, true)) {
+                socket.onEnd(System.nanoTime());
+            }
+        }
+    }
+
+    private enum EmptySubscription implements Subscription {
+        INSTANCE;
+
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+    }
+}
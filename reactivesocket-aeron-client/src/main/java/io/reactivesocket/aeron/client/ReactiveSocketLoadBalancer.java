@@ -0,0 +1,189 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.client;
+
+import io.reactivesocket.ConnectionSetupPayload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.internal.Constants;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Spreads requests across ReactiveSockets to several servers.
+ * <p>
+ * Each request picks two sockets at random and is sent on the one with the lower load, which is the latency EWMA
+ * of the socket multiplied by its outstanding requests plus one. Servers that are slow, or have a backlog of
+ * requests, get less traffic without every request having to look at every socket, and a slow server is tried
+ * again as its latency decays over reactivesocket.aeron.client.latencyDecayMs.
+ */
+public class ReactiveSocketLoadBalancer extends ReactiveSocketGroup {
+
+    private ReactiveSocketLoadBalancer(String name) {
+        super(name, "client load balancer " + name + ": ");
+    }
+
+    /*
+     * Factory Methods
+     */
+
+    /**
+     * Creates a load balancer over started ReactiveSockets.
+     *
+     * @param name the name of the load balancer, used to label its counters
+     */
+    public static ReactiveSocketLoadBalancer create(String name, List<ReactiveSocket> sockets) {
+        final ReactiveSocketLoadBalancer loadBalancer = new ReactiveSocketLoadBalancer(name);
+        for (ReactiveSocket socket : sockets) {
+            loadBalancer.addSocket(socket);
+        }
+
+        return loadBalancer;
+    }
+
+    /**
+     * Connects to each server and creates a load balancer over the connections. As for a single connection,
+     * the addresses responses are sent to must have been added with
+     * {@link AeronClientDuplexConnectionFactory#addSocketAddressToHandleResponses(SocketAddress)}.
+     *
+     * @param name the name of the load balancer, used to label its counters
+     * @throws RuntimeException if a connection can't be established within CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS
+     */
+    public static ReactiveSocketLoadBalancer connect(String name, ConnectionSetupPayload setupPayload, List<? extends SocketAddress> servers) {
+        final List<ReactiveSocket> sockets = new ArrayList<>(servers.size());
+        try {
+            for (SocketAddress server : servers) {
+                final ReactiveSocket socket = ReactiveSocket.fromClientConnection(connect(server), setupPayload);
+                sockets.add(socket);
+                socket.startAndWait();
+            }
+        } catch (RuntimeException e) {
+            for (ReactiveSocket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (Throwable t) {}
+            }
+            throw e;
+        }
+
+        return create(name, sockets);
+    }
+
+    private static AeronClientDuplexConnection connect(SocketAddress server) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<AeronClientDuplexConnection> connection = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        AeronClientDuplexConnectionFactory
+            .getInstance()
+            .createAeronClientDuplexConnection(server)
+            .subscribe(new Subscriber<AeronClientDuplexConnection>() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    s.request(1);
+                }
+
+                @Override
+                public void onNext(AeronClientDuplexConnection c) {
+                    connection.set(c);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    error.set(t);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    latch.countDown();
+                }
+            });
+
+        try {
+            if (!latch.await(Constants.CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("Timed out connecting to server => " + server);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (connection.get() == null) {
+            throw new RuntimeException("Unable to connect to server => " + server, error.get());
+        }
+
+        return connection.get();
+    }
+
+    /**
+     * Adds a started ReactiveSocket to the load balancer. Its latency is unknown until it has answered a request,
+     * so it gets a single request until then.
+     */
+    public void addSocket(ReactiveSocket socket) {
+        addSocket(track(socket));
+    }
+
+    /**
+     * Removes a ReactiveSocket from the load balancer, and closes it once the requests still active on it have
+     * ended.
+     *
+     * @return true if the socket was in the load balancer
+     */
+    public boolean removeSocket(ReactiveSocket socket) {
+        for (TrackedSocket tracked : sockets) {
+            if (tracked.getSocket() == socket) {
+                return removeSocket(tracked, 0);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Picks two different sockets at random, and returns the one with the lower load.
+     */
+    @Override
+    TrackedSocket select() {
+        final TrackedSocket[] sockets = this.sockets;
+        final int size = sockets.length;
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return sockets[0];
+        }
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int a = random.nextInt(size);
+        int b = random.nextInt(size - 1);
+        if (b >= a) {
+            b++;
+        }
+
+        final long nowNs = System.nanoTime();
+        final TrackedSocket first = sockets[a];
+        final TrackedSocket second = sockets[b];
+        return first.getLoad(nowNs) <= second.getLoad(nowNs) ? first : second;
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.client;
+
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.internal.Constants;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A pool of ReactiveSockets to a server, each on its own Aeron session, that routes every request to the socket
+ * with the fewest outstanding requests.
+ * <p>
+ * The pool starts with minSize sockets. A socket is added, up to maxSize, when a request is routed to a socket that
+ * already has reactivesocket.aeron.client.pool.growOutstanding requests outstanding, and a socket beyond minSize
+ * is closed once it has had no open requests for reactivesocket.aeron.client.pool.idleTimeoutMs. Sockets are
+ * created and removed on the pool's executor rather than on the thread sending the request, because creating a
+ * socket waits for its handshake. Sockets are created with the supplied factory. Aeron shares a publication, and
+ * so a session, between everything published to the same channel, so each socket needs a channel of its own, for
+ * instance by running a ReactiveSocketAeronServer on several ports and creating the sockets round-robin across them.
+ */
+public class ReactiveSocketPool extends ReactiveSocketGroup {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r);
+        thread.setName("reactive-socket-aeron-client-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Supplier<Publisher<ReactiveSocket>> socketFactory;
+    private final Executor executor;
+    private final int minSize;
+    private final int maxSize;
+    private final int growOutstanding;
+    private final long idleTimeoutNs;
+
+    /**
+     * The number of sockets being created. A slot is reserved here before a socket is created, so the pool never
+     * creates more than maxSize sockets however many threads are selecting.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean removing = new AtomicBoolean();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    private ReactiveSocketPool(String name, Supplier<Publisher<ReactiveSocket>> socketFactory, Executor executor, int minSize, int maxSize) {
+        super(name, "client pool " + name + ": ");
+        if (minSize < 1 || maxSize < minSize) {
+            close();
+            throw new IllegalArgumentException("invalid pool size, min => " + minSize + ", max => " + maxSize);
+        }
+
+        this.socketFactory = socketFactory;
+        this.executor = executor;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.growOutstanding = Constants.CLIENT_POOL_GROW_OUTSTANDING;
+        this.idleTimeoutNs = TimeUnit.MILLISECONDS.toNanos(Constants.CLIENT_POOL_IDLE_TIMEOUT_MS);
+    }
+
+    /*
+     * Factory Methods
+     */
+
+    /**
+     * Creates a pool and starts creating its first minSize sockets.
+     *
+     * @param name          the name of the pool, used to label its counters
+     * @param socketFactory creates a started ReactiveSocket on a new Aeron session each time its Publisher is
+     *                      subscribed to
+     */
+    public static ReactiveSocketPool create(String name, Supplier<Publisher<ReactiveSocket>> socketFactory, int minSize, int maxSize) {
+        return create(name, socketFactory, EXECUTOR, minSize, maxSize);
+    }
+
+    /**
+     * Creates a pool that creates and removes its sockets on the given executor.
+     *
+     * @param executor runs the tasks that create and remove sockets, which may block while a socket is created
+     */
+    public static ReactiveSocketPool create(String name, Supplier<Publisher<ReactiveSocket>> socketFactory, Executor executor, int minSize, int maxSize) {
+        final ReactiveSocketPool pool = new ReactiveSocketPool(name, socketFactory, executor, minSize, maxSize);
+        for (int i = 0; i < minSize; i++) {
+            pool.grow(minSize);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Waits until the pool has minSize sockets.
+     *
+     * @throws RuntimeException if they haven't been created within CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS
+     */
+    public void startAndWait() {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS);
+        while (getSize() < minSize) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new RuntimeException("Timed out waiting for pool " + name + " to start, sockets => " + getSize());
+            }
+
+            grow(minSize);
+
+            try {
+                TimeUnit.MILLISECONDS.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Picks the socket with the fewest outstanding requests, starting the scan at a different socket each time so
+     * ties are spread across the pool. Grows the pool when the least loaded socket is busy, and removes a socket
+     * that has been idle for too long, without waiting for either.
+     */
+    @Override
+    TrackedSocket select() {
+        final TrackedSocket[] sockets = this.sockets;
+        final int size = sockets.length;
+        if (size == 0) {
+            grow(minSize);
+            return null;
+        }
+
+        final long now = System.nanoTime();
+        final int start = (nextIndex.getAndIncrement() & Integer.MAX_VALUE) % size;
+        TrackedSocket best = null;
+        TrackedSocket idle = null;
+        for (int i = 0; i < size; i++) {
+            final TrackedSocket socket = sockets[(start + i) % size];
+            final int outstanding = socket.getOutstanding();
+            if (best == null || outstanding < best.getOutstanding()) {
+                best = socket;
+            }
+
+            if (isIdle(socket, now)) {
+                idle = socket;
+            }
+        }
+
+        if (best.getOutstanding() >= growOutstanding) {
+            grow(maxSize);
+        } else if (idle != null && idle != best && size > minSize) {
+            remove(idle);
+        }
+
+        return best;
+    }
+
+    /**
+     * @return the outstanding requests as a fraction of what the pool can take before it grows to maxSize
+     */
+    public double getUtilisation() {
+        return (double) getOutstanding() / ((long) maxSize * growOutstanding);
+    }
+
+    private boolean isIdle(TrackedSocket socket, long nowNs) {
+        return socket.getActive() == 0 && nowNs - socket.getLastUsedNs() > idleTimeoutNs;
+    }
+
+    /**
+     * Reserves a slot for a new socket, if the sockets and the sockets being created are fewer than limit, and
+     * creates the socket on the executor.
+     *
+     * @return true if a socket is being created
+     */
+    private boolean grow(int limit) {
+        int pending;
+        do {
+            pending = this.pending.get();
+            if (closed || getSize() + pending >= limit) {
+                return false;
+            }
+        } while (!this.pending.compareAndSet(pending, pending + 1));
+
+        try {
+            executor.execute(this::createSocket);
+        } catch (RejectedExecutionException e) {
+            this.pending.decrementAndGet();
+            error("unable to create socket for pool " + name, e);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Removes an idle socket on the executor. Only one removal is queued at a time, and the socket is checked again
+     * before it is removed in case a request was sent on it in the meantime. A request that selected the socket just
+     * before it was removed still runs, as the socket is only closed once its active requests have ended.
+     */
+    private void remove(TrackedSocket idle) {
+        if (!removing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    if (isIdle(idle, System.nanoTime())) {
+                        removeSocket(idle, minSize);
+                    }
+                } finally {
+                    removing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            removing.set(false);
+        }
+    }
+
+    /*
+     * Runs on the executor in a slot reserved by grow. The socket is added to the pool before the slot is released,
+     * so the pool never looks smaller than it is.
+     */
+    private void createSocket() {
+        if (closed) {
+            pending.decrementAndGet();
+            return;
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+        try {
+            socketFactory.get().subscribe(new Subscriber<ReactiveSocket>() {
+                @Override
+                public void onSubscribe(Subscription s) {
+                    s.request(1);
+                }
+
+                @Override
+                public void onNext(ReactiveSocket socket) {
+                    if (done.compareAndSet(false, true)) {
+                        addSocket(track(socket));
+                        pending.decrementAndGet();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    if (done.compareAndSet(false, true)) {
+                        pending.decrementAndGet();
+                        error("error creating socket for pool " + name, t);
+                    }
+                }
+
+                @Override
+                public void onComplete() {
+                    if (done.compareAndSet(false, true)) {
+                        pending.decrementAndGet();
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            if (done.compareAndSet(false, true)) {
+                pending.decrementAndGet();
+            }
+            error("error creating socket for pool " + name, t);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.client;
+
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.internal.Loggable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A ReactiveSocket in a {@link ReactiveSocketGroup}, with the number of requests waiting for their first response on
+ * it and a moving average of the time to that response. Requests that have been answered but haven't terminated, like
+ * open streams, are counted separately so the socket isn't closed while it's still in use. A socket removed from its
+ * group is retired, and closed once the requests still active on it have ended.
+ * <p>
+ * The latency is a peak EWMA: a sample higher than the average replaces it straight away, so a socket that slows
+ * down is penalised immediately, while lower samples, and time passing without samples, only bring it down
+ * gradually over the decay period. A socket that gets no traffic because it was slow is eventually tried again.
+ */
+class TrackedSocket implements Loggable {
+    /**
+     * The load of a socket with requests outstanding but no latency samples yet, so it isn't sent more requests
+     * until it has answered one.
+     */
+    static final double PENALTY = Double.MAX_VALUE / 2;
+
+    private final ReactiveSocket socket;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    /**
+     * The number of requests that haven't ended, or -1 once the socket has been closed.
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    private volatile boolean retired;
+    private final LongAdder requests = new LongAdder();
+    private final double decayNs;
+    private volatile long lastUsedNs = System.nanoTime();
+
+    private double latencyNs;
+    private long latencyUpdatedNs = System.nanoTime();
+
+    /**
+     * @param decayNs the time constant of the latency EWMA, in nanoseconds
+     */
+    TrackedSocket(ReactiveSocket socket, long decayNs) {
+        this.socket = socket;
+        this.decayNs = decayNs;
+    }
+
+    ReactiveSocket getSocket() {
+        return socket;
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return the number of requests that haven't terminated or been cancelled
+     */
+    int getActive() {
+        return Math.max(0, active.get());
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getLastUsedNs() {
+        return lastUsedNs;
+    }
+
+    /**
+     * Starts a request on the socket.
+     *
+     * @return false if the socket was retired and closed after it was selected, so it can't take the request
+     */
+    boolean onStart(long nowNs) {
+        int active;
+        do {
+            active = this.active.get();
+            if (active < 0) {
+                return false;
+            }
+        } while (!this.active.compareAndSet(active, active + 1));
+
+        lastUsedNs = nowNs;
+        outstanding.incrementAndGet();
+        requests.increment();
+        return true;
+    }
+
+    /**
+     * Called at the first response to a request, which is no longer outstanding even if more responses follow.
+     */
+    void onResponse(long latencyNs, long nowNs) {
+        lastUsedNs = nowNs;
+        outstanding.decrementAndGet();
+        observe(latencyNs, nowNs);
+    }
+
+    /**
+     * Called when a request is cancelled before its first response.
+     */
+    void onCancel() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Called when a request terminates or is cancelled.
+     */
+    void onEnd(long nowNs) {
+        lastUsedNs = nowNs;
+        if (active.decrementAndGet() == 0 && retired) {
+            closeIfInactive();
+        }
+    }
+
+    /**
+     * Stops the socket taking new requests once it has been removed from its group, and closes it when the
+     * requests still active on it have ended.
+     */
+    void retire() {
+        retired = true;
+        closeIfInactive();
+    }
+
+    /**
+     * Closes the socket straight away, for when its group is closed.
+     */
+    void close() {
+        active.set(-1);
+        closeSocket();
+    }
+
+    private void closeIfInactive() {
+        if (active.compareAndSet(0, -1)) {
+            closeSocket();
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (Throwable t) {
+            error("error closing socket", t);
+        }
+    }
+
+    /**
+     * @return the latency EWMA, decayed to now, in nanoseconds
+     */
+    synchronized double getLatencyNs(long nowNs) {
+        observe(0, nowNs);
+        return latencyNs;
+    }
+
+    /**
+     * @return the expected cost of sending this socket another request, which is its latency multiplied by the
+     * number of requests that would be outstanding
+     */
+    synchronized double getLoad(long nowNs) {
+        final double latency = getLatencyNs(nowNs);
+        final int outstanding = this.outstanding.get();
+        if (latency == 0 && outstanding != 0) {
+            return PENALTY + outstanding;
+        }
+
+        return latency * (outstanding + 1);
+    }
+
+    private synchronized void observe(long sampleNs, long nowNs) {
+        final long elapsedNs = Math.max(nowNs - latencyUpdatedNs, 0);
+        latencyUpdatedNs = Math.max(nowNs, latencyUpdatedNs);
+        if (sampleNs > latencyNs) {
+            latencyNs = sampleNs;
+        } else {
+            final double weight = Math.exp(-elapsedNs / decayNs);
+            latencyNs = latencyNs * weight + sampleNs * (1 - weight);
+        }
+    }
+}
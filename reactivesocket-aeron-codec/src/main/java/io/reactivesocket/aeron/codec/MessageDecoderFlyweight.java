@@ -0,0 +1,42 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.codec;
+
+import uk.co.real_logic.agrona.DirectBuffer;
+
+/**
+ * A flyweight that decodes a message of a schema in place, in the style of the decoders SBE generates. The
+ * message's fields are read straight from the wrapped buffer by the flyweight's getters.
+ */
+public interface MessageDecoderFlyweight {
+    int sbeTemplateId();
+
+    int sbeSchemaId();
+
+    /**
+     * Wraps the buffer to decode a message at the offset, which is after the message header.
+     *
+     * @param actingBlockLength the length of the fixed length block the message was encoded with
+     * @param actingVersion     the version of the schema the message was encoded with, so fields added in later
+     *                          versions can be skipped
+     */
+    MessageDecoderFlyweight wrap(DirectBuffer buffer, int offset, int actingBlockLength, int actingVersion);
+
+    /**
+     * @return the length of the message, not including the message header
+     */
+    int encodedLength();
+}
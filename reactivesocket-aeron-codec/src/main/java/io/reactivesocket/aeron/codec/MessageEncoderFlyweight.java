@@ -0,0 +1,45 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.codec;
+
+import uk.co.real_logic.agrona.MutableDirectBuffer;
+
+/**
+ * A flyweight that encodes a message of a schema in place, in the style of the encoders SBE generates. The
+ * message's fields are written straight to the wrapped buffer by the flyweight's setters.
+ */
+public interface MessageEncoderFlyweight {
+    /**
+     * @return the length of the fixed length block of the message in the version of the schema this encodes
+     */
+    int sbeBlockLength();
+
+    int sbeTemplateId();
+
+    int sbeSchemaId();
+
+    int sbeSchemaVersion();
+
+    /**
+     * Wraps the buffer to encode a message at the offset, which is after the message header.
+     */
+    MessageEncoderFlyweight wrap(MutableDirectBuffer buffer, int offset);
+
+    /**
+     * @return the length of the message encoded so far, not including the message header
+     */
+    int encodedLength();
+}
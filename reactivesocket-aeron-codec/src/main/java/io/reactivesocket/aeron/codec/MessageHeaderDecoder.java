@@ -0,0 +1,60 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.codec;
+
+import uk.co.real_logic.agrona.DirectBuffer;
+
+import static io.reactivesocket.aeron.codec.MessageHeaderEncoder.BLOCK_LENGTH_OFFSET;
+import static io.reactivesocket.aeron.codec.MessageHeaderEncoder.BYTE_ORDER;
+import static io.reactivesocket.aeron.codec.MessageHeaderEncoder.SCHEMA_ID_OFFSET;
+import static io.reactivesocket.aeron.codec.MessageHeaderEncoder.TEMPLATE_ID_OFFSET;
+import static io.reactivesocket.aeron.codec.MessageHeaderEncoder.VERSION_OFFSET;
+
+/**
+ * Reads the header written by {@link MessageHeaderEncoder} in place.
+ */
+public final class MessageHeaderDecoder {
+    public static final int ENCODED_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH;
+
+    private DirectBuffer buffer;
+    private int offset;
+
+    public MessageHeaderDecoder wrap(DirectBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public int encodedLength() {
+        return ENCODED_LENGTH;
+    }
+
+    public int blockLength() {
+        return buffer.getShort(offset + BLOCK_LENGTH_OFFSET, BYTE_ORDER) & 0xFFFF;
+    }
+
+    public int templateId() {
+        return buffer.getShort(offset + TEMPLATE_ID_OFFSET, BYTE_ORDER) & 0xFFFF;
+    }
+
+    public int schemaId() {
+        return buffer.getShort(offset + SCHEMA_ID_OFFSET, BYTE_ORDER) & 0xFFFF;
+    }
+
+    public int version() {
+        return buffer.getShort(offset + VERSION_OFFSET, BYTE_ORDER) & 0xFFFF;
+    }
+}
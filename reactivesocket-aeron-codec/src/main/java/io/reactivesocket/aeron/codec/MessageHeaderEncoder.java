@@ -0,0 +1,68 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.codec;
+
+import uk.co.real_logic.agrona.MutableDirectBuffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * Writes the header at the start of every encoded message, in the layout of SBE's standard message header: the
+ * length of the message's fixed length block, the id of its template and schema, and the version of the schema,
+ * each as an unsigned little endian short.
+ */
+public final class MessageHeaderEncoder {
+    public static final int ENCODED_LENGTH = 8;
+
+    static final int BLOCK_LENGTH_OFFSET = 0;
+    static final int TEMPLATE_ID_OFFSET = 2;
+    static final int SCHEMA_ID_OFFSET = 4;
+    static final int VERSION_OFFSET = 6;
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private MutableDirectBuffer buffer;
+    private int offset;
+
+    public MessageHeaderEncoder wrap(MutableDirectBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public int encodedLength() {
+        return ENCODED_LENGTH;
+    }
+
+    public MessageHeaderEncoder blockLength(int blockLength) {
+        buffer.putShort(offset + BLOCK_LENGTH_OFFSET, (short) blockLength, BYTE_ORDER);
+        return this;
+    }
+
+    public MessageHeaderEncoder templateId(int templateId) {
+        buffer.putShort(offset + TEMPLATE_ID_OFFSET, (short) templateId, BYTE_ORDER);
+        return this;
+    }
+
+    public MessageHeaderEncoder schemaId(int schemaId) {
+        buffer.putShort(offset + SCHEMA_ID_OFFSET, (short) schemaId, BYTE_ORDER);
+        return this;
+    }
+
+    public MessageHeaderEncoder version(int version) {
+        buffer.putShort(offset + VERSION_OFFSET, (short) version, BYTE_ORDER);
+        return this;
+    }
+}
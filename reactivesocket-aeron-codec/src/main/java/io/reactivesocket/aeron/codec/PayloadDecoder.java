@@ -0,0 +1,117 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.codec;
+
+import io.reactivesocket.Payload;
+import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes the data and metadata of a received {@link Payload} in place, without copying them out of the
+ * payload's buffers. The messages encoded by a {@link PayloadEncoder} are read with {@link MessageDecoderFlyweight}s,
+ * after checking their message header is for the message expected; anything else can be read from
+ * {@link #dataBuffer()} and {@link #metadataBuffer()}.
+ * <p>
+ * A decoder is reusable, and must only be used by one thread at a time. What it decodes is only valid for as long
+ * as the payload's buffers are.
+ */
+public class PayloadDecoder {
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final UnsafeBuffer data = new UnsafeBuffer(new byte[0]);
+    private final UnsafeBuffer metadata = new UnsafeBuffer(new byte[0]);
+
+    /**
+     * Wraps the remaining bytes of the payload's data and metadata.
+     */
+    public PayloadDecoder wrap(Payload payload) {
+        wrap(data, payload.getData());
+        wrap(metadata, payload.getMetadata());
+        return this;
+    }
+
+    public DirectBuffer dataBuffer() {
+        return data;
+    }
+
+    public int dataLength() {
+        return data.capacity();
+    }
+
+    /**
+     * @return the message header at the start of the data, to find out which message it is
+     */
+    public MessageHeaderDecoder dataHeader() {
+        return header(data);
+    }
+
+    /**
+     * Wraps the message to decode the data.
+     *
+     * @throws IllegalStateException if the data isn't a message of the message's template and schema
+     */
+    public <T extends MessageDecoderFlyweight> T decodeData(T message) {
+        return decode(data, message);
+    }
+
+    public DirectBuffer metadataBuffer() {
+        return metadata;
+    }
+
+    public int metadataLength() {
+        return metadata.capacity();
+    }
+
+    /**
+     * @return the message header at the start of the metadata, to find out which message it is
+     */
+    public MessageHeaderDecoder metadataHeader() {
+        return header(metadata);
+    }
+
+    /**
+     * Wraps the message to decode the metadata.
+     *
+     * @throws IllegalStateException if the metadata isn't a message of the message's template and schema
+     */
+    public <T extends MessageDecoderFlyweight> T decodeMetadata(T message) {
+        return decode(metadata, message);
+    }
+
+    private MessageHeaderDecoder header(UnsafeBuffer buffer) {
+        if (buffer.capacity() < MessageHeaderDecoder.ENCODED_LENGTH) {
+            throw new IllegalStateException("Only " + buffer.capacity() + " bytes, which is too short for a message header");
+        }
+
+        return headerDecoder.wrap(buffer, 0);
+    }
+
+    private <T extends MessageDecoderFlyweight> T decode(UnsafeBuffer buffer, T message) {
+        final MessageHeaderDecoder header = header(buffer);
+        if (header.templateId() != message.sbeTemplateId() || header.schemaId() != message.sbeSchemaId()) {
+            throw new IllegalStateException("Expected template id " + message.sbeTemplateId() + " of schema id " + message.sbeSchemaId()
+                + " but was template id " + header.templateId() + " of schema id " + header.schemaId());
+        }
+
+        message.wrap(buffer, MessageHeaderDecoder.ENCODED_LENGTH, header.blockLength(), header.version());
+        return message;
+    }
+
+    private static void wrap(UnsafeBuffer buffer, ByteBuffer byteBuffer) {
+        buffer.wrap(byteBuffer, byteBuffer.position(), byteBuffer.remaining());
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.codec;
+
+import io.reactivesocket.Frame;
+import io.reactivesocket.Payload;
+import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reusable {@link Payload} whose data and metadata are encoded in place by {@link MessageEncoderFlyweight}s,
+ * into direct buffers allocated once, so sending a message doesn't build a heap buffer for it. Each is encoded as
+ * a {@link MessageHeaderEncoder message header} followed by the message, so the receiver can decode it in place
+ * with a {@link PayloadDecoder}.
+ * <p>
+ * The ByteBuffers returned by {@link #getData()} and {@link #getMetadata()} are views of the encoder's buffers,
+ * so the encoder must not be changed until ReactiveSocket has copied the payload into its frame, which it does
+ * when the request or response is made. An encoder must only be used by one thread at a time.
+ */
+public class PayloadEncoder implements Payload {
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final Part data;
+    private final Part metadata;
+
+    /**
+     * @param dataCapacity     the most bytes the data can be encoded in, including the message header
+     * @param metadataCapacity the most bytes the metadata can be encoded in, including the message header, or 0
+     *                         if the payloads never have metadata
+     */
+    public PayloadEncoder(int dataCapacity, int metadataCapacity) {
+        this.data = new Part(dataCapacity);
+        this.metadata = new Part(metadataCapacity);
+    }
+
+    /**
+     * Writes the message header for the message and wraps it to encode the data after the header.
+     *
+     * @return the message, ready for its fields to be set
+     */
+    public <T extends MessageEncoderFlyweight> T encodeData(T message) {
+        return data.encode(message);
+    }
+
+    /**
+     * Writes the message header for the message and wraps it to encode the metadata after the header.
+     *
+     * @return the message, ready for its fields to be set
+     */
+    public <T extends MessageEncoderFlyweight> T encodeMetadata(T message) {
+        return metadata.encode(message);
+    }
+
+    /**
+     * Sets the data to bytes that aren't a message of a schema, without a message header.
+     */
+    public PayloadEncoder putData(DirectBuffer src, int offset, int length) {
+        data.put(src, offset, length);
+        return this;
+    }
+
+    /**
+     * Sets the metadata to bytes that aren't a message of a schema, without a message header.
+     */
+    public PayloadEncoder putMetadata(DirectBuffer src, int offset, int length) {
+        metadata.put(src, offset, length);
+        return this;
+    }
+
+    /**
+     * Empties the data and metadata.
+     */
+    public PayloadEncoder clear() {
+        data.clear();
+        metadata.clear();
+        return this;
+    }
+
+    @Override
+    public ByteBuffer getData() {
+        return data.view();
+    }
+
+    @Override
+    public ByteBuffer getMetadata() {
+        return metadata.view();
+    }
+
+    private final class Part {
+        private final UnsafeBuffer buffer;
+        private final ByteBuffer view;
+        private MessageEncoderFlyweight message;
+        private int length;
+
+        Part(int capacity) {
+            final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(capacity);
+            this.buffer = new UnsafeBuffer(byteBuffer);
+            this.view = byteBuffer.duplicate();
+        }
+
+        <T extends MessageEncoderFlyweight> T encode(T message) {
+            headerEncoder
+                .wrap(buffer, 0)
+                .blockLength(message.sbeBlockLength())
+                .templateId(message.sbeTemplateId())
+                .schemaId(message.sbeSchemaId())
+                .version(message.sbeSchemaVersion());
+            message.wrap(buffer, MessageHeaderEncoder.ENCODED_LENGTH);
+            this.message = message;
+            return message;
+        }
+
+        void put(DirectBuffer src, int offset, int length) {
+            buffer.putBytes(0, src, offset, length);
+            this.message = null;
+            this.length = length;
+        }
+
+        void clear() {
+            this.message = null;
+            this.length = 0;
+        }
+
+        ByteBuffer view() {
+            // The message's length is only known once its fields have been set
+            final int encodedLength = message != null ? MessageHeaderEncoder.ENCODED_LENGTH + message.encodedLength() : length;
+            if (encodedLength == 0) {
+                return Frame.NULL_BYTEBUFFER;
+            }
+
+            view.clear();
+            view.limit(encodedLength);
+            return view;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package io.reactivesocket.aeron.codec;
+
+import io.reactivesocket.Payload;
+import org.junit.Assert;
+import org.junit.Test;
+import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.MutableDirectBuffer;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class PayloadCodecTest {
+    private final PayloadEncoder encoder = new PayloadEncoder(64, 64);
+    private final PayloadDecoder decoder = new PayloadDecoder();
+
+    @Test
+    public void testDecodesEncodedDataAndMetadata() {
+        encoder.encodeData(new QuoteEncoder()).id(42).price(1234);
+        encoder.encodeMetadata(new QuoteEncoder()).id(7).price(-1);
+
+        Assert.assertEquals(MessageHeaderEncoder.ENCODED_LENGTH + QuoteEncoder.BLOCK_LENGTH, encoder.getData().remaining());
+
+        decoder.wrap(encoder);
+        Assert.assertEquals(QuoteEncoder.TEMPLATE_ID, decoder.dataHeader().templateId());
+        Assert.assertEquals(QuoteEncoder.SCHEMA_ID, decoder.dataHeader().schemaId());
+
+        QuoteDecoder data = decoder.decodeData(new QuoteDecoder());
+        Assert.assertEquals(42, data.id());
+        Assert.assertEquals(1234, data.price());
+
+        QuoteDecoder metadata = decoder.decodeMetadata(new QuoteDecoder());
+        Assert.assertEquals(7, metadata.id());
+        Assert.assertEquals(-1, metadata.price());
+    }
+
+    @Test
+    public void testDecodesInPlace() {
+        QuoteEncoder quote = encoder.encodeData(new QuoteEncoder()).id(1).price(100);
+        encoder.putMetadata(new UnsafeBuffer(new byte[1]), 0, 1);
+
+        QuoteDecoder decoded = decoder.wrap(encoder).decodeData(new QuoteDecoder());
+        Assert.assertEquals(100, decoded.price());
+
+        quote.price(200);
+        Assert.assertEquals(200, decoded.price());
+    }
+
+    @Test
+    public void testDecodesFromPositionOfHeapBuffers() {
+        encoder.encodeData(new QuoteEncoder()).id(3).price(300);
+        ByteBuffer encoded = encoder.getData();
+
+        ByteBuffer received = ByteBuffer.allocate(encoded.remaining() + 5);
+        received.position(5);
+        received.put(encoded);
+        received.position(5);
+
+        QuoteDecoder decoded = decoder.wrap(payload(received, ByteBuffer.wrap(new byte[] { 1, 2 }))).decodeData(new QuoteDecoder());
+        Assert.assertEquals(3, decoded.id());
+        Assert.assertEquals(300, decoded.price());
+        Assert.assertEquals(2, decoder.metadataLength());
+        Assert.assertEquals(2, decoder.metadataBuffer().getByte(1));
+    }
+
+    @Test
+    public void testDecodesMessageOfNewerVersion() {
+        encoder.encodeData(new QuoteEncoder() {
+            @Override
+            public int sbeBlockLength() {
+                return BLOCK_LENGTH + 8;
+            }
+
+            @Override
+            public int sbeSchemaVersion() {
+                return 1;
+            }
+        }).id(5).price(500);
+
+        decoder.wrap(payload(encoder.getData(), ByteBuffer.allocate(0)));
+        Assert.assertEquals(1, decoder.dataHeader().version());
+
+        QuoteDecoder decoded = decoder.decodeData(new QuoteDecoder());
+        Assert.assertEquals(5, decoded.id());
+        Assert.assertEquals(500, decoded.price());
+        Assert.assertEquals(QuoteEncoder.BLOCK_LENGTH + 8, decoded.encodedLength());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectsMessageOfAnotherTemplate() {
+        encoder.putData(new UnsafeBuffer(new byte[MessageHeaderEncoder.ENCODED_LENGTH + QuoteEncoder.BLOCK_LENGTH]), 0, MessageHeaderEncoder.ENCODED_LENGTH + QuoteEncoder.BLOCK_LENGTH);
+        decoder.wrap(payload(encoder.getData(), ByteBuffer.allocate(0))).decodeData(new QuoteDecoder());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectsDataTooShortForHeader() {
+        decoder.wrap(payload(ByteBuffer.allocate(3), ByteBuffer.allocate(0))).dataHeader();
+    }
+
+    private static Payload payload(ByteBuffer data, ByteBuffer metadata) {
+        return new Payload() {
+            @Override
+            public ByteBuffer getData() {
+                return data;
+            }
+
+            @Override
+            public ByteBuffer getMetadata() {
+                return metadata;
+            }
+        };
+    }
+
+    static class QuoteEncoder implements MessageEncoderFlyweight {
+        static final int BLOCK_LENGTH = 12;
+        static final int TEMPLATE_ID = 1;
+        static final int SCHEMA_ID = 100;
+
+        private MutableDirectBuffer buffer;
+        private int offset;
+
+        @Override
+        public int sbeBlockLength() {
+            return BLOCK_LENGTH;
+        }
+
+        @Override
+        public int sbeTemplateId() {
+            return TEMPLATE_ID;
+        }
+
+        @Override
+        public int sbeSchemaId() {
+            return SCHEMA_ID;
+        }
+
+        @Override
+        public int sbeSchemaVersion() {
+            return 0;
+        }
+
+        @Override
+        public QuoteEncoder wrap(MutableDirectBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+            return this;
+        }
+
+        @Override
+        public int encodedLength() {
+            return sbeBlockLength();
+        }
+
+        QuoteEncoder id(long id) {
+            buffer.putLong(offset, id, ByteOrder.LITTLE_ENDIAN);
+            return this;
+        }
+
+        QuoteEncoder price(int price) {
+            buffer.putInt(offset + 8, price, ByteOrder.LITTLE_ENDIAN);
+            return this;
+        }
+    }
+
+    static class QuoteDecoder implements MessageDecoderFlyweight {
+        private DirectBuffer buffer;
+        private int offset;
+        private int actingBlockLength;
+
+        @Override
+        public int sbeTemplateId() {
+            return QuoteEncoder.TEMPLATE_ID;
+        }
+
+        @Override
+        public int sbeSchemaId() {
+            return QuoteEncoder.SCHEMA_ID;
+        }
+
+        @Override
+        public QuoteDecoder wrap(DirectBuffer buffer, int offset, int actingBlockLength, int actingVersion) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.actingBlockLength = actingBlockLength;
+            return this;
+        }
+
+        @Override
+        public int encodedLength() {
+            return actingBlockLength;
+        }
+
+        long id() {
+            return buffer.getLong(offset, ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int price() {
+            return buffer.getInt(offset + 8, ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
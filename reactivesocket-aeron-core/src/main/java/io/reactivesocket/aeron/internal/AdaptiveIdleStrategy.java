@@ -0,0 +1,104 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import uk.co.real_logic.agrona.concurrent.IdleStrategy;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Idle strategy that adapts to how busy its thread is. It busy spins until no work has been done for
+ * spinPeriodNs, then yields until no work has been done for yieldPeriodNs, and after that parks, doubling the
+ * park period each time from minParkPeriodNs up to maxParkPeriodNs. Any work resets it to spinning.
+ * <p>
+ * A thread under load never parks, while a thread with nothing to do settles into parking for maxParkPeriodNs,
+ * which is the longest it takes to notice new work once it has gone idle.
+ * <p>
+ * Like the other idle strategies this is stateful, so each thread needs its own instance.
+ */
+public class AdaptiveIdleStrategy implements IdleStrategy {
+    private final long spinPeriodNs;
+    private final long yieldPeriodNs;
+    private final long minParkPeriodNs;
+    private final long maxParkPeriodNs;
+
+    private long idleSince;
+    private long parkPeriodNs;
+
+    /**
+     * @param spinPeriodNs    how long to busy spin after the last work was done
+     * @param yieldPeriodNs   how long after the last work was done to yield before parking
+     * @param minParkPeriodNs the first park period
+     * @param maxParkPeriodNs the longest park period, the wake-up latency once idle
+     */
+    public AdaptiveIdleStrategy(long spinPeriodNs, long yieldPeriodNs, long minParkPeriodNs, long maxParkPeriodNs) {
+        if (yieldPeriodNs < spinPeriodNs) {
+            throw new IllegalArgumentException("yieldPeriodNs must be greater than or equal to spinPeriodNs");
+        }
+
+        if (minParkPeriodNs <= 0 || maxParkPeriodNs < minParkPeriodNs) {
+            throw new IllegalArgumentException("maxParkPeriodNs must be greater than or equal to minParkPeriodNs, which must be positive");
+        }
+
+        this.spinPeriodNs = spinPeriodNs;
+        this.yieldPeriodNs = yieldPeriodNs;
+        this.minParkPeriodNs = minParkPeriodNs;
+        this.maxParkPeriodNs = maxParkPeriodNs;
+        this.parkPeriodNs = minParkPeriodNs;
+    }
+
+    @Override
+    public void idle(int workCount) {
+        if (workCount > 0) {
+            idleSince = 0;
+            parkPeriodNs = minParkPeriodNs;
+            return;
+        }
+
+        final long now = System.nanoTime();
+        if (idleSince == 0) {
+            idleSince = now;
+            return;
+        }
+
+        final long idleNs = now - idleSince;
+        if (idleNs < spinPeriodNs) {
+            return;
+        } else if (idleNs < yieldPeriodNs) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkPeriodNs);
+            parkPeriodNs = Math.min(parkPeriodNs << 1, maxParkPeriodNs);
+        }
+    }
+
+    /**
+     * @return the period the next park will last if the thread stays idle
+     */
+    long getParkPeriodNs() {
+        return parkPeriodNs;
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveIdleStrategy{" +
+            "spinPeriodNs=" + spinPeriodNs +
+            ", yieldPeriodNs=" + yieldPeriodNs +
+            ", minParkPeriodNs=" + minParkPeriodNs +
+            ", maxParkPeriodNs=" + maxParkPeriodNs +
+            '}';
+    }
+}
@@ -17,10 +17,14 @@ package io.reactivesocket.aeron.internal;
 
 import uk.co.real_logic.aeron.Publication;
 import uk.co.real_logic.aeron.logbuffer.BufferClaim;
+import uk.co.real_logic.aeron.protocol.DataHeaderFlyweight;
 import uk.co.real_logic.agrona.MutableDirectBuffer;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
 import uk.co.real_logic.agrona.concurrent.OneToOneConcurrentArrayQueue;
 import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
 
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import static io.reactivesocket.aeron.internal.Constants.DEFAULT_OFFER_TO_AERON_TIMEOUT_MS;
@@ -30,11 +34,25 @@ import static io.reactivesocket.aeron.internal.Constants.DEFAULT_OFFER_TO_AERON_
  */
 public class AeronUtil implements Loggable {
 
+    /**
+     * The longest message that can be sent with tryClaim, which is the MTU less Aeron's data frame header. Longer
+     * messages are sent with offer, which fragments them.
+     */
+    public static final int MAX_CLAIM_LENGTH = Constants.AERON_MTU_SIZE - DataHeaderFlyweight.HEADER_LENGTH;
+
     private static final ThreadLocal<BufferClaim> bufferClaims = ThreadLocal.withInitial(BufferClaim::new);
 
     private static final ThreadLocal<OneToOneConcurrentArrayQueue<MutableDirectBuffer>> unsafeBuffers
         = ThreadLocal.withInitial(() -> new OneToOneConcurrentArrayQueue<>(16));
 
+    private static final AtomicCounter backPressured = TransportCounters.getInstance().newCounter("aeron: back pressured");
+    private static final AtomicCounter adminAction = TransportCounters.getInstance().newCounter("aeron: admin action");
+    private static final AtomicCounter notConnected = TransportCounters.getInstance().newCounter("aeron: not connected");
+    private static final AtomicCounter bufferPoolHits = TransportCounters.getInstance().newCounter("aeron: direct buffer pool hits");
+    private static final AtomicCounter bufferPoolMisses = TransportCounters.getInstance().newCounter("aeron: direct buffer pool misses");
+
+    private static final ConcurrentHashMap<Publication, PublicationStats> publicationStats = new ConcurrentHashMap<>();
+
     /**
      * Sends a message using offer. This method will spin-lock if Aeron signals back pressure.
      * <p>
@@ -49,29 +67,43 @@ public class AeronUtil implements Loggable {
             throw new NotConnectedException();
         }
 
+        final PublicationStats stats = getPublicationStats(publication);
         final MutableDirectBuffer buffer = getDirectBuffer(length);
         fillBuffer.fill(0, buffer);
         final long start = System.nanoTime();
+        long attempts = 0;
         do {
             final long current = System.nanoTime();
             if ((current - start) > timeUnit.toNanos(timeout)) {
+                stats.onTimeout();
+                stats.onBlocked(current - start, attempts);
                 throw new TimedOutException();
             }
 
-            final long offer = publication.offer(buffer);
+            final long offer = publication.offer(buffer, 0, length);
+            attempts++;
+            stats.onResult(offer);
             if (offer >= 0) {
                 break;
             } else if (Publication.NOT_CONNECTED == offer) {
+                notConnected.increment();
+                EventLog.getInstance().record(EventCode.NOT_CONNECTED, stats.getSessionId());
                 throw new NotConnectedException();
+            } else {
+                recordFailure(offer);
             }
         } while (true);
 
+        if (attempts > 1) {
+            stats.onBlocked(System.nanoTime() - start, attempts);
+        }
+
         recycleDirectBuffer(buffer);
     }
 
     /**
      * Sends a message using tryClaim. This method will spin-lock if Aeron signals back pressure. The message
-     * being sent needs to be equal or smaller than Aeron's MTU size or an exception will be thrown.
+     * being sent needs to be no longer than {@link #MAX_CLAIM_LENGTH} or an exception will be thrown.
      * <p>
      * In order to use this method of sending data you need to know the length of data.
      *
@@ -85,15 +117,21 @@ public class AeronUtil implements Loggable {
             throw new NotConnectedException();
         }
 
+        final PublicationStats stats = getPublicationStats(publication);
         final BufferClaim bufferClaim = bufferClaims.get();
         final long start = System.nanoTime();
+        long attempts = 0;
         do {
             final long current = System.nanoTime();
             if ((current - start) > timeUnit.toNanos(timeout)) {
+                stats.onTimeout();
+                stats.onBlocked(current - start, attempts);
                 throw new TimedOutException();
             }
 
             final long offer = publication.tryClaim(length, bufferClaim);
+            attempts++;
+            stats.onResult(offer);
             if (offer >= 0) {
                 try {
                     final MutableDirectBuffer buffer = bufferClaim.buffer();
@@ -104,14 +142,22 @@ public class AeronUtil implements Loggable {
                     bufferClaim.commit();
                 }
             } else if (Publication.NOT_CONNECTED == offer) {
+                notConnected.increment();
+                EventLog.getInstance().record(EventCode.NOT_CONNECTED, stats.getSessionId());
                 throw new NotConnectedException();
+            } else {
+                recordFailure(offer);
             }
         } while (true);
+
+        if (attempts > 1) {
+            stats.onBlocked(System.nanoTime() - start, attempts);
+        }
     }
 
     /**
-     * Attempts to send the data using tryClaim. If the message data length is large then the Aeron MTU
-     * size it will use offer instead.
+     * Attempts to send the data using tryClaim. If the message is longer than {@link #MAX_CLAIM_LENGTH} it
+     * will use offer instead.
      *
      * @param publication publication to send the message on
      * @param fillBuffer  closure passed in to fill a {@link uk.co.real_logic.agrona.MutableDirectBuffer}
@@ -123,13 +169,104 @@ public class AeronUtil implements Loggable {
     }
 
     public static void tryClaimOrOffer(Publication publication, BufferFiller fillBuffer, int length, int timeout, TimeUnit timeUnit) {
-        if (length < Constants.AERON_MTU_SIZE) {
+        if (length <= MAX_CLAIM_LENGTH) {
             tryClaim(publication, fillBuffer, length, timeout, timeUnit);
         } else {
             offer(publication, fillBuffer, length, timeout, timeUnit);
         }
     }
 
+    /**
+     * Makes a single attempt to send the data using tryClaim, or offer if the message is longer than
+     * {@link #MAX_CLAIM_LENGTH}. This method never spins - if Aeron signals back pressure, or the publication
+     * isn't connected yet, it returns false and it is up to the caller to try again later. Callers that retry
+     * should report how long the send was blocked with {@link PublicationStats#onBlocked(long, long)}.
+     *
+     * @param publication publication to send the message on
+     * @param fillBuffer  closure passed in to fill a {@link uk.co.real_logic.agrona.MutableDirectBuffer}
+     *                    that is send over Aeron
+     * @param length      the length of data
+     * @return true if the message was sent, otherwise false
+     */
+    public static boolean tryClaimOrOfferOnce(Publication publication, BufferFiller fillBuffer, int length) {
+        if (publication.isClosed()) {
+            throw new NotConnectedException();
+        }
+
+        final PublicationStats stats = getPublicationStats(publication);
+        if (length <= MAX_CLAIM_LENGTH) {
+            final BufferClaim bufferClaim = bufferClaims.get();
+            final long offer = publication.tryClaim(length, bufferClaim);
+            stats.onResult(offer);
+            if (offer >= 0) {
+                try {
+                    fillBuffer.fill(bufferClaim.offset(), bufferClaim.buffer());
+                } finally {
+                    bufferClaim.commit();
+                }
+                return true;
+            }
+            recordFailure(offer);
+        } else {
+            final MutableDirectBuffer buffer = getDirectBuffer(length);
+            try {
+                fillBuffer.fill(0, buffer);
+                final long offer = publication.offer(buffer, 0, length);
+                stats.onResult(offer);
+                if (offer >= 0) {
+                    return true;
+                }
+                recordFailure(offer);
+            } finally {
+                recycleDirectBuffer(buffer);
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the send stats for a publication, creating them the first time the publication is used.
+     *
+     * @param publication the publication
+     * @return the stats for the publication
+     */
+    public static PublicationStats getPublicationStats(Publication publication) {
+        PublicationStats stats = publicationStats.get(publication);
+        if (stats == null) {
+            stats = publicationStats.computeIfAbsent(publication,
+                p -> new PublicationStats(p.sessionId(), p.streamId(), p.channel()));
+        }
+
+        return stats;
+    }
+
+    /**
+     * @return the send stats of every publication that is in use
+     */
+    public static Collection<PublicationStats> getPublicationStats() {
+        return publicationStats.values();
+    }
+
+    /**
+     * Removes the send stats for a publication. Call this when the publication is closed.
+     *
+     * @param publication the publication
+     */
+    public static void removePublicationStats(Publication publication) {
+        publicationStats.remove(publication);
+    }
+
+    private static void recordFailure(long result) {
+        if (Publication.BACK_PRESSURED == result) {
+            backPressured.increment();
+        } else if (Publication.ADMIN_ACTION == result) {
+            adminAction.increment();
+        } else if (Publication.NOT_CONNECTED == result) {
+            notConnected.increment();
+        }
+    }
+
 
     /**
      * Try to get a MutableDirectBuffer from a thread-safe pool for a given length. If the buffer found
@@ -142,9 +279,11 @@ public class AeronUtil implements Loggable {
         OneToOneConcurrentArrayQueue<MutableDirectBuffer> queue = unsafeBuffers.get();
         MutableDirectBuffer buffer = queue.poll();
 
-        if (buffer != null && buffer.capacity() < length) {
+        if (buffer != null && buffer.capacity() >= length) {
+            bufferPoolHits.increment();
             return buffer;
         } else {
+            bufferPoolMisses.increment();
             byte[] bytes = new byte[length];
             buffer = new UnsafeBuffer(bytes);
             return buffer;
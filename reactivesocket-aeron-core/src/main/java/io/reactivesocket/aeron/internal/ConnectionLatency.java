@@ -0,0 +1,114 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import io.reactivesocket.FrameType;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The latency histograms of a connection, with a recorder for each ReactiveSocket frame type and
+ * {@link LatencyStage}. A recorder is only created the first time a latency is recorded for its frame type and
+ * stage, so a connection only pays for the kinds of frames it sends and receives.
+ * <p>
+ * The recorders are single writer recorders, so latencies must only be recorded from the thread polling the
+ * connection. The histograms can be read from any thread. Get one with {@link LatencyMetrics#newConnection(String)}.
+ */
+public class ConnectionLatency {
+    /**
+     * Latencies are clamped to this, which keeps each recorder to a few tens of kilobytes.
+     */
+    static final long HIGHEST_TRACKABLE_NS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private static final FrameType[] FRAME_TYPES = FrameType.values();
+
+    private static final LatencyStage[] STAGES = LatencyStage.values();
+
+    private final String name;
+
+    private final AtomicReferenceArray<SingleWriterRecorder> recorders;
+
+    ConnectionLatency(String name) {
+        this.name = name;
+        this.recorders = new AtomicReferenceArray<>(FRAME_TYPES.length * STAGES.length);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records the time a frame spent in a stage. Must only be called from the thread polling the connection.
+     *
+     * @param type      the type of the frame
+     * @param stage     the stage the time was spent in
+     * @param latencyNs the time spent, in nanoseconds
+     */
+    public void record(FrameType type, LatencyStage stage, long latencyNs) {
+        final int index = index(type, stage);
+        SingleWriterRecorder recorder = recorders.get(index);
+        if (recorder == null) {
+            recorder = new SingleWriterRecorder(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+            recorders.lazySet(index, recorder);
+        }
+
+        recorder.recordValue(Math.min(HIGHEST_TRACKABLE_NS, Math.max(0, latencyNs)));
+    }
+
+    /**
+     * Gets the latencies recorded for a frame type and stage since the last time they were read.
+     *
+     * @return the histogram, or null if nothing has ever been recorded for the frame type and stage
+     */
+    public Histogram getIntervalHistogram(FrameType type, LatencyStage stage) {
+        final SingleWriterRecorder recorder = recorders.get(index(type, stage));
+        return recorder == null ? null : recorder.getIntervalHistogram();
+    }
+
+    /**
+     * Reads the latencies recorded since the last time they were read, for every frame type and stage that has
+     * a recorder.
+     */
+    void forEachIntervalHistogram(IntervalHistogramConsumer consumer) {
+        for (int i = 0; i < recorders.length(); i++) {
+            final SingleWriterRecorder recorder = recorders.get(i);
+            if (recorder != null) {
+                consumer.accept(FRAME_TYPES[i / STAGES.length], STAGES[i % STAGES.length], recorder.getIntervalHistogram());
+            }
+        }
+    }
+
+    private static int index(FrameType type, LatencyStage stage) {
+        return type.ordinal() * STAGES.length + stage.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionLatency{" +
+            "name='" + name + '\'' +
+            '}';
+    }
+
+    @FunctionalInterface
+    interface IntervalHistogramConsumer {
+        void accept(FrameType type, LatencyStage stage, Histogram histogram);
+    }
+}
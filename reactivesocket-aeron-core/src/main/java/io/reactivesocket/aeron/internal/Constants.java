@@ -15,11 +15,13 @@
  */
 package io.reactivesocket.aeron.internal;
 
+import uk.co.real_logic.agrona.IoUtil;
 import uk.co.real_logic.agrona.concurrent.BackoffIdleStrategy;
 import uk.co.real_logic.agrona.concurrent.IdleStrategy;
 import uk.co.real_logic.agrona.concurrent.NoOpIdleStrategy;
 import uk.co.real_logic.agrona.concurrent.SleepingIdleStrategy;
 
+import java.lang.management.ManagementFactory;
 import java.util.concurrent.TimeUnit;
 
 public final class Constants {
@@ -28,29 +30,83 @@ public final class Constants {
     public static final int CLIENT_STREAM_ID = 2;
     public static final byte[] EMTPY = new byte[0];
     public static final int QUEUE_SIZE = Integer.getInteger("reactivesocket.aeron.framesSendQueueSize", 262144);
-    public static final IdleStrategy SERVER_IDLE_STRATEGY;
     public static final int AERON_MTU_SIZE = Integer.getInteger("aeron.mtu.length", 4096);
-    public static final boolean TRACING_ENABLED = Boolean.getBoolean("reactivesocket.aeron.tracingEnabled");
     public static final int CLIENT_ESTABLISH_CONNECT_TIMEOUT_MS = 6000;
     public static final int CLIENT_SEND_ESTABLISH_CONNECTION_MSG_TIMEOUT_MS = 5000;
-    public static final int SERVER_ACK_ESTABLISH_CONNECTION_TIMEOUT_MS = 3000;
     public static final int SERVER_ESTABLISH_CONNECTION_REQUEST_TIMEOUT_MS = 5000;
     public static final int SERVER_TIMER_WHEEL_TICK_DURATION_MS = 10;
     public static final int SERVER_TIMER_WHEEL_BUCKETS = 128;
+    public static final int SERVER_SUBSCRIPTION_BUFFER_SIZE = Integer.getInteger("reactivesocket.aeron.server.subscriptionBufferSize", 32);
+    public static final int SERVER_WORKER_THREADS = Integer.getInteger("reactivesocket.aeron.server.workerThreads", 1);
+    public static final int SERVER_IMAGE_FRAGMENT_QUOTA = Integer.getInteger("reactivesocket.aeron.server.imageFragmentQuota", 64);
+    public static final int SERVER_SETUP_THREADS = Integer.getInteger("reactivesocket.aeron.server.setupThreads", 1);
+    public static final int SERVER_CLOSE_DRAIN_TIMEOUT_MS = Integer.getInteger("reactivesocket.aeron.server.closeDrainTimeoutMs", 5000);
+    public static final int SERVER_READY_QUEUE_CAPACITY = Integer.getInteger("reactivesocket.aeron.server.readyQueueCapacity", 1024);
     public static final int DEFAULT_OFFER_TO_AERON_TIMEOUT_MS = 30_000;
+    public static final int CLIENT_TIMER_WHEEL_TICK_DURATION_MS = 10;
+    public static final int CLIENT_TIMER_WHEEL_BUCKETS = 128;
+    public static final long LIVENESS_INTERVAL_MS = Long.getLong("reactivesocket.aeron.livenessIntervalMs", 1000);
+    public static final long LIVENESS_TIMEOUT_MS = Long.getLong("reactivesocket.aeron.livenessTimeoutMs", 10_000);
+    public static final long RESUME_WINDOW_MS = Long.getLong("reactivesocket.aeron.resumeWindowMs", 0);
+    public static final int REPLAY_BUFFER_LENGTH = Integer.getInteger("reactivesocket.aeron.replayBufferLength", 64 * 1024);
+    public static final int CLIENT_POOL_GROW_OUTSTANDING = Integer.getInteger("reactivesocket.aeron.client.pool.growOutstanding", 64);
+    public static final long CLIENT_POOL_IDLE_TIMEOUT_MS = Long.getLong("reactivesocket.aeron.client.pool.idleTimeoutMs", 60_000);
+    public static final long CLIENT_LATENCY_DECAY_MS = Long.getLong("reactivesocket.aeron.client.latencyDecayMs", 10_000);
+    public static final int SERVER_LEASE_TTL_MS = Integer.getInteger("reactivesocket.aeron.server.lease.ttlMs", 1000);
+    public static final int SERVER_LEASE_MAX_REQUESTS = Integer.getInteger("reactivesocket.aeron.server.lease.maxRequests", 100_000);
+    public static final int SERVER_LEASE_TARGET_UTILISATION_PERCENT = Integer.getInteger("reactivesocket.aeron.server.lease.targetUtilisationPercent", 90);
+    public static final long SERVER_LEASE_TARGET_LATENCY_MS = Long.getLong("reactivesocket.aeron.server.lease.targetLatencyMs", 100);
+    /**
+     * Records the latency of every frame by stage in {@link LatencyMetrics}. It reads the clock and updates a
+     * histogram at each stage, so it is off unless reactivesocket.aeron.latencyMetricsEnabled is set to true.
+     */
+    public static final boolean LATENCY_METRICS_ENABLED = Boolean.getBoolean("reactivesocket.aeron.latencyMetricsEnabled");
+    public static final String LATENCY_STAMPING = System.getProperty("reactivesocket.aeron.latencyStamping", "none");
+    public static final int EVENT_LOG_CAPACITY = Integer.getInteger("reactivesocket.aeron.eventLogCapacity", 4096);
+    public static final int METADATA_DICTIONARY_SIZE = Integer.getInteger("reactivesocket.aeron.metadataDictionarySize", 4096);
+    public static final int MAX_COUNTERS = Integer.getInteger("reactivesocket.aeron.maxCounters", 1024);
+    public static final String COUNTERS_FILE = System.getProperty("reactivesocket.aeron.countersFile", defaultCountersFile());
 
-    static {
-        String idlStrategy = System.getProperty("idleStrategy");
+    public static final String SERVER_AGENT = "server";
+    public static final String CLIENT_AGENT = "client";
 
-        if (NoOpIdleStrategy.class.getName().equalsIgnoreCase(idlStrategy)) {
-            SERVER_IDLE_STRATEGY = new NoOpIdleStrategy();
-        } else if (SleepingIdleStrategy.class.getName().equalsIgnoreCase(idlStrategy)) {
-            SERVER_IDLE_STRATEGY = new SleepingIdleStrategy(TimeUnit.MILLISECONDS.toNanos(250));
+    /**
+     * Creates the idle strategy for the polling threads of an agent, such as {@link #SERVER_AGENT} or
+     * {@link #CLIENT_AGENT}. The strategy is selected with the reactivesocket.aeron.&lt;agent&gt;.idleStrategy system
+     * property, falling back to the idleStrategy system property, and can be noop, sleeping, backoff or adaptive,
+     * or the class name of one of them. The default is adaptive, which parks for at most
+     * reactivesocket.aeron.&lt;agent&gt;.idleMaxParkNs once its thread is idle.
+     * <p>
+     * Idle strategies are stateful, so each polling thread needs its own instance.
+     */
+    public static IdleStrategy newIdleStrategy(String agent) {
+        final String prefix = "reactivesocket.aeron." + agent + ".";
+        final String idleStrategy = System.getProperty(prefix + "idleStrategy", System.getProperty("idleStrategy", "adaptive"));
+
+        if ("noop".equalsIgnoreCase(idleStrategy) || NoOpIdleStrategy.class.getName().equalsIgnoreCase(idleStrategy)) {
+            return new NoOpIdleStrategy();
+        } else if ("sleeping".equalsIgnoreCase(idleStrategy) || SleepingIdleStrategy.class.getName().equalsIgnoreCase(idleStrategy)) {
+            return new SleepingIdleStrategy(TimeUnit.MILLISECONDS.toNanos(250));
+        } else if ("backoff".equalsIgnoreCase(idleStrategy) || BackoffIdleStrategy.class.getName().equalsIgnoreCase(idleStrategy)) {
+            return new BackoffIdleStrategy(1, 10, 100, 1000);
         } else {
-            SERVER_IDLE_STRATEGY = new BackoffIdleStrategy(1, 10, 100, 1000);
+            return new AdaptiveIdleStrategy(
+                Long.getLong(prefix + "idleSpinNs", TimeUnit.MICROSECONDS.toNanos(50)),
+                Long.getLong(prefix + "idleYieldNs", TimeUnit.MICROSECONDS.toNanos(100)),
+                TimeUnit.MICROSECONDS.toNanos(1),
+                Long.getLong(prefix + "idleMaxParkNs", TimeUnit.MILLISECONDS.toNanos(1)));
         }
     }
 
+    /**
+     * Default location of the {@link TransportCounters} file of a process.
+     */
+    public static String defaultCountersFile() {
+        final String name = ManagementFactory.getRuntimeMXBean().getName();
+        final String pid = name.indexOf('@') > 0 ? name.substring(0, name.indexOf('@')) : name;
+        return IoUtil.tmpDirName() + "reactivesocket-aeron-" + pid + ".counters";
+    }
+
     private Constants() {
     }
 }
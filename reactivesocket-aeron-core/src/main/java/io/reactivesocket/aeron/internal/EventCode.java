@@ -0,0 +1,103 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+/**
+ * The kinds of event recorded in the {@link EventLog}, with what their values hold.
+ */
+public enum EventCode {
+    /**
+     * A client sent a request to establish a connection.
+     */
+    HANDSHAKE_SENT,
+
+    /**
+     * A server received a request to establish or resume a connection. The value is 1 for a resume.
+     */
+    HANDSHAKE_RECEIVED,
+
+    /**
+     * A server acked a request to establish or resume a connection.
+     */
+    HANDSHAKE_ACKED,
+
+    /**
+     * A server gave up acking a request to establish or resume a connection.
+     */
+    HANDSHAKE_TIMED_OUT,
+
+    /**
+     * A client received the ack of its request to establish a connection. The value is the server's session id.
+     */
+    CONNECTION_ESTABLISHED,
+
+    /**
+     * A send was back pressured before it completed or timed out. The values are the nanoseconds it was blocked
+     * for and the number of attempts.
+     */
+    BACK_PRESSURED,
+
+    /**
+     * A send gave up after being back pressured for its timeout.
+     */
+    SEND_TIMED_OUT,
+
+    /**
+     * A send failed because the publication wasn't connected.
+     */
+    NOT_CONNECTED,
+
+    /**
+     * A frame was dropped because there was no connection for its session.
+     */
+    FRAME_DROPPED,
+
+    /**
+     * A frame was dropped because it had already been received. The value is its sequence number.
+     */
+    DUPLICATE_DROPPED,
+
+    /**
+     * No traffic was received from the peer of a session within the liveness timeout.
+     */
+    PEER_DEAD,
+
+    /**
+     * A session was detached, or suspended by the client, to wait to be resumed.
+     */
+    SESSION_DETACHED,
+
+    /**
+     * A session was resumed. The value is the session id it was resumed as.
+     */
+    SESSION_RESUMED,
+
+    /**
+     * A connection was closed.
+     */
+    CONNECTION_CLOSED,
+
+    /**
+     * A frame referred to metadata the session's metadata dictionary doesn't have, so the session was aborted.
+     */
+    METADATA_DESYNC;
+
+    private static final EventCode[] CODES = values();
+
+    static EventCode from(int code) {
+        return code >= 0 && code < CODES.length ? CODES[code] : null;
+    }
+}
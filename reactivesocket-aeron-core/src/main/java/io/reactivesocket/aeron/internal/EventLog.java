@@ -0,0 +1,178 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In memory ring buffer of the events on the hot paths of the transport, such as handshakes, back pressure and
+ * dropped frames, which are too frequent to log. Events are written as fixed length binary records without
+ * allocating, and the most recent ones can be read or dumped as text on demand, for example when a connection
+ * misbehaves.
+ * <p>
+ * The number of events kept is set with reactivesocket.aeron.eventLogCapacity, rounded up to a power of two. It
+ * defaults to 4096, and 0 turns the log off.
+ */
+public final class EventLog {
+    private static final EventLog INSTANCE = new EventLog(Constants.EVENT_LOG_CAPACITY);
+
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = SEQUENCE_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int CODE_OFFSET = TIMESTAMP_OFFSET + BitUtil.SIZE_OF_LONG;
+    private static final int SESSION_ID_OFFSET = CODE_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int VALUE1_OFFSET = SESSION_ID_OFFSET + BitUtil.SIZE_OF_INT;
+    private static final int VALUE2_OFFSET = VALUE1_OFFSET + BitUtil.SIZE_OF_LONG;
+    static final int RECORD_LENGTH = VALUE2_OFFSET + BitUtil.SIZE_OF_LONG;
+
+    /**
+     * Written to the sequence of a record while it is being written.
+     */
+    private static final long WRITING = -1;
+
+    private final UnsafeBuffer buffer;
+
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong();
+
+    EventLog(int capacity) {
+        if (capacity > 0) {
+            final int records = BitUtil.findNextPositivePowerOfTwo(capacity);
+            this.buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(records * RECORD_LENGTH));
+            this.mask = records - 1;
+            for (int i = 0; i < records; i++) {
+                buffer.putLong(i * RECORD_LENGTH + SEQUENCE_OFFSET, WRITING);
+            }
+        } else {
+            this.buffer = null;
+            this.mask = -1;
+        }
+    }
+
+    public static EventLog getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * @return the number of events kept, or 0 if the log is off
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of events that have been recorded, including those that have been overwritten
+     */
+    public long getRecorded() {
+        return head.get();
+    }
+
+    public void record(EventCode code, int sessionId) {
+        record(code, sessionId, 0, 0);
+    }
+
+    public void record(EventCode code, int sessionId, long value) {
+        record(code, sessionId, value, 0);
+    }
+
+    /**
+     * Records an event, overwriting the oldest one if the log is full. Safe to call from any thread.
+     *
+     * @param code      what happened
+     * @param sessionId the Aeron session id of the connection it happened to
+     * @param value1    the first value of the event, which depends on its code
+     * @param value2    the second value of the event, which depends on its code
+     */
+    public void record(EventCode code, int sessionId, long value1, long value2) {
+        if (buffer == null) {
+            return;
+        }
+
+        final long sequence = head.getAndIncrement();
+        final int offset = (int) (sequence & mask) * RECORD_LENGTH;
+
+        buffer.putLongVolatile(offset + SEQUENCE_OFFSET, WRITING);
+        buffer.putLong(offset + TIMESTAMP_OFFSET, System.nanoTime());
+        buffer.putInt(offset + CODE_OFFSET, code.ordinal());
+        buffer.putInt(offset + SESSION_ID_OFFSET, sessionId);
+        buffer.putLong(offset + VALUE1_OFFSET, value1);
+        buffer.putLong(offset + VALUE2_OFFSET, value2);
+        buffer.putLongOrdered(offset + SEQUENCE_OFFSET, sequence);
+    }
+
+    /**
+     * Reads the events in the log from the oldest to the most recent. Events that are overwritten or still being
+     * written while they are read are skipped.
+     *
+     * @return the number of events read
+     */
+    public int read(EventConsumer consumer) {
+        if (buffer == null) {
+            return 0;
+        }
+
+        final long end = head.get();
+        int read = 0;
+        for (long sequence = Math.max(0, end - getCapacity()); sequence < end; sequence++) {
+            final int offset = (int) (sequence & mask) * RECORD_LENGTH;
+            if (buffer.getLongVolatile(offset + SEQUENCE_OFFSET) != sequence) {
+                continue;
+            }
+
+            final long timestampNs = buffer.getLongVolatile(offset + TIMESTAMP_OFFSET);
+            final int code = buffer.getIntVolatile(offset + CODE_OFFSET);
+            final int sessionId = buffer.getIntVolatile(offset + SESSION_ID_OFFSET);
+            final long value1 = buffer.getLongVolatile(offset + VALUE1_OFFSET);
+            final long value2 = buffer.getLongVolatile(offset + VALUE2_OFFSET);
+
+            if (buffer.getLongVolatile(offset + SEQUENCE_OFFSET) == sequence) {
+                consumer.accept(timestampNs, EventCode.from(code), sessionId, value1, value2);
+                read++;
+            }
+        }
+
+        return read;
+    }
+
+    /**
+     * Writes the events in the log as text, one per line, from the oldest to the most recent.
+     */
+    public void dump(PrintStream out) {
+        read((timestampNs, code, sessionId, value1, value2) ->
+            out.println(timestampNs + " " + code + " sessionId=" + sessionId + " value1=" + value1 + " value2=" + value2));
+        out.flush();
+    }
+
+    /**
+     * Receives the events read from the log.
+     */
+    @FunctionalInterface
+    public interface EventConsumer {
+        /**
+         * @param timestampNs when the event was recorded, from {@link System#nanoTime()}
+         */
+        void accept(long timestampNs, EventCode code, int sessionId, long value1, long value2);
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import io.reactivesocket.FrameType;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the latency histograms of every open connection, by ReactiveSocket frame type and
+ * {@link LatencyStage}. Connections register when they are created and are removed when they close, so the
+ * latencies recorded by a connection after the last snapshot before it closed are not reported.
+ * <p>
+ * Latencies are only recorded when reactivesocket.aeron.latencyMetricsEnabled is true. It is off by default, like
+ * {@link LatencyStamp}, as recording costs a few clock reads and histogram updates per frame.
+ */
+public final class LatencyMetrics {
+    private static final LatencyMetrics INSTANCE = new LatencyMetrics();
+
+    private final CopyOnWriteArrayList<ConnectionLatency> connections = new CopyOnWriteArrayList<>();
+
+    private LatencyMetrics() {}
+
+    public static LatencyMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the latency histograms of a new connection. Remove them with {@link #remove(ConnectionLatency)}
+     * when the connection closes.
+     *
+     * @param name the name the connection is reported with
+     * @return the histograms of the connection
+     */
+    public ConnectionLatency newConnection(String name) {
+        final ConnectionLatency connectionLatency = new ConnectionLatency(name);
+        connections.add(connectionLatency);
+        return connectionLatency;
+    }
+
+    public void remove(ConnectionLatency connectionLatency) {
+        connections.remove(connectionLatency);
+    }
+
+    public List<ConnectionLatency> getConnections() {
+        return connections;
+    }
+
+    /**
+     * Reads the latencies every connection has recorded since the last snapshot.
+     *
+     * @return a snapshot for every connection, frame type and stage that has recorded latencies in the interval
+     */
+    public List<Snapshot> getIntervalSnapshot() {
+        final List<Snapshot> snapshots = new ArrayList<>();
+        for (ConnectionLatency connection : connections) {
+            connection.forEachIntervalHistogram((type, stage, histogram) -> {
+                if (histogram.getTotalCount() > 0) {
+                    snapshots.add(new Snapshot(connection.getName(), type, stage, histogram));
+                }
+            });
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * Takes an interval snapshot and writes it to an HdrHistogram log. Each histogram is preceded by a comment
+     * naming the connection, frame type and stage it is for, and is written in nanoseconds.
+     *
+     * @param writer the log to write to
+     */
+    public void writeIntervalSnapshot(HistogramLogWriter writer) {
+        for (Snapshot snapshot : getIntervalSnapshot()) {
+            writer.outputComment("connection=" + snapshot.getConnection()
+                + ", frameType=" + snapshot.getFrameType()
+                + ", stage=" + snapshot.getStage());
+            writer.outputIntervalHistogram(snapshot.getHistogram());
+        }
+    }
+
+    /**
+     * The latencies a connection recorded for a frame type and stage over an interval.
+     */
+    public static final class Snapshot {
+        private final String connection;
+        private final FrameType frameType;
+        private final LatencyStage stage;
+        private final Histogram histogram;
+
+        Snapshot(String connection, FrameType frameType, LatencyStage stage, Histogram histogram) {
+            this.connection = connection;
+            this.frameType = frameType;
+            this.stage = stage;
+            this.histogram = histogram;
+        }
+
+        public String getConnection() {
+            return connection;
+        }
+
+        public FrameType getFrameType() {
+            return frameType;
+        }
+
+        public LatencyStage getStage() {
+            return stage;
+        }
+
+        /**
+         * @return the latencies in nanoseconds, with the start and end of the interval as its timestamps
+         */
+        public Histogram getHistogram() {
+            return histogram;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" +
+                "connection='" + connection + '\'' +
+                ", frameType=" + frameType +
+                ", stage=" + stage +
+                ", count=" + histogram.getTotalCount() +
+                '}';
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+/**
+ * A stage of the transport that the time taken to handle a frame is broken down into.
+ */
+public enum LatencyStage {
+    /**
+     * From a frame being queued to be sent until the first attempt to write it to the publication.
+     */
+    SEND_QUEUE_WAIT,
+
+    /**
+     * From the first attempt to claim or offer space for a frame on the publication until it has been written,
+     * including any time spent back pressured.
+     */
+    CLAIM,
+
+    /**
+     * Passing a received frame to the subscribers of the connection.
+     */
+    INBOUND_DISPATCH,
+
+    /**
+     * The {@link #SEND_QUEUE_WAIT} of a received frame at the peer that sent it, read from its latency stamp.
+     */
+    REMOTE_SEND_QUEUE_WAIT,
+
+    /**
+     * From the first attempt to write a received frame at the peer that sent it until it was written, read from
+     * its latency stamp.
+     */
+    REMOTE_EGRESS,
+
+    /**
+     * From a received frame being written by the peer that sent it until it was received, from its latency stamp
+     * and the clock of the receiver.
+     */
+    TRANSIT
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import io.reactivesocket.FrameType;
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.MutableDirectBuffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional extension of the transport header that carries how long a frame took to be sent, so the receiver can
+ * break its latency down by stage. It is turned on with reactivesocket.aeron.latencyStamping, which must be the
+ * same at both ends:
+ * <ul>
+ *     <li>none, the default, sends frames without a stamp</li>
+ *     <li>monotonic stamps the send time with {@link System#nanoTime()}, which on most platforms is the same
+ *     clock for every process on a host, so use it when the client and server run on the same host</li>
+ *     <li>wallclock stamps the send time with {@link System#currentTimeMillis()}, so transit is only accurate to
+ *     a millisecond and relies on the hosts' clocks being synchronised</li>
+ * </ul>
+ * A stamped frame is sent as a {@link MessageType#STAMPED_FRAME}, with {@link #LENGTH} bytes after the
+ * transport header holding the time the frame waited in the send queue and spent being written, as ints in
+ * nanoseconds, and the time it was written as a long in nanoseconds of the chosen clock. The receiver records
+ * them, and the transit time, in the {@link ConnectionLatency} of its connection. Frames replayed after a session
+ * is resumed are sent without a stamp.
+ */
+public final class LatencyStamp {
+    public static final int LENGTH = 2 * BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG;
+
+    private static final int QUEUE_WAIT_OFFSET = 0;
+    private static final int EGRESS_OFFSET = BitUtil.SIZE_OF_INT;
+    private static final int SENT_OFFSET = 2 * BitUtil.SIZE_OF_INT;
+
+    private static final Clock CLOCK = Clock.from(Constants.LATENCY_STAMPING);
+
+    /**
+     * True if frames are sent with a stamp.
+     */
+    public static final boolean ENABLED = CLOCK != Clock.NONE;
+
+    /**
+     * True if the time frames are queued and first tried needs to be taken, for the latency metrics or a stamp.
+     */
+    public static final boolean TIMED = ENABLED || Constants.LATENCY_METRICS_ENABLED;
+
+    private LatencyStamp() {}
+
+    /**
+     * @return the message type frames are sent with
+     */
+    public static MessageType frameType() {
+        return ENABLED ? MessageType.STAMPED_FRAME : MessageType.FRAME;
+    }
+
+    /**
+     * @return the length of the transport header of the frames that are sent
+     */
+    public static int headerLength() {
+        return ENABLED ? BitUtil.SIZE_OF_INT + LENGTH : BitUtil.SIZE_OF_INT;
+    }
+
+    /**
+     * @return the length of the transport header of a received frame
+     */
+    public static int headerLength(MessageType type) {
+        return type == MessageType.STAMPED_FRAME ? BitUtil.SIZE_OF_INT + LENGTH : BitUtil.SIZE_OF_INT;
+    }
+
+    /**
+     * Writes a stamp for a frame that is being written to the publication now.
+     *
+     * @param enqueuedNs     when the frame was queued to be sent
+     * @param firstAttemptNs when the frame was first tried
+     */
+    public static void write(MutableDirectBuffer buffer, int offset, long enqueuedNs, long firstAttemptNs) {
+        final long nowNs = System.nanoTime();
+        buffer.putInt(offset + QUEUE_WAIT_OFFSET, clamp(firstAttemptNs - enqueuedNs));
+        buffer.putInt(offset + EGRESS_OFFSET, clamp(nowNs - firstAttemptNs));
+        buffer.putLong(offset + SENT_OFFSET, CLOCK.timestamp(nowNs));
+    }
+
+    /**
+     * Records the stages of a received frame from its stamp. The transit time isn't recorded if it is negative,
+     * which happens when the clocks of the hosts are not synchronised.
+     */
+    public static void record(DirectBuffer buffer, int offset, FrameType type, ConnectionLatency latency) {
+        latency.record(type, LatencyStage.REMOTE_SEND_QUEUE_WAIT, buffer.getInt(offset + QUEUE_WAIT_OFFSET));
+        latency.record(type, LatencyStage.REMOTE_EGRESS, buffer.getInt(offset + EGRESS_OFFSET));
+
+        final long transitNs = CLOCK.timestamp(System.nanoTime()) - buffer.getLong(offset + SENT_OFFSET);
+        if (transitNs >= 0) {
+            latency.record(type, LatencyStage.TRANSIT, transitNs);
+        }
+    }
+
+    private static int clamp(long ns) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, ns));
+    }
+
+    enum Clock {
+        NONE,
+        MONOTONIC,
+        WALLCLOCK;
+
+        long timestamp(long nanoTime) {
+            return this == WALLCLOCK ? TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) : nanoTime;
+        }
+
+        /**
+         * @return the clock with the name, ignoring case, or NONE if there is no such clock
+         */
+        static Clock from(String name) {
+            for (Clock clock : values()) {
+                if (clock.name().equalsIgnoreCase(name)) {
+                    return clock;
+                }
+            }
+
+            return NONE;
+        }
+    }
+}
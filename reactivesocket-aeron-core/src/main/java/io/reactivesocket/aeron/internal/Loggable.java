@@ -16,13 +16,24 @@
 package io.reactivesocket.aeron.internal;
 
 import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * No more needed to type Logger LOGGER = LoggerFactory.getLogger....
+ * <p>
+ * The logger of each class is looked up once and cached. The methods taking one or two arguments don't allocate
+ * a varargs array, but arguments that are primitives are still boxed, so check {@link #isDebugEnabled()} or
+ * {@link #isTraceEnabled()} before logging on a hot path, or record an event in the {@link EventLog} instead.
  */
 public interface Loggable {
 
+    default void info(String message) {
+        logger().info(message);
+    }
+
+    default void info(String message, Object arg) {
+        logger().info(message, arg);
+    }
+
     default void info(String message, Object... args) {
         logger().info(message, args);
     }
@@ -31,23 +42,43 @@ public interface Loggable {
         logger().error(message, t);
     }
 
+    default void debug(String message) {
+        logger().debug(message);
+    }
+
+    default void debug(String message, Object arg) {
+        logger().debug(message, arg);
+    }
+
+    default void debug(String message, Object arg1, Object arg2) {
+        logger().debug(message, arg1, arg2);
+    }
+
     default void debug(String message, Object... args) {
         logger().debug(message, args);
     }
 
+    default void trace(String message, Object arg) {
+        logger().trace(message, arg);
+    }
+
+    default void trace(String message, Object arg1, Object arg2) {
+        logger().trace(message, arg1, arg2);
+    }
+
     default void trace(String message, Object... args) {
         logger().trace(message, args);
     }
 
+    default boolean isDebugEnabled() {
+        return logger().isDebugEnabled();
+    }
+
     default boolean isTraceEnabled() {
-        if (Constants.TRACING_ENABLED) {
-            return logger().isTraceEnabled();
-        } else {
-            return false;
-        }
+        return logger().isTraceEnabled();
     }
 
     default Logger logger() {
-        return LoggerFactory.getLogger(getClass());
+        return Loggers.get(getClass());
     }
 }
@@ -22,7 +22,14 @@ public enum MessageType {
     ESTABLISH_CONNECTION_REQUEST(0x01),
     ESTABLISH_CONNECTION_RESPONSE(0x02),
     CONNECTION_DISCONNECT(0x3),
-    FRAME(0x04);
+    FRAME(0x04),
+    PING(0x05),
+    PONG(0x06),
+    ACK(0x07),
+    RESUME_REQUEST(0x08),
+    RESUME_RESPONSE(0x09),
+    STAMPED_FRAME(0x0A),
+    METADATA_INDEXED_FRAME(0x0B);
 
     private static MessageType[] typesById;
 
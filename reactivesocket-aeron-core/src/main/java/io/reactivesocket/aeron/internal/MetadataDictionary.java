@@ -0,0 +1,391 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import io.reactivesocket.Frame;
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.MutableDirectBuffer;
+import uk.co.real_logic.agrona.collections.Hashing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A table of the metadata a connection has sent, in the spirit of HPACK's dynamic table, so metadata that repeats
+ * on nearly every frame, such as routing keys, auth tokens and content types, is sent as a small id rather than in
+ * full. The client keeps one for encoding the frames it sends, and the server one for decoding them, and both apply
+ * the same insertions and evictions in the order the frames are sent.
+ * <p>
+ * The size of the table is negotiated when the connection is established, as the smaller of the sizes the client
+ * and server ask for, where 0 turns it off. Neither asks for a table when sessions can be resumed, because the frames
+ * replayed after a session is resumed are sent as they were originally framed, or when frames are latency stamped.
+ * Like HPACK each entry counts its length plus {@link #ENTRY_OVERHEAD} bytes against the size, and the oldest
+ * entries are evicted to make room, with at most {@link #MAX_ENTRIES} entries.
+ * <p>
+ * A frame with metadata of at least {@link #MIN_ENTRY_LENGTH} bytes is sent as a
+ * {@link MessageType#METADATA_INDEXED_FRAME}, with {@link #HEADER_LENGTH} bytes after the transport header holding
+ * the id of the entry as a short, the length of the metadata as a short, and where the metadata is in the frame as
+ * an int. If the metadata has been sent before the length is -1 and the frame follows with the metadata cut out.
+ * Otherwise the frame follows as it is, and the receiver adds its metadata to the table with the next id.
+ * <p>
+ * The metadata is found in the frame by looking for its bytes, which puts back exactly the bytes that were cut out
+ * wherever they are found, so it doesn't depend on the layout of the frame. Frames of the same kind have their
+ * metadata in the same place, so the place it was last found is checked first. Entries are found by the hash of
+ * their bytes, in an open addressed table of twice {@link #MAX_ENTRIES} slots, so sending a frame doesn't compare
+ * its metadata with every entry.
+ */
+public final class MetadataDictionary {
+    public static final int MAX_ENTRIES = 256;
+    public static final int ENTRY_OVERHEAD = 32;
+    public static final int MIN_ENTRY_LENGTH = 16;
+    public static final int HEADER_LENGTH = 2 * BitUtil.SIZE_OF_SHORT + BitUtil.SIZE_OF_INT;
+
+    private static final int ID_OFFSET = 0;
+    private static final int LITERAL_LENGTH_OFFSET = BitUtil.SIZE_OF_SHORT;
+    private static final int METADATA_OFFSET_OFFSET = 2 * BitUtil.SIZE_OF_SHORT;
+    private static final short INDEXED = -1;
+    private static final int MASK = MAX_ENTRIES - 1;
+    private static final int INDEX_MASK = 2 * MAX_ENTRIES - 1;
+
+    private final int maxSize;
+    private final byte[][] entries = new byte[MAX_ENTRIES][];
+    private final int[] hashes = new int[MAX_ENTRIES];
+    private final int[] ids = new int[MAX_ENTRIES];
+
+    /**
+     * The slots of the entries, plus one so 0 is an empty slot, by the hash of their bytes, probing linearly.
+     */
+    private final int[] index = new int[INDEX_MASK + 1];
+    private int oldestId;
+    private int nextId;
+    private int size;
+
+    // The frame being sent, between prepare and commit
+    private ByteBuffer pendingMetadata;
+    private int pendingHash;
+    private int pendingId;
+    private boolean pendingLiteral;
+    private int pendingMetadataOffset;
+    private int lastMetadataOffset = -1;
+
+    /**
+     * @param maxSize the negotiated size of the table in bytes
+     */
+    public MetadataDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the size of the table this end asks for when a connection is established
+     */
+    public static int requestedSize() {
+        return ResumeState.isEnabled() || LatencyStamp.ENABLED ? 0 : Math.max(0, Constants.METADATA_DICTIONARY_SIZE);
+    }
+
+    /**
+     * @param requestedSize the size of the table the other end asked for
+     * @return the size of the table to use, or 0 if there isn't one
+     */
+    public static int negotiate(int requestedSize) {
+        return Math.max(0, Math.min(requestedSize, requestedSize()));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of entries in the table
+     */
+    public int getEntries() {
+        return nextId - oldestId;
+    }
+
+    /**
+     * @return the bytes the entries count against the size of the table
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Looks up the metadata of a frame that is about to be sent. If it returns true the frame is sent as a
+     * {@link MessageType#METADATA_INDEXED_FRAME} of {@link #encodedLength(int)} bytes written by
+     * {@link #write(MutableDirectBuffer, int, ByteBuffer, int, int)}, and {@link #commit()} must be called once it
+     * has been sent.
+     *
+     * @return true if the frame should be sent as a METADATA_INDEXED_FRAME, false if it should be sent as it is
+     */
+    public boolean prepare(Frame frame) {
+        final ByteBuffer metadata = frame.getMetadata();
+        final int metadataLength = metadata == null ? 0 : metadata.remaining();
+        if (metadataLength < MIN_ENTRY_LENGTH || metadataLength > Short.MAX_VALUE || metadataLength + ENTRY_OVERHEAD > maxSize) {
+            return false;
+        }
+
+        final ByteBuffer frameBuffer = frame.getByteBuffer();
+        int metadataOffset = lastMetadataOffset;
+        if (metadataOffset < 0 || !matches(frameBuffer, frame.offset(), frame.length(), metadataOffset, metadata)) {
+            metadataOffset = indexOf(frameBuffer, frame.offset(), frame.length(), metadata);
+            if (metadataOffset < 0) {
+                return false;
+            }
+            lastMetadataOffset = metadataOffset;
+        }
+
+        final int hash = hash(metadata);
+        final int id = find(hash, metadata);
+        pendingMetadata = metadata;
+        pendingHash = hash;
+        pendingLiteral = id < 0;
+        pendingId = pendingLiteral ? nextId : id;
+        pendingMetadataOffset = metadataOffset;
+
+        return true;
+    }
+
+    /**
+     * @return the length of the prepared frame when it is sent, not including the transport header
+     */
+    public int encodedLength(int frameLength) {
+        return HEADER_LENGTH + frameLength - (pendingLiteral ? 0 : pendingMetadata.remaining());
+    }
+
+    /**
+     * Writes the prepared frame after the transport header.
+     */
+    public void write(MutableDirectBuffer buffer, int offset, ByteBuffer frameBuffer, int frameOffset, int frameLength) {
+        final int metadataLength = pendingMetadata.remaining();
+        buffer.putShort(offset + ID_OFFSET, (short) pendingId);
+        buffer.putShort(offset + LITERAL_LENGTH_OFFSET, pendingLiteral ? (short) metadataLength : INDEXED);
+        buffer.putInt(offset + METADATA_OFFSET_OFFSET, pendingMetadataOffset);
+
+        final int frameStart = offset + HEADER_LENGTH;
+        if (pendingLiteral) {
+            buffer.putBytes(frameStart, frameBuffer, frameOffset, frameLength);
+        } else {
+            final int afterMetadata = pendingMetadataOffset + metadataLength;
+            buffer.putBytes(frameStart, frameBuffer, frameOffset, pendingMetadataOffset);
+            buffer.putBytes(frameStart + pendingMetadataOffset, frameBuffer, frameOffset + afterMetadata, frameLength - afterMetadata);
+        }
+    }
+
+    /**
+     * Adds the metadata of the prepared frame to the table if it wasn't in it, once the frame has been sent.
+     */
+    public void commit() {
+        if (pendingLiteral) {
+            final ByteBuffer metadata = pendingMetadata;
+            final byte[] bytes = new byte[metadata.remaining()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = metadata.get(metadata.position() + i);
+            }
+            insert(pendingHash, bytes);
+        }
+        pendingMetadata = null;
+    }
+
+    /**
+     * @param offset the offset of a received METADATA_INDEXED_FRAME after its transport header
+     * @param length the length of the message after its transport header
+     * @return the length of the frame once its metadata has been put back
+     */
+    public int decodedLength(DirectBuffer buffer, int offset, int length) {
+        final int frameLength = length - HEADER_LENGTH;
+        if (buffer.getShort(offset + LITERAL_LENGTH_OFFSET) != INDEXED) {
+            return frameLength;
+        }
+
+        return frameLength + entry(buffer.getShort(offset + ID_OFFSET)).length;
+    }
+
+    /**
+     * Writes a received METADATA_INDEXED_FRAME with its metadata put back, adding the metadata to the table if it
+     * was sent in full.
+     *
+     * @throws IllegalStateException if the frame refers to metadata that isn't in the table, which means the tables
+     * of the client and server are no longer the same
+     */
+    public void decode(DirectBuffer buffer, int offset, int length, MutableDirectBuffer dst, int dstOffset) {
+        final short id = buffer.getShort(offset + ID_OFFSET);
+        final short literalLength = buffer.getShort(offset + LITERAL_LENGTH_OFFSET);
+        final int metadataOffset = buffer.getInt(offset + METADATA_OFFSET_OFFSET);
+        final int frameStart = offset + HEADER_LENGTH;
+        final int frameLength = length - HEADER_LENGTH;
+
+        if (literalLength != INDEXED) {
+            if (id != (short) nextId) {
+                throw new IllegalStateException("Metadata dictionary entry " + id + " was sent, but the next entry is " + (short) nextId);
+            }
+
+            dst.putBytes(dstOffset, buffer, frameStart, frameLength);
+            final byte[] bytes = new byte[literalLength];
+            buffer.getBytes(frameStart + metadataOffset, bytes);
+            insert(hash(bytes), bytes);
+        } else {
+            final byte[] entry = entry(id);
+            dst.putBytes(dstOffset, buffer, frameStart, metadataOffset);
+            dst.putBytes(dstOffset + metadataOffset, entry);
+            dst.putBytes(dstOffset + metadataOffset + entry.length, buffer, frameStart + metadataOffset, frameLength - metadataOffset);
+        }
+    }
+
+    private byte[] entry(short id) {
+        final int slot = id & MASK;
+        final byte[] entry = entries[slot];
+        if (entry == null || (short) ids[slot] != id) {
+            throw new IllegalStateException("No metadata dictionary entry " + id);
+        }
+
+        return entry;
+    }
+
+    private void insert(int hash, byte[] bytes) {
+        final int entrySize = bytes.length + ENTRY_OVERHEAD;
+        while (size + entrySize > maxSize || nextId - oldestId == MAX_ENTRIES) {
+            final int slot = oldestId & MASK;
+            unindex(slot);
+            size -= entries[slot].length + ENTRY_OVERHEAD;
+            entries[slot] = null;
+            oldestId++;
+        }
+
+        final int slot = nextId & MASK;
+        entries[slot] = bytes;
+        hashes[slot] = hash;
+        ids[slot] = nextId;
+        size += entrySize;
+        nextId++;
+
+        int i = Hashing.hash(hash, INDEX_MASK);
+        while (index[i] != 0) {
+            i = (i + 1) & INDEX_MASK;
+        }
+        index[i] = slot + 1;
+    }
+
+    /*
+     * Removes an entry from the index, moving back the entries after it that would no longer be found.
+     */
+    private void unindex(int slot) {
+        int i = Hashing.hash(hashes[slot], INDEX_MASK);
+        while (index[i] != slot + 1) {
+            i = (i + 1) & INDEX_MASK;
+        }
+        index[i] = 0;
+
+        for (int j = (i + 1) & INDEX_MASK; index[j] != 0; j = (j + 1) & INDEX_MASK) {
+            final int home = Hashing.hash(hashes[index[j] - 1], INDEX_MASK);
+            // j's entry can fill the gap unless its home is cyclically after the gap and not after j
+            if (((j - home) & INDEX_MASK) >= ((j - i) & INDEX_MASK)) {
+                index[i] = index[j];
+                index[j] = 0;
+                i = j;
+            }
+        }
+    }
+
+    /**
+     * @return the id of the entry with the metadata, or -1 if it isn't in the table
+     */
+    private int find(int hash, ByteBuffer metadata) {
+        for (int i = Hashing.hash(hash, INDEX_MASK); index[i] != 0; i = (i + 1) & INDEX_MASK) {
+            final int slot = index[i] - 1;
+            if (hashes[slot] == hash && equals(entries[slot], metadata)) {
+                return ids[slot];
+            }
+        }
+
+        return -1;
+    }
+
+    private static int hash(ByteBuffer metadata) {
+        int hash = 1;
+        for (int i = metadata.position(); i < metadata.limit(); i++) {
+            hash = 31 * hash + metadata.get(i);
+        }
+
+        return hash;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 1;
+        for (int i = 0; i < bytes.length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+
+        return hash;
+    }
+
+    private static boolean equals(byte[] entry, ByteBuffer metadata) {
+        if (entry.length != metadata.remaining()) {
+            return false;
+        }
+
+        final int position = metadata.position();
+        for (int i = 0; i < entry.length; i++) {
+            if (entry[i] != metadata.get(position + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if the metadata's bytes are in the frame at metadataOffset, relative to the start of the frame
+     */
+    static boolean matches(ByteBuffer frameBuffer, int frameOffset, int frameLength, int metadataOffset, ByteBuffer metadata) {
+        final int position = metadata.position();
+        final int metadataLength = metadata.remaining();
+        if (metadataOffset + metadataLength > frameLength) {
+            return false;
+        }
+
+        for (int i = 0; i < metadataLength; i++) {
+            if (frameBuffer.get(frameOffset + metadataOffset + i) != metadata.get(position + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return where the metadata's bytes first appear in the frame, relative to the start of the frame, or -1
+     */
+    static int indexOf(ByteBuffer frameBuffer, int frameOffset, int frameLength, ByteBuffer metadata) {
+        final int position = metadata.position();
+        final int metadataLength = metadata.remaining();
+        final byte first = metadata.get(position);
+        for (int i = 0; i <= frameLength - metadataLength; i++) {
+            if (frameBuffer.get(frameOffset + i) != first) {
+                continue;
+            }
+
+            int j = 1;
+            while (j < metadataLength && frameBuffer.get(frameOffset + i + j) == metadata.get(position + j)) {
+                j++;
+            }
+
+            if (j == metadataLength) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
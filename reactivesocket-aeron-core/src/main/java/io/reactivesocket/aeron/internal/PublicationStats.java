@@ -0,0 +1,166 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import uk.co.real_logic.aeron.Publication;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The outcome of the sends made by {@link AeronUtil} on a single {@link Publication}.
+ * <p>
+ * A send is blocked when Aeron didn't accept it on the first attempt. For blocked sends the time from the
+ * first attempt until the send completed, or gave up, and the number of attempts it took are recorded in
+ * histograms, which are only created once a send has been blocked and clamp the time like
+ * {@link ConnectionLatency} does. Get the stats for a publication with {@link AeronUtil#getPublicationStats(Publication)}.
+ */
+public class PublicationStats {
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private final int sessionId;
+    private final int streamId;
+    private final String channel;
+
+    private final LongAdder sends = new LongAdder();
+    private final LongAdder blockedSends = new LongAdder();
+    private final LongAdder backPressured = new LongAdder();
+    private final LongAdder adminAction = new LongAdder();
+    private final LongAdder notConnected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    private volatile Recorder blockedTimeNs;
+    private volatile Recorder blockedAttempts;
+
+    public PublicationStats(int sessionId, int streamId, String channel) {
+        this.sessionId = sessionId;
+        this.streamId = streamId;
+        this.channel = channel;
+    }
+
+    /**
+     * Records the result of a single attempt to offer or claim on the publication.
+     */
+    void onResult(long result) {
+        if (result >= 0) {
+            sends.increment();
+        } else if (Publication.BACK_PRESSURED == result) {
+            backPressured.increment();
+        } else if (Publication.ADMIN_ACTION == result) {
+            adminAction.increment();
+        } else if (Publication.NOT_CONNECTED == result) {
+            notConnected.increment();
+        }
+    }
+
+    void onTimeout() {
+        timeouts.increment();
+        EventLog.getInstance().record(EventCode.SEND_TIMED_OUT, sessionId);
+    }
+
+    /**
+     * Records a send that wasn't accepted on the first attempt.
+     *
+     * @param blockedNs the nanoseconds from the first attempt until the send completed or gave up
+     * @param attempts  the number of attempts made
+     */
+    public void onBlocked(long blockedNs, long attempts) {
+        blockedSends.increment();
+        if (blockedAttempts == null) {
+            createRecorders();
+        }
+        blockedTimeNs.recordValue(Math.min(ConnectionLatency.HIGHEST_TRACKABLE_NS, Math.max(0, blockedNs)));
+        blockedAttempts.recordValue(attempts);
+        EventLog.getInstance().record(EventCode.BACK_PRESSURED, sessionId, blockedNs, attempts);
+    }
+
+    private synchronized void createRecorders() {
+        if (blockedAttempts == null) {
+            blockedTimeNs = new Recorder(ConnectionLatency.HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+            blockedAttempts = new Recorder(SIGNIFICANT_DIGITS);
+        }
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public long getSends() {
+        return sends.sum();
+    }
+
+    public long getBlockedSends() {
+        return blockedSends.sum();
+    }
+
+    public long getBackPressured() {
+        return backPressured.sum();
+    }
+
+    public long getAdminAction() {
+        return adminAction.sum();
+    }
+
+    public long getNotConnected() {
+        return notConnected.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return the time blocked sends waited, in nanoseconds, since the last call to this method, or null if no
+     * send has ever been blocked
+     */
+    public Histogram getBlockedTimeHistogram() {
+        final Recorder recorder = blockedTimeNs;
+        return recorder == null ? null : recorder.getIntervalHistogram();
+    }
+
+    /**
+     * @return the number of attempts blocked sends took since the last call to this method, or null if no send
+     * has ever been blocked
+     */
+    public Histogram getBlockedAttemptsHistogram() {
+        final Recorder recorder = blockedAttempts;
+        return recorder == null ? null : recorder.getIntervalHistogram();
+    }
+
+    @Override
+    public String toString() {
+        return "PublicationStats{" +
+            "sessionId=" + sessionId +
+            ", streamId=" + streamId +
+            ", channel='" + channel + '\'' +
+            ", sends=" + sends +
+            ", blockedSends=" + blockedSends +
+            ", backPressured=" + backPressured +
+            ", adminAction=" + adminAction +
+            ", notConnected=" + notConnected +
+            ", timeouts=" + timeouts +
+            '}';
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded, off-heap ring buffer of the frames sent on a session that the peer hasn't acknowledged yet, so they
+ * can be sent again when the session is resumed.
+ * <p>
+ * Frames are identified by the sequence number sent in the count field of the message header, which wraps at
+ * 2^16, so sequence numbers are compared with {@link #compare(short, short)}. When the buffer is full the oldest
+ * frames are dropped, after which the session can no longer be resumed from before them. At most
+ * {@link #MAX_FRAMES} frames are kept so the sequence numbers in the buffer never wrap.
+ * <p>
+ * Records are [int length][int sequence][frame bytes], aligned to 8 bytes. A negative length is padding to the end
+ * of the buffer.
+ * <p>
+ * Not thread-safe, it must only be used from the thread that sends on the session.
+ */
+public class ReplayBuffer {
+    public static final int MAX_FRAMES = Short.MAX_VALUE / 2;
+
+    private static final int RECORD_HEADER_LENGTH = 2 * BitUtil.SIZE_OF_INT;
+    private static final int RECORD_ALIGNMENT = 8;
+
+    private final UnsafeBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    private long head;
+    private long tail;
+    private long cursor;
+    private int frames;
+    private short lastAppended = -1;
+    private boolean replaying;
+
+    /**
+     * @param capacity the size of the buffer in bytes, which must be a power of 2
+     */
+    public ReplayBuffer(int capacity) {
+        if (!BitUtil.isPowerOfTwo(capacity)) {
+            throw new IllegalArgumentException("capacity must be a power of 2 => " + capacity);
+        }
+
+        this.buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(capacity));
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Compares two sequence numbers, allowing for them wrapping.
+     *
+     * @return a negative number, zero, or a positive number as a is before, the same as, or after b
+     */
+    public static int compare(short a, short b) {
+        return (short) (a - b);
+    }
+
+    /**
+     * Adds a frame that was sent, dropping the oldest frames if there isn't enough room.
+     */
+    public void append(short sequence, ByteBuffer src, int offset, int length) {
+        lastAppended = sequence;
+
+        final int recordLength = BitUtil.align(RECORD_HEADER_LENGTH + length, RECORD_ALIGNMENT);
+        if (recordLength > capacity) {
+            clear();
+            return;
+        }
+
+        if (frames == MAX_FRAMES) {
+            evictHead();
+        }
+
+        int index = (int) (tail & mask);
+        int padding = capacity - index < recordLength ? capacity - index : 0;
+        while (capacity - (tail - head) < recordLength + padding) {
+            if (head == tail) {
+                head = tail = cursor = 0;
+                index = 0;
+                padding = 0;
+                break;
+            }
+
+            evictHead();
+        }
+
+        if (padding > 0) {
+            buffer.putInt(index, -padding);
+            tail += padding;
+            index = 0;
+        }
+
+        buffer.putInt(index, length);
+        buffer.putInt(index + BitUtil.SIZE_OF_INT, sequence);
+        buffer.putBytes(index + RECORD_HEADER_LENGTH, src, offset, length);
+        tail += recordLength;
+        frames++;
+    }
+
+    /**
+     * Drops the frames up to and including a sequence number the peer has acknowledged.
+     */
+    public void ack(short sequence) {
+        while (frames > 0) {
+            skipPadding();
+            final int index = (int) (head & mask);
+            if (compare((short) buffer.getInt(index + BitUtil.SIZE_OF_INT), sequence) > 0) {
+                break;
+            }
+
+            evictHead();
+        }
+    }
+
+    /**
+     * @return true if every frame sent after the last one the peer received is still in the buffer
+     */
+    public boolean canReplayAfter(short lastReceived) {
+        if (compare(lastReceived, lastAppended) > 0) {
+            return false;
+        } else if (lastReceived == lastAppended) {
+            return true;
+        } else if (frames == 0) {
+            return false;
+        }
+
+        skipPadding();
+        final short first = (short) buffer.getInt((int) (head & mask) + BitUtil.SIZE_OF_INT);
+        return compare(first, (short) (lastReceived + 1)) <= 0;
+    }
+
+    /**
+     * Starts replaying the frames sent after the last one the peer received. Check it is possible with
+     * {@link #canReplayAfter(short)} first.
+     */
+    public void replayAfter(short lastReceived) {
+        cursor = head;
+        while (cursor < tail) {
+            final int index = (int) (cursor & mask);
+            final int length = buffer.getInt(index);
+            if (length >= 0 && compare((short) buffer.getInt(index + BitUtil.SIZE_OF_INT), lastReceived) > 0) {
+                break;
+            }
+
+            cursor += recordLength(length);
+        }
+
+        replaying = cursor < tail;
+    }
+
+    /**
+     * Sends frames being replayed until they have all been sent, or the sender can't send any more.
+     *
+     * @return the number of frames sent
+     */
+    public int replay(FrameSender sender) {
+        int sent = 0;
+        while (replaying && cursor < tail) {
+            final int index = (int) (cursor & mask);
+            final int length = buffer.getInt(index);
+            if (length >= 0) {
+                final short sequence = (short) buffer.getInt(index + BitUtil.SIZE_OF_INT);
+                if (!sender.send(sequence, buffer, index + RECORD_HEADER_LENGTH, length)) {
+                    return sent;
+                }
+                sent++;
+            }
+
+            cursor += recordLength(length);
+        }
+
+        replaying = false;
+        return sent;
+    }
+
+    public boolean isReplaying() {
+        return replaying;
+    }
+
+    /**
+     * @return the number of frames in the buffer
+     */
+    public int frames() {
+        return frames;
+    }
+
+    private void clear() {
+        head = tail = cursor = 0;
+        frames = 0;
+        replaying = false;
+    }
+
+    private void skipPadding() {
+        final int length = buffer.getInt((int) (head & mask));
+        if (length < 0) {
+            head -= length;
+        }
+    }
+
+    private void evictHead() {
+        skipPadding();
+        head += recordLength(buffer.getInt((int) (head & mask)));
+        frames--;
+
+        if (cursor < head) {
+            cursor = head;
+        }
+    }
+
+    private static int recordLength(int length) {
+        return length < 0 ? -length : BitUtil.align(RECORD_HEADER_LENGTH + length, RECORD_ALIGNMENT);
+    }
+
+    @FunctionalInterface
+    public interface FrameSender {
+        /**
+         * @return true if the frame was sent, or false to stop replaying until later
+         */
+        boolean send(short sequence, DirectBuffer buffer, int offset, int length);
+    }
+}
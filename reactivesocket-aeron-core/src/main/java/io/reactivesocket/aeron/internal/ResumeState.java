@@ -0,0 +1,201 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import uk.co.real_logic.aeron.Publication;
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.DirectBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The state a session needs to be resumed after its peer reconnects: the token identifying the session, the
+ * sequence numbers of the frames sent and received, and, when resumption is turned on with the
+ * reactivesocket.aeron.resumeWindowMs property, a {@link ReplayBuffer} of the frames the peer hasn't acknowledged.
+ * <p>
+ * Every {@link MessageType#FRAME} carries its sequence number in the count field of the header. The receiver
+ * drops frames it has already seen, which happens when frames are replayed, and acknowledges the last frame it
+ * received with an {@link MessageType#ACK} so the sender can drop it from its replay buffer.
+ * <p>
+ * Apart from the token and the last sequence number received, which can be read from any thread, this must only be
+ * used from the thread that polls and sends on the session.
+ */
+public class ResumeState {
+    private final ReplayBuffer replayBuffer;
+
+    private volatile long token;
+    private volatile short lastReceived = -1;
+    private short lastAcked = -1;
+    private short nextSequence;
+
+    private Publication replayPublication;
+    private DirectBuffer replayFrame;
+    private short replaySequence;
+    private int replayOffset;
+    private int replayLength;
+
+    private final AeronUtil.BufferFiller ackFiller = (offset, buffer) -> {
+        buffer.putShort(offset, lastReceived);
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.ACK.getEncodedType());
+    };
+
+    private final AeronUtil.BufferFiller replayFiller = (offset, buffer) -> {
+        buffer.putShort(offset, replaySequence);
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.FRAME.getEncodedType());
+        buffer.putBytes(offset + BitUtil.SIZE_OF_INT, replayFrame, replayOffset, replayLength);
+    };
+
+    private final ReplayBuffer.FrameSender replaySender = (sequence, buffer, offset, length) -> {
+        replaySequence = sequence;
+        replayFrame = buffer;
+        replayOffset = offset;
+        replayLength = length;
+        return AeronUtil.tryClaimOrOfferOnce(replayPublication, replayFiller, length + BitUtil.SIZE_OF_INT);
+    };
+
+    public ResumeState() {
+        this.replayBuffer = isEnabled() ? new ReplayBuffer(Constants.REPLAY_BUFFER_LENGTH) : null;
+    }
+
+    /**
+     * @return true if sessions can be resumed, which is turned on with the reactivesocket.aeron.resumeWindowMs
+     * property
+     */
+    public static boolean isEnabled() {
+        return Constants.RESUME_WINDOW_MS > 0;
+    }
+
+    /**
+     * @return the token the server gave the session, or 0 if it hasn't got one
+     */
+    public long getToken() {
+        return token;
+    }
+
+    public void setToken(long token) {
+        this.token = token;
+    }
+
+    /**
+     * @return the sequence number to send the next frame with
+     */
+    public short nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Records that a frame was sent, or queued to be sent when the session resumes.
+     */
+    public void onSent(short sequence, ByteBuffer frame, int offset, int length) {
+        nextSequence = (short) (sequence + 1);
+        if (replayBuffer != null) {
+            replayBuffer.append(sequence, frame, offset, length);
+        }
+    }
+
+    /**
+     * Records that a frame was received.
+     *
+     * @return false if the frame has already been received and should be dropped
+     */
+    public boolean onReceive(short sequence) {
+        if (replayBuffer != null && ReplayBuffer.compare(sequence, lastReceived) <= 0) {
+            return false;
+        }
+
+        lastReceived = sequence;
+        return true;
+    }
+
+    public short getLastReceived() {
+        return lastReceived;
+    }
+
+    /**
+     * Records that the peer has received every frame up to and including a sequence number.
+     */
+    public void onAck(short sequence) {
+        if (replayBuffer != null) {
+            replayBuffer.ack(sequence);
+        }
+    }
+
+    /**
+     * Makes a single attempt to acknowledge the frames received since the last ack.
+     *
+     * @return true if an ack was sent
+     */
+    public boolean sendAck(Publication publication) {
+        if (replayBuffer == null || lastReceived == lastAcked) {
+            return false;
+        }
+
+        final short acked = lastReceived;
+        if (AeronUtil.tryClaimOrOfferOnce(publication, ackFiller, BitUtil.SIZE_OF_INT)) {
+            lastAcked = acked;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if frames have been received since the last ack was sent
+     */
+    public boolean isAckPending() {
+        return replayBuffer != null && lastReceived != lastAcked;
+    }
+
+    /**
+     * @return true if every frame the peer hasn't received is still in the replay buffer
+     */
+    public boolean canResumeAfter(short peerLastReceived) {
+        return replayBuffer != null && replayBuffer.canReplayAfter(peerLastReceived);
+    }
+
+    /**
+     * Starts replaying the frames sent after the last one the peer received, once the session has resumed. The
+     * peer learnt the last frame received from the resume handshake, so it doesn't need to be acked again.
+     */
+    public void onResumed(short peerLastReceived) {
+        lastAcked = lastReceived;
+        replayBuffer.ack(peerLastReceived);
+        replayBuffer.replayAfter(peerLastReceived);
+    }
+
+    /**
+     * @return true while frames are being replayed. New frames must be queued behind them with
+     * {@link #onSent(short, ByteBuffer, int, int)} instead of being sent
+     */
+    public boolean isReplaying() {
+        return replayBuffer != null && replayBuffer.isReplaying();
+    }
+
+    /**
+     * Sends the frames being replayed until they have all been sent, or Aeron signals back pressure.
+     *
+     * @return the number of frames sent
+     */
+    public int replay(Publication publication) {
+        replayPublication = publication;
+        try {
+            return replayBuffer.replay(replaySender);
+        } finally {
+            replayPublication = null;
+            replayFrame = null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import uk.co.real_logic.aeron.Publication;
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.TimerWheel;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks whether the peer of a session is still alive.
+ * <p>
+ * Each session has a single {@link TimerWheel.Timer} that is rescheduled every LIVENESS_INTERVAL_MS, so the
+ * cost per session is constant and nothing is allocated once it is running. Inbound traffic only sets a flag
+ * with {@link #onReceive()}. When an interval passes without any traffic the peer is probed with a
+ * {@link MessageType#PING}, and when no traffic has been received for LIVENESS_TIMEOUT_MS the session is
+ * reported dead.
+ * <p>
+ * Must only be used from the thread that owns the TimerWheel.
+ */
+public class SessionLiveness implements Runnable {
+    private static final AeronUtil.BufferFiller PING = (offset, buffer) -> {
+        buffer.putShort(offset, (short) 0);
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.PING.getEncodedType());
+    };
+
+    private static final AeronUtil.BufferFiller PONG = (offset, buffer) -> {
+        buffer.putShort(offset, (short) 0);
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.PONG.getEncodedType());
+    };
+
+    private final TimerWheel timerWheel;
+    private final TimerWheel.Timer timer;
+    private final Listener listener;
+    private final long intervalMs;
+    private final int maxMissedIntervals;
+
+    private boolean received;
+    private int missedIntervals;
+    private boolean cancelled;
+
+    /**
+     * Starts tracking the liveness of a session.
+     *
+     * @param timerWheel the timer wheel of the thread that polls the session
+     * @param sessionId  the session id, used to spread the first check of each session across an interval
+     * @param listener   called when the session is idle or dead
+     */
+    public SessionLiveness(TimerWheel timerWheel, int sessionId, Listener listener) {
+        this.timerWheel = timerWheel;
+        this.listener = listener;
+        this.intervalMs = Constants.LIVENESS_INTERVAL_MS;
+        this.maxMissedIntervals = (int) Math.max(1, Constants.LIVENESS_TIMEOUT_MS / intervalMs);
+        this.timer = timerWheel.newTimeout(intervalMs + (sessionId & Integer.MAX_VALUE) % intervalMs, TimeUnit.MILLISECONDS, this);
+    }
+
+    /**
+     * @return true if liveness tracking is turned on with the reactivesocket.aeron.livenessIntervalMs property
+     */
+    public static boolean isEnabled() {
+        return Constants.LIVENESS_INTERVAL_MS > 0;
+    }
+
+    /**
+     * Records that something was received from the peer.
+     */
+    public void onReceive() {
+        received = true;
+    }
+
+    @Override
+    public void run() {
+        if (cancelled) {
+            return;
+        }
+
+        if (received) {
+            received = false;
+            missedIntervals = 0;
+        } else if (++missedIntervals >= maxMissedIntervals) {
+            cancelled = true;
+            listener.onDead();
+            return;
+        } else {
+            listener.onIdle();
+        }
+
+        if (!cancelled) {
+            timerWheel.rescheduleTimeout(intervalMs, TimeUnit.MILLISECONDS, timer);
+        }
+    }
+
+    /**
+     * Stops tracking the session.
+     */
+    public void cancel() {
+        cancelled = true;
+        timer.cancel();
+    }
+
+    /**
+     * Makes a single attempt to send a {@link MessageType#PING}. If Aeron signals back pressure the ping is
+     * skipped, and the peer is probed again after the next interval without traffic.
+     */
+    public static boolean sendPing(Publication publication) {
+        return AeronUtil.tryClaimOrOfferOnce(publication, PING, BitUtil.SIZE_OF_INT);
+    }
+
+    /**
+     * Makes a single attempt to answer a {@link MessageType#PING} with a {@link MessageType#PONG}.
+     */
+    public static boolean sendPong(Publication publication) {
+        return AeronUtil.tryClaimOrOfferOnce(publication, PONG, BitUtil.SIZE_OF_INT);
+    }
+
+    public interface Listener {
+        /**
+         * Called when an interval passed without anything being received, so the peer should be probed.
+         */
+        void onIdle();
+
+        /**
+         * Called once when nothing has been received for LIVENESS_TIMEOUT_MS. The session is no longer tracked.
+         */
+        void onDead();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.internal;
+
+import uk.co.real_logic.agrona.IoUtil;
+import uk.co.real_logic.agrona.concurrent.AtomicBuffer;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
+import uk.co.real_logic.agrona.concurrent.CountersManager;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Counters for the transport, such as duty cycles, queue depths and back pressure, kept in a memory-mapped
+ * file so they can be read by another process without any cost to the threads updating them.
+ * <p>
+ * The file starts with a header of {@link #HEADER_LENGTH} bytes holding the version and the lengths of the
+ * labels and values buffers, followed by the labels buffer and then the values buffer in the layout used by
+ * {@link CountersManager}.
+ */
+public final class TransportCounters implements Loggable {
+    public static final int COUNTERS_FILE_VERSION = 1;
+    public static final int VERSION_OFFSET = 0;
+    public static final int LABELS_LENGTH_OFFSET = 4;
+    public static final int VALUES_LENGTH_OFFSET = 8;
+    public static final int HEADER_LENGTH = 64;
+
+    private static final TransportCounters INSTANCE = new TransportCounters();
+
+    private final CountersManager countersManager;
+
+    private final File file;
+
+    private TransportCounters() {
+        final int labelsLength = Constants.MAX_COUNTERS * CountersManager.LABEL_LENGTH;
+        final int valuesLength = Constants.MAX_COUNTERS * CountersManager.COUNTER_LENGTH;
+        final int fileLength = HEADER_LENGTH + labelsLength + valuesLength;
+
+        File counterFile = new File(Constants.COUNTERS_FILE);
+        AtomicBuffer buffer;
+        try {
+            IoUtil.deleteIfExists(counterFile);
+            final MappedByteBuffer mappedByteBuffer = IoUtil.mapNewFile(counterFile, fileLength);
+            counterFile.deleteOnExit();
+            buffer = new UnsafeBuffer(mappedByteBuffer);
+        } catch (Throwable t) {
+            error("unable to map counters file " + counterFile + ", counters will only be kept in memory", t);
+            counterFile = null;
+            buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(fileLength));
+        }
+
+        buffer.putInt(LABELS_LENGTH_OFFSET, labelsLength);
+        buffer.putInt(VALUES_LENGTH_OFFSET, valuesLength);
+        buffer.putIntOrdered(VERSION_OFFSET, COUNTERS_FILE_VERSION);
+
+        this.file = counterFile;
+        this.countersManager = new CountersManager(
+            new UnsafeBuffer(buffer, HEADER_LENGTH, labelsLength),
+            new UnsafeBuffer(buffer, HEADER_LENGTH + labelsLength, valuesLength));
+    }
+
+    public static TransportCounters getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Allocates a new counter. Free it with {@link #free(AtomicCounter)} once it is no longer used.
+     *
+     * @param label the label displayed when reading the counters
+     * @return the counter
+     */
+    public synchronized AtomicCounter newCounter(String label) {
+        return countersManager.newCounter(label);
+    }
+
+    /**
+     * Frees a counter allocated by {@link #newCounter(String)} so its slot can be reused.
+     *
+     * @param counter the counter to free
+     */
+    public synchronized void free(AtomicCounter counter) {
+        counter.close();
+    }
+
+    /**
+     * @return the file the counters are mapped to, or null if they are only kept in memory
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the counters from a counters file written by another process.
+     *
+     * @param file the counters file
+     * @param consumer called with the label and the current value of every counter
+     */
+    public static void read(File file, CounterConsumer consumer) {
+        final MappedByteBuffer mappedByteBuffer = IoUtil.mapExistingFile(file, "reactivesocket aeron counters");
+        try {
+            final UnsafeBuffer buffer = new UnsafeBuffer(mappedByteBuffer);
+            final int version = buffer.getIntVolatile(VERSION_OFFSET);
+            if (version != COUNTERS_FILE_VERSION) {
+                throw new IllegalStateException("unsupported counters file version " + version + " in " + file);
+            }
+
+            final int labelsLength = buffer.getInt(LABELS_LENGTH_OFFSET);
+            final int valuesLength = buffer.getInt(VALUES_LENGTH_OFFSET);
+            final UnsafeBuffer values = new UnsafeBuffer(buffer, HEADER_LENGTH + labelsLength, valuesLength);
+            final CountersManager reader = new CountersManager(new UnsafeBuffer(buffer, HEADER_LENGTH, labelsLength), values);
+
+            reader.forEach((id, label) ->
+                consumer.accept(id, label, values.getLongVolatile(CountersManager.counterOffset(id))));
+        } finally {
+            IoUtil.unmap(mappedByteBuffer);
+        }
+    }
+
+    @FunctionalInterface
+    public interface CounterConsumer {
+        void accept(int id, String label, long value);
+    }
+}
@@ -0,0 +1,38 @@
+package io.reactivesocket.aeron.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveIdleStrategyTest {
+
+    @Test
+    public void testParkPeriodBacksOffToMaxAndResetsOnWork() {
+        AdaptiveIdleStrategy idleStrategy = new AdaptiveIdleStrategy(0, 0, 1_000, 8_000);
+
+        idleStrategy.idle(0);
+        Assert.assertEquals(1_000, idleStrategy.getParkPeriodNs());
+
+        for (int i = 0; i < 10; i++) {
+            idleStrategy.idle(0);
+        }
+        Assert.assertEquals(8_000, idleStrategy.getParkPeriodNs());
+
+        idleStrategy.idle(1);
+        Assert.assertEquals(1_000, idleStrategy.getParkPeriodNs());
+    }
+
+    @Test
+    public void testSpinsWhileRecentlyBusy() {
+        AdaptiveIdleStrategy idleStrategy = new AdaptiveIdleStrategy(Long.MAX_VALUE, Long.MAX_VALUE, 1_000, 8_000);
+
+        for (int i = 0; i < 10; i++) {
+            idleStrategy.idle(0);
+        }
+        Assert.assertEquals(1_000, idleStrategy.getParkPeriodNs());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxParkPeriodMustNotBeLessThanMin() {
+        new AdaptiveIdleStrategy(0, 0, 8_000, 1_000);
+    }
+}
@@ -1,5 +1,7 @@
 package io.reactivesocket.aeron.internal;
 
+import org.HdrHistogram.Histogram;
+import org.junit.Assert;
 import org.junit.Test;
 import uk.co.real_logic.aeron.Publication;
 import uk.co.real_logic.aeron.logbuffer.BufferClaim;
@@ -10,6 +12,8 @@ import java.util.concurrent.TimeUnit;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class AeronUtilTest {
@@ -19,7 +23,7 @@ public class AeronUtilTest {
         Publication publication = mock(Publication.class);
         AeronUtil.BufferFiller bufferFiller = mock(AeronUtil.BufferFiller.class);
 
-        when(publication.offer(any(DirectBuffer.class))).thenReturn(Publication.BACK_PRESSURED);
+        when(publication.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenReturn(Publication.BACK_PRESSURED);
 
         AeronUtil
             .offer(publication, bufferFiller, 1, 100, TimeUnit.MILLISECONDS);
@@ -38,4 +42,73 @@ public class AeronUtilTest {
             .tryClaim(publication, bufferFiller, 1, 100, TimeUnit.MILLISECONDS);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTryClaimOrOfferOnceShouldNotSpin() {
+        Publication publication = mock(Publication.class);
+        AeronUtil.BufferFiller bufferFiller = mock(AeronUtil.BufferFiller.class);
+
+        when(publication.tryClaim(anyInt(), any(BufferClaim.class)))
+            .thenReturn(Publication.BACK_PRESSURED);
+
+        Assert.assertFalse(AeronUtil.tryClaimOrOfferOnce(publication, bufferFiller, 1));
+        verify(publication, times(1)).tryClaim(anyInt(), any(BufferClaim.class));
+    }
+
+    @Test
+    public void testTryClaimShouldRecordPublicationStats() {
+        Publication publication = mock(Publication.class);
+        AeronUtil.BufferFiller bufferFiller = mock(AeronUtil.BufferFiller.class);
+
+        when(publication.tryClaim(anyInt(), any(BufferClaim.class)))
+            .thenReturn(Publication.BACK_PRESSURED);
+
+        try {
+            AeronUtil
+                .tryClaim(publication, bufferFiller, 1, 10, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (TimedOutException e) {
+        }
+
+        PublicationStats stats = AeronUtil.getPublicationStats(publication);
+        Assert.assertTrue(stats.getBackPressured() > 0);
+        Assert.assertEquals(0, stats.getSends());
+        Assert.assertEquals(1, stats.getTimeouts());
+        Assert.assertEquals(1, stats.getBlockedSends());
+        Assert.assertEquals(1, stats.getBlockedAttemptsHistogram().getTotalCount());
+
+        AeronUtil.removePublicationStats(publication);
+        Assert.assertFalse(AeronUtil.getPublicationStats().contains(stats));
+    }
+
+    @Test
+    public void testPublicationStatsOnlyRecordBlockedSendsOnceBlocked() {
+        PublicationStats stats = new PublicationStats(1, 1, "test");
+        Assert.assertNull(stats.getBlockedTimeHistogram());
+        Assert.assertNull(stats.getBlockedAttemptsHistogram());
+
+        stats.onBlocked(TimeUnit.HOURS.toNanos(1), 2);
+        Histogram blockedTime = stats.getBlockedTimeHistogram();
+        Assert.assertEquals(1, blockedTime.getTotalCount());
+        Assert.assertTrue(blockedTime.getMaxValue() <= TimeUnit.SECONDS.toNanos(11));
+        Assert.assertEquals(1, stats.getBlockedAttemptsHistogram().getTotalCount());
+    }
+
+    @Test
+    public void testMessagesLongerThanMaxClaimLengthAreOffered() {
+        Publication publication = mock(Publication.class);
+        AeronUtil.BufferFiller bufferFiller = mock(AeronUtil.BufferFiller.class);
+
+        when(publication.tryClaim(anyInt(), any(BufferClaim.class))).thenReturn(Publication.BACK_PRESSURED);
+        when(publication.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenReturn(Publication.BACK_PRESSURED);
+
+        AeronUtil.tryClaimOrOfferOnce(publication, bufferFiller, AeronUtil.MAX_CLAIM_LENGTH);
+        verify(publication, times(1)).tryClaim(anyInt(), any(BufferClaim.class));
+
+        AeronUtil.tryClaimOrOfferOnce(publication, bufferFiller, AeronUtil.MAX_CLAIM_LENGTH + 1);
+        verify(publication, times(1)).tryClaim(anyInt(), any(BufferClaim.class));
+        verify(publication, times(1)).offer(any(DirectBuffer.class), anyInt(), anyInt());
+
+        AeronUtil.removePublicationStats(publication);
+    }
+}
@@ -0,0 +1,67 @@
+package io.reactivesocket.aeron.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventLogTest {
+
+    @Test
+    public void testReadsEventsInOrder() {
+        EventLog log = new EventLog(8);
+        log.record(EventCode.HANDSHAKE_RECEIVED, 1);
+        log.record(EventCode.BACK_PRESSURED, 2, 1000, 3);
+
+        List<String> events = new ArrayList<>();
+        int read = log.read((timestampNs, code, sessionId, value1, value2) ->
+            events.add(code + " " + sessionId + " " + value1 + " " + value2));
+
+        Assert.assertEquals(2, read);
+        Assert.assertEquals("HANDSHAKE_RECEIVED 1 0 0", events.get(0));
+        Assert.assertEquals("BACK_PRESSURED 2 1000 3", events.get(1));
+    }
+
+    @Test
+    public void testKeepsMostRecentEvents() {
+        EventLog log = new EventLog(5);
+        Assert.assertEquals(8, log.getCapacity());
+
+        for (int i = 0; i < 20; i++) {
+            log.record(EventCode.DUPLICATE_DROPPED, 1, i);
+        }
+
+        List<Long> values = new ArrayList<>();
+        log.read((timestampNs, code, sessionId, value1, value2) -> values.add(value1));
+
+        Assert.assertEquals(20, log.getRecorded());
+        Assert.assertEquals(8, values.size());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertEquals(12 + i, values.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testDisabledLogRecordsNothing() {
+        EventLog log = new EventLog(0);
+        log.record(EventCode.FRAME_DROPPED, 1);
+
+        Assert.assertFalse(log.isEnabled());
+        Assert.assertEquals(0, log.getCapacity());
+        Assert.assertEquals(0, log.read((timestampNs, code, sessionId, value1, value2) -> Assert.fail()));
+    }
+
+    @Test
+    public void testDumpsEventsAsText() {
+        EventLog log = new EventLog(4);
+        log.record(EventCode.SESSION_RESUMED, 7, 9);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        log.dump(new PrintStream(out));
+
+        Assert.assertTrue(out.toString().contains("SESSION_RESUMED sessionId=7 value1=9 value2=0"));
+    }
+}
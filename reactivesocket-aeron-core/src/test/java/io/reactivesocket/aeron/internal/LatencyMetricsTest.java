@@ -0,0 +1,87 @@
+package io.reactivesocket.aeron.internal;
+
+import io.reactivesocket.FrameType;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+public class LatencyMetricsTest {
+    private final LatencyMetrics metrics = LatencyMetrics.getInstance();
+    private final ConnectionLatency latency = metrics.newConnection("test connection");
+
+    @After
+    public void tearDown() {
+        metrics.remove(latency);
+    }
+
+    @Test
+    public void testRecordsByFrameTypeAndStage() {
+        latency.record(FrameType.REQUEST_RESPONSE, LatencyStage.SEND_QUEUE_WAIT, 1000);
+        latency.record(FrameType.REQUEST_RESPONSE, LatencyStage.SEND_QUEUE_WAIT, 2000);
+        latency.record(FrameType.RESPONSE, LatencyStage.INBOUND_DISPATCH, 500);
+
+        Histogram queueWait = latency.getIntervalHistogram(FrameType.REQUEST_RESPONSE, LatencyStage.SEND_QUEUE_WAIT);
+        Assert.assertEquals(2, queueWait.getTotalCount());
+        Assert.assertNull(latency.getIntervalHistogram(FrameType.REQUEST_RESPONSE, LatencyStage.CLAIM));
+
+        Histogram dispatch = latency.getIntervalHistogram(FrameType.RESPONSE, LatencyStage.INBOUND_DISPATCH);
+        Assert.assertEquals(1, dispatch.getTotalCount());
+        Assert.assertEquals(0, latency.getIntervalHistogram(FrameType.RESPONSE, LatencyStage.INBOUND_DISPATCH).getTotalCount());
+    }
+
+    @Test
+    public void testIntervalSnapshotOnlyHasRecordedLatencies() {
+        latency.record(FrameType.NEXT, LatencyStage.CLAIM, 100);
+        latency.record(FrameType.NEXT, LatencyStage.CLAIM, -1);
+        latency.record(FrameType.NEXT, LatencyStage.CLAIM, Long.MAX_VALUE);
+
+        List<LatencyMetrics.Snapshot> snapshots = snapshots();
+        Assert.assertEquals(1, snapshots.size());
+        LatencyMetrics.Snapshot snapshot = snapshots.get(0);
+        Assert.assertEquals(FrameType.NEXT, snapshot.getFrameType());
+        Assert.assertEquals(LatencyStage.CLAIM, snapshot.getStage());
+        Assert.assertEquals(3, snapshot.getHistogram().getTotalCount());
+        Assert.assertEquals(0, snapshot.getHistogram().getMinValue());
+        Assert.assertTrue(snapshot.getHistogram().getMaxValue() >= ConnectionLatency.HIGHEST_TRACKABLE_NS);
+
+        Assert.assertTrue(snapshots().isEmpty());
+    }
+
+    @Test
+    public void testWritesIntervalSnapshotToLog() {
+        latency.record(FrameType.REQUEST_STREAM, LatencyStage.SEND_QUEUE_WAIT, 1000);
+        latency.record(FrameType.REQUEST_STREAM, LatencyStage.SEND_QUEUE_WAIT, 3000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistogramLogWriter writer = new HistogramLogWriter(new PrintStream(out));
+        metrics.writeIntervalSnapshot(writer);
+
+        String log = out.toString();
+        Assert.assertTrue(log.contains("#connection=test connection, frameType=REQUEST_STREAM, stage=SEND_QUEUE_WAIT"));
+
+        HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(out.toByteArray()));
+        Histogram histogram = (Histogram) reader.nextIntervalHistogram();
+        Assert.assertEquals(2, histogram.getTotalCount());
+    }
+
+    @Test
+    public void testRemovedConnectionIsNotReported() {
+        latency.record(FrameType.REQUEST_RESPONSE, LatencyStage.CLAIM, 100);
+        metrics.remove(latency);
+        Assert.assertTrue(snapshots().isEmpty());
+    }
+
+    private List<LatencyMetrics.Snapshot> snapshots() {
+        List<LatencyMetrics.Snapshot> snapshots = metrics.getIntervalSnapshot();
+        snapshots.removeIf(s -> !"test connection".equals(s.getConnection()));
+        return snapshots;
+    }
+}
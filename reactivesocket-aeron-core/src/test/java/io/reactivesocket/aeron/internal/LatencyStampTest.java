@@ -0,0 +1,50 @@
+package io.reactivesocket.aeron.internal;
+
+import io.reactivesocket.FrameType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+
+public class LatencyStampTest {
+    private final ConnectionLatency latency = LatencyMetrics.getInstance().newConnection("stamp test");
+
+    @After
+    public void tearDown() {
+        LatencyMetrics.getInstance().remove(latency);
+    }
+
+    @Test
+    public void testHeaderLengthOfReceivedFrames() {
+        Assert.assertEquals(BitUtil.SIZE_OF_INT, LatencyStamp.headerLength(MessageType.FRAME));
+        Assert.assertEquals(BitUtil.SIZE_OF_INT + LatencyStamp.LENGTH, LatencyStamp.headerLength(MessageType.STAMPED_FRAME));
+        Assert.assertEquals(MessageType.STAMPED_FRAME, MessageType.from(MessageType.STAMPED_FRAME.getEncodedType()));
+    }
+
+    @Test
+    public void testRecordsStagesFromStamp() {
+        UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocate(64));
+        long nowNs = System.nanoTime();
+        LatencyStamp.write(buffer, 8, nowNs - 3_000_000, nowNs - 1_000_000);
+        LatencyStamp.record(buffer, 8, FrameType.RESPONSE, latency);
+
+        long queueWait = latency.getIntervalHistogram(FrameType.RESPONSE, LatencyStage.REMOTE_SEND_QUEUE_WAIT).getMaxValue();
+        Assert.assertEquals(2_000_000, queueWait, 20_000);
+        Assert.assertTrue(latency.getIntervalHistogram(FrameType.RESPONSE, LatencyStage.REMOTE_EGRESS).getMaxValue() >= 1_000_000);
+        Assert.assertEquals(1, latency.getIntervalHistogram(FrameType.RESPONSE, LatencyStage.TRANSIT).getTotalCount());
+    }
+
+    @Test
+    public void testClampsNegativeAndLongStages() {
+        UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocate(64));
+        long nowNs = System.nanoTime();
+        LatencyStamp.write(buffer, 0, nowNs + 1_000_000, nowNs - 10_000_000_000L);
+        LatencyStamp.record(buffer, 0, FrameType.NEXT, latency);
+
+        Assert.assertEquals(0, latency.getIntervalHistogram(FrameType.NEXT, LatencyStage.REMOTE_SEND_QUEUE_WAIT).getMaxValue());
+        Assert.assertTrue(latency.getIntervalHistogram(FrameType.NEXT, LatencyStage.REMOTE_EGRESS).getMaxValue() >= Integer.MAX_VALUE / 2);
+    }
+}
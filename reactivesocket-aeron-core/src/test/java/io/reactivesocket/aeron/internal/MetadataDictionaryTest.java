@@ -0,0 +1,171 @@
+package io.reactivesocket.aeron.internal;
+
+import io.reactivesocket.Frame;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class MetadataDictionaryTest {
+    private static final String ROUTE = "route=/orders/v2/submit";
+    private static final String AUTH = "auth=Bearer 0123456789abcdef";
+
+    private final MetadataDictionary encoder = new MetadataDictionary(4096);
+    private final MetadataDictionary decoder = new MetadataDictionary(4096);
+
+    @Test
+    public void testSendsRepeatedMetadataAsId() {
+        byte[] frame = frame(ROUTE, "first");
+        int firstLength = send(frame, ROUTE);
+        Assert.assertEquals(MetadataDictionary.HEADER_LENGTH + frame.length, firstLength);
+        Assert.assertEquals(1, decoder.getEntries());
+
+        byte[] second = frame(ROUTE, "second");
+        int secondLength = send(second, ROUTE);
+        Assert.assertEquals(MetadataDictionary.HEADER_LENGTH + second.length - ROUTE.length(), secondLength);
+        Assert.assertEquals(1, encoder.getEntries());
+        Assert.assertEquals(1, decoder.getEntries());
+    }
+
+    @Test
+    public void testEvictsOldestEntriesOnBothSides() {
+        int entrySize = ROUTE.length() + MetadataDictionary.ENTRY_OVERHEAD;
+        MetadataDictionary smallEncoder = new MetadataDictionary(entrySize + 10);
+        MetadataDictionary smallDecoder = new MetadataDictionary(entrySize + 10);
+
+        send(smallEncoder, smallDecoder, frame(ROUTE, "a"), ROUTE);
+        send(smallEncoder, smallDecoder, frame(AUTH, "b"), AUTH);
+        Assert.assertEquals(1, smallEncoder.getEntries());
+        Assert.assertEquals(1, smallDecoder.getEntries());
+        Assert.assertEquals(smallEncoder.getSize(), smallDecoder.getSize());
+
+        // ROUTE was evicted so it's sent in full again
+        byte[] frame = frame(ROUTE, "c");
+        Assert.assertEquals(MetadataDictionary.HEADER_LENGTH + frame.length, send(smallEncoder, smallDecoder, frame, ROUTE));
+
+        byte[] again = frame(ROUTE, "d");
+        Assert.assertEquals(MetadataDictionary.HEADER_LENGTH + again.length - ROUTE.length(), send(smallEncoder, smallDecoder, again, ROUTE));
+    }
+
+    @Test
+    public void testKeepsIdsInStepPastMaxEntries() {
+        for (int i = 0; i < MetadataDictionary.MAX_ENTRIES * 2 + 10; i++) {
+            String metadata = "content-type=application/" + i;
+            send(frame(metadata, "x"), metadata);
+            send(frame(metadata, "y"), metadata);
+        }
+
+        Assert.assertTrue(encoder.getEntries() <= MetadataDictionary.MAX_ENTRIES);
+        Assert.assertEquals(encoder.getEntries(), decoder.getEntries());
+    }
+
+    @Test
+    public void testFindsEntriesAfterEvictions() {
+        // large enough that entries are only evicted past MAX_ENTRIES
+        int maxSize = MetadataDictionary.MAX_ENTRIES * (64 + MetadataDictionary.ENTRY_OVERHEAD);
+        MetadataDictionary largeEncoder = new MetadataDictionary(maxSize);
+        MetadataDictionary largeDecoder = new MetadataDictionary(maxSize);
+        for (int i = 0; i < MetadataDictionary.MAX_ENTRIES * 4; i++) {
+            String metadata = "content-type=application/" + i;
+            send(largeEncoder, largeDecoder, frame(metadata, "x"), metadata);
+            byte[] again = frame(metadata, "y");
+            Assert.assertEquals(MetadataDictionary.HEADER_LENGTH + again.length - metadata.length(),
+                send(largeEncoder, largeDecoder, again, metadata));
+
+            // the entry that has been in the table the longest is still found once others around it were evicted
+            String oldest = "content-type=application/" + Math.max(0, i - MetadataDictionary.MAX_ENTRIES + 1);
+            byte[] older = frame(oldest, "z");
+            Assert.assertEquals(MetadataDictionary.HEADER_LENGTH + older.length - oldest.length(),
+                send(largeEncoder, largeDecoder, older, oldest));
+        }
+    }
+
+    @Test
+    public void testFindsMetadataThatMoved() {
+        send(frame(ROUTE, "first"), ROUTE);
+
+        // more header bytes before the metadata than in the last frame
+        byte[] moved = ("xyz" + new String(frame(ROUTE, "second"), StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(MetadataDictionary.HEADER_LENGTH + moved.length - ROUTE.length(), send(moved, ROUTE));
+    }
+
+    @Test
+    public void testDoesNotIndexShortMetadata() {
+        Frame frame = mockFrame(frame("ct=json", "data"), "ct=json");
+        Assert.assertFalse(encoder.prepare(frame));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRejectsUnknownEntry() {
+        send(frame(ROUTE, "first"), ROUTE);
+
+        Frame frame = mockFrame(frame(ROUTE, "second"), ROUTE);
+        Assert.assertTrue(encoder.prepare(frame));
+        UnsafeBuffer buffer = new UnsafeBuffer(new byte[1024]);
+        encoder.write(buffer, 0, frame.getByteBuffer(), frame.offset(), frame.length());
+
+        new MetadataDictionary(4096).decodedLength(buffer, 0, encoder.encodedLength(frame.length()));
+    }
+
+    @Test
+    public void testNegotiatesSmallerSize() {
+        Assert.assertEquals(0, MetadataDictionary.negotiate(0));
+        Assert.assertEquals(100, MetadataDictionary.negotiate(100));
+        Assert.assertEquals(MetadataDictionary.requestedSize(), MetadataDictionary.negotiate(Integer.MAX_VALUE));
+    }
+
+    private int send(byte[] frameBytes, String metadata) {
+        return send(encoder, decoder, frameBytes, metadata);
+    }
+
+    /**
+     * Sends the frame through the encoder and decoder, checks the decoder puts back the same bytes, and returns the
+     * length it was sent with.
+     */
+    private static int send(MetadataDictionary encoder, MetadataDictionary decoder, byte[] frameBytes, String metadata) {
+        Frame frame = mockFrame(frameBytes, metadata);
+        Assert.assertTrue(encoder.prepare(frame));
+
+        int length = encoder.encodedLength(frame.length());
+        UnsafeBuffer sent = new UnsafeBuffer(new byte[length + 8]);
+        encoder.write(sent, 8, frame.getByteBuffer(), frame.offset(), frame.length());
+        encoder.commit();
+
+        int decodedLength = decoder.decodedLength(sent, 8, length);
+        Assert.assertEquals(frameBytes.length, decodedLength);
+        byte[] decoded = new byte[decodedLength];
+        decoder.decode(sent, 8, length, new UnsafeBuffer(decoded), 0);
+        Assert.assertTrue(Arrays.equals(frameBytes, decoded));
+
+        return length;
+    }
+
+    /**
+     * A frame with some header bytes, then the metadata, then the data.
+     */
+    private static byte[] frame(String metadata, String data) {
+        byte[] metadataBytes = metadata.getBytes(StandardCharsets.UTF_8);
+        byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(12 + metadataBytes.length + dataBytes.length);
+        frame.putInt(frame.capacity()).putInt(7).putInt(metadataBytes.length).put(metadataBytes).put(dataBytes);
+        return frame.array();
+    }
+
+    private static Frame mockFrame(byte[] frameBytes, String metadata) {
+        // The frame is at an offset in its buffer, like frames read from a larger buffer
+        ByteBuffer buffer = ByteBuffer.allocate(frameBytes.length + 5);
+        buffer.position(5);
+        buffer.put(frameBytes);
+
+        Frame frame = Mockito.mock(Frame.class);
+        Mockito.when(frame.getByteBuffer()).thenReturn(buffer);
+        Mockito.when(frame.offset()).thenReturn(5);
+        Mockito.when(frame.length()).thenReturn(frameBytes.length);
+        Mockito.when(frame.getMetadata()).thenReturn(ByteBuffer.wrap(metadata.getBytes(StandardCharsets.UTF_8)));
+        return frame;
+    }
+}
@@ -0,0 +1,109 @@
+package io.reactivesocket.aeron.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReplayBufferTest {
+
+    @Test
+    public void testReplaysFramesAfterLastReceived() {
+        ReplayBuffer replayBuffer = new ReplayBuffer(1024);
+        for (short i = 0; i < 10; i++) {
+            append(replayBuffer, i);
+        }
+
+        Assert.assertTrue(replayBuffer.canReplayAfter((short) 5));
+        replayBuffer.replayAfter((short) 5);
+
+        List<Short> replayed = replay(replayBuffer, Integer.MAX_VALUE);
+        Assert.assertEquals(4, replayed.size());
+        Assert.assertEquals(6, (short) replayed.get(0));
+        Assert.assertEquals(9, (short) replayed.get(3));
+        Assert.assertFalse(replayBuffer.isReplaying());
+    }
+
+    @Test
+    public void testAckDropsAcknowledgedFrames() {
+        ReplayBuffer replayBuffer = new ReplayBuffer(1024);
+        for (short i = 0; i < 10; i++) {
+            append(replayBuffer, i);
+        }
+
+        replayBuffer.ack((short) 6);
+        Assert.assertEquals(3, replayBuffer.frames());
+        Assert.assertTrue(replayBuffer.canReplayAfter((short) 6));
+        Assert.assertFalse(replayBuffer.canReplayAfter((short) 4));
+        Assert.assertTrue(replayBuffer.canReplayAfter((short) 9));
+        Assert.assertFalse(replayBuffer.canReplayAfter((short) 10));
+    }
+
+    @Test
+    public void testDropsOldestFramesWhenFull() {
+        ReplayBuffer replayBuffer = new ReplayBuffer(256);
+        for (short i = 0; i < 100; i++) {
+            append(replayBuffer, i);
+        }
+
+        Assert.assertTrue(replayBuffer.frames() < 100);
+        Assert.assertFalse(replayBuffer.canReplayAfter((short) 0));
+        Assert.assertTrue(replayBuffer.canReplayAfter((short) 98));
+
+        replayBuffer.replayAfter((short) 98);
+        List<Short> replayed = replay(replayBuffer, Integer.MAX_VALUE);
+        Assert.assertEquals(1, replayed.size());
+        Assert.assertEquals(99, (short) replayed.get(0));
+    }
+
+    @Test
+    public void testSequenceNumbersWrap() {
+        ReplayBuffer replayBuffer = new ReplayBuffer(1024);
+        short sequence = Short.MAX_VALUE - 2;
+        for (int i = 0; i < 6; i++) {
+            append(replayBuffer, sequence++);
+        }
+
+        Assert.assertTrue(replayBuffer.canReplayAfter((short) (Short.MAX_VALUE - 1)));
+        replayBuffer.replayAfter((short) (Short.MAX_VALUE - 1));
+        Assert.assertEquals(4, replay(replayBuffer, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testReplayStopsWhenSenderIsBackPressured() {
+        ReplayBuffer replayBuffer = new ReplayBuffer(1024);
+        for (short i = 0; i < 10; i++) {
+            append(replayBuffer, i);
+        }
+
+        replayBuffer.replayAfter((short) -1);
+        Assert.assertEquals(3, replay(replayBuffer, 3).size());
+        Assert.assertTrue(replayBuffer.isReplaying());
+        Assert.assertEquals(7, replay(replayBuffer, Integer.MAX_VALUE).size());
+        Assert.assertFalse(replayBuffer.isReplaying());
+    }
+
+    private static void append(ReplayBuffer replayBuffer, short sequence) {
+        ByteBuffer frame = ByteBuffer.allocate(20);
+        frame.putShort(0, sequence);
+        replayBuffer.append(sequence, frame, 0, frame.capacity());
+    }
+
+    private static List<Short> replay(ReplayBuffer replayBuffer, int limit) {
+        List<Short> replayed = new ArrayList<>();
+        replayBuffer.replay((sequence, buffer, offset, length) -> {
+            if (replayed.size() == limit) {
+                return false;
+            }
+
+            Assert.assertEquals(sequence, buffer.getShort(offset, ByteOrder.BIG_ENDIAN));
+            replayed.add(sequence);
+            return true;
+        });
+
+        return replayed;
+    }
+}
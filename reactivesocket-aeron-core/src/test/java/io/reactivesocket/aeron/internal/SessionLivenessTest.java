@@ -0,0 +1,79 @@
+package io.reactivesocket.aeron.internal;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import uk.co.real_logic.agrona.TimerWheel;
+
+import java.util.concurrent.TimeUnit;
+
+public class SessionLivenessTest {
+    private long now;
+    private TimerWheel timerWheel;
+    private int idle;
+    private int dead;
+
+    private final SessionLiveness.Listener listener = new SessionLiveness.Listener() {
+        @Override
+        public void onIdle() {
+            idle++;
+        }
+
+        @Override
+        public void onDead() {
+            dead++;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        now = 0;
+        timerWheel = new TimerWheel(() -> now, 10, TimeUnit.MILLISECONDS, 128);
+    }
+
+    @Test
+    public void testProbesIdleSessionAndReportsItDead() {
+        new SessionLiveness(timerWheel, 0, listener);
+
+        advance(Constants.LIVENESS_TIMEOUT_MS - 500);
+        Assert.assertEquals(0, dead);
+        Assert.assertTrue(idle > 0);
+
+        advance(1000);
+        Assert.assertEquals(1, dead);
+        Assert.assertEquals(Constants.LIVENESS_TIMEOUT_MS / Constants.LIVENESS_INTERVAL_MS - 1, idle);
+
+        advance(Constants.LIVENESS_TIMEOUT_MS);
+        Assert.assertEquals(1, dead);
+    }
+
+    @Test
+    public void testTrafficKeepsSessionAlive() {
+        SessionLiveness liveness = new SessionLiveness(timerWheel, 0, listener);
+
+        for (int i = 0; i < 50; i++) {
+            liveness.onReceive();
+            advance(Constants.LIVENESS_INTERVAL_MS / 2);
+        }
+
+        Assert.assertEquals(0, idle);
+        Assert.assertEquals(0, dead);
+    }
+
+    @Test
+    public void testCancelStopsTracking() {
+        SessionLiveness liveness = new SessionLiveness(timerWheel, 0, listener);
+        liveness.cancel();
+
+        advance(2 * Constants.LIVENESS_TIMEOUT_MS);
+        Assert.assertEquals(0, idle);
+        Assert.assertEquals(0, dead);
+    }
+
+    private void advance(long ms) {
+        for (long i = 0; i < ms; i += 10) {
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+            timerWheel.expireTimers();
+        }
+    }
+}
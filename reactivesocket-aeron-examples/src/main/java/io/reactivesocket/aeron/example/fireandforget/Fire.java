@@ -21,7 +21,7 @@ import io.reactivesocket.Payload;
 import io.reactivesocket.ReactiveSocket;
 import io.reactivesocket.aeron.client.AeronClientDuplexConnection;
 import io.reactivesocket.aeron.client.AeronClientDuplexConnectionFactory;
-import io.reactivesocket.aeron.client.FrameHolder;
+import io.reactivesocket.aeron.internal.LatencyMetrics;
 import org.HdrHistogram.Recorder;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscription;
@@ -72,9 +72,10 @@ public class Fire {
             .computation()
             .createWorker()
             .schedulePeriodically(() -> {
-                System.out.println("---- FRAME HOLDER HISTO ----");
-                FrameHolder.histogram.getIntervalHistogram().outputPercentileDistribution(System.out, 5, 1000.0, false);
-                System.out.println("---- FRAME HOLDER HISTO ----");
+                for (LatencyMetrics.Snapshot snapshot : LatencyMetrics.getInstance().getIntervalSnapshot()) {
+                    System.out.println("---- " + snapshot.getConnection() + " " + snapshot.getFrameType() + " " + snapshot.getStage() + " HISTO ----");
+                    snapshot.getHistogram().outputPercentileDistribution(System.out, 5, 1000.0, false);
+                }
 
                 System.out.println("---- Fire / Forget HISTO ----");
                 histogram.getIntervalHistogram().outputPercentileDistribution(System.out, 5, 1000.0, false);
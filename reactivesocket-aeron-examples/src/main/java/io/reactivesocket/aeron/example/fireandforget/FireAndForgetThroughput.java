@@ -0,0 +1,274 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.example.fireandforget;
+
+import io.reactivesocket.ConnectionSetupPayload;
+import io.reactivesocket.Frame;
+import io.reactivesocket.Payload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.RequestHandler;
+import io.reactivesocket.aeron.client.AeronClientDuplexConnection;
+import io.reactivesocket.aeron.client.AeronClientDuplexConnectionFactory;
+import io.reactivesocket.aeron.internal.TransportCounters;
+import io.reactivesocket.aeron.server.ReactiveSocketAeronServer;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rx.RxReactiveStreams;
+import uk.co.real_logic.aeron.driver.MediaDriver;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends fire and forget requests as fast as they are accepted, over one or more connections to servers in the same
+ * process, and reports the sustained rate in messages and bytes per second for each payload size. Every request is
+ * counted at each layer it passes through, so a gap between what was offered and what was handled is attributed
+ * to the stage that lost or held on to it:
+ * <ul>
+ *     <li>offered - fireAndForget was called</li>
+ *     <li>accepted - the publisher returned by fireAndForget completed, rather than failing</li>
+ *     <li>queued - the client connection put the frame on the send queue</li>
+ *     <li>sent - the client's duty thread wrote the frame to Aeron</li>
+ *     <li>not sent - the client's duty thread discarded the frame because the connection was suspended or
+ *     closed</li>
+ *     <li>received - a server took the frame from Aeron for a connection</li>
+ *     <li>dropped - a server discarded the frame because there was no connection for it, or it was a duplicate</li>
+ *     <li>handled - the server's request handler was called</li>
+ * </ul>
+ * The transport layers are read from the {@link TransportCounters} of the process, so the counts include the few
+ * frames, such as keep alives, that aren't fire and forget requests.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ *     <li>ports - comma separated ports to start a server on and make a connection to each of, defaults to 39790</li>
+ *     <li>payloadSizes - comma separated lengths of the request data to run with, defaults to 32,256,1024,4096</li>
+ *     <li>warmup - the seconds to send for before each measurement, defaults to 5</li>
+ *     <li>duration - the seconds to measure each payload size for, defaults to 10</li>
+ *     <li>embeddedDriver - whether to launch a media driver in the process, defaults to true</li>
+ * </ul>
+ */
+public class FireAndForgetThroughput {
+    private static final long SETTLE_NS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long DRAIN_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final LongAdder handled = new LongAdder();
+
+    public static void main(String... args) throws Exception {
+        final String[] ports = System.getProperty("ports", "39790").split(",");
+        final String[] payloadSizes = System.getProperty("payloadSizes", "32,256,1024,4096").split(",");
+        final long warmup = Long.getLong("warmup", 5);
+        final long duration = Long.getLong("duration", 10);
+        final boolean embeddedDriver = Boolean.parseBoolean(System.getProperty("embeddedDriver", "true"));
+
+        if (TransportCounters.getInstance().getFile() == null) {
+            throw new IllegalStateException("The transport counters aren't mapped to a file, so the layers can't be counted");
+        }
+
+        if (embeddedDriver) {
+            final MediaDriver.Context context = new MediaDriver.Context();
+            context.dirsDeleteOnStart(true);
+            MediaDriver.launch(context);
+        }
+
+        final AeronClientDuplexConnectionFactory cf = AeronClientDuplexConnectionFactory.getInstance();
+        final ReactiveSocket[] sockets = new ReactiveSocket[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            final int port = Integer.parseInt(ports[i].trim());
+            ReactiveSocketAeronServer.create(port, setupPayload ->
+                new RequestHandler.Builder()
+                    .withFireAndForget(payload -> subscriber -> {
+                        handled.increment();
+                        subscriber.onSubscribe(new Subscription() {
+                            @Override
+                            public void request(long n) {
+                            }
+
+                            @Override
+                            public void cancel() {
+                            }
+                        });
+                        subscriber.onComplete();
+                    })
+                    .build());
+
+            final InetSocketAddress address = new InetSocketAddress("localhost", port);
+            cf.addSocketAddressToHandleResponses(address);
+            final AeronClientDuplexConnection connection = RxReactiveStreams
+                .toObservable(cf.createAeronClientDuplexConnection(address))
+                .toBlocking()
+                .single();
+
+            sockets[i] = ReactiveSocket.fromClientConnection(connection, ConnectionSetupPayload.create("UTF-8", "UTF-8", ConnectionSetupPayload.NO_FLAGS));
+            sockets[i].startAndWait();
+        }
+
+        System.out.println("Sending fire and forget requests over " + sockets.length + " connections");
+        System.out.format("%8s %14s %14s %14s %14s %14s %14s %14s %14s %14s %12s %14s%n",
+            "size", "offered", "accepted", "errors", "queued", "sent", "not sent", "received", "dropped", "handled", "msgs/s", "bytes/s");
+
+        for (String payloadSize : payloadSizes) {
+            final byte[] data = new byte[Integer.parseInt(payloadSize.trim())];
+            run(sockets, data, TimeUnit.SECONDS.toNanos(warmup));
+            settle();
+
+            final Layers before = Layers.read();
+            final Senders senders = run(sockets, data, TimeUnit.SECONDS.toNanos(duration));
+            final long handledInDuration = handled.sum() - before.handled;
+            settle();
+            final Layers after = Layers.read();
+
+            final double messagesPerSecond = (double) handledInDuration / duration;
+            System.out.format("%8d %14d %14d %14d %14d %14d %14d %14d %14d %14d %12.0f %14.0f%n",
+                data.length,
+                senders.offered.sum(),
+                senders.accepted.sum(),
+                senders.errors.sum(),
+                after.queued - before.queued,
+                after.sent - before.sent - (after.notSent - before.notSent),
+                after.notSent - before.notSent,
+                after.received - before.received,
+                after.dropped - before.dropped,
+                after.handled - before.handled,
+                messagesPerSecond,
+                messagesPerSecond * data.length);
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * Sends from a thread for each connection until the time is up.
+     */
+    private static Senders run(ReactiveSocket[] sockets, byte[] data, long durationNs) throws InterruptedException {
+        final Senders senders = new Senders();
+        final long deadline = System.nanoTime() + durationNs;
+        final Thread[] threads = new Thread[sockets.length];
+        for (int i = 0; i < sockets.length; i++) {
+            final ReactiveSocket socket = sockets[i];
+            threads[i] = new Thread(() -> {
+                final Payload payload = payload(data);
+                while (System.nanoTime() - deadline < 0) {
+                    senders.offered.increment();
+                    socket.fireAndForget(payload).subscribe(new CountingSubscriber(senders));
+                }
+            });
+            threads[i].setName("fire-and-forget-sender-" + i);
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return senders;
+    }
+
+    /**
+     * Waits until the servers have stopped handling requests, or the drain timeout, so everything sent is counted.
+     */
+    private static void settle() throws InterruptedException {
+        final long deadline = System.nanoTime() + DRAIN_TIMEOUT_NS;
+        long last;
+        do {
+            last = handled.sum();
+            TimeUnit.NANOSECONDS.sleep(SETTLE_NS);
+        } while (handled.sum() != last && System.nanoTime() - deadline < 0);
+    }
+
+    private static Payload payload(byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        return new Payload() {
+            @Override
+            public ByteBuffer getData() {
+                return buffer;
+            }
+
+            @Override
+            public ByteBuffer getMetadata() {
+                return Frame.NULL_BYTEBUFFER;
+            }
+        };
+    }
+
+    static class Senders {
+        private final LongAdder offered = new LongAdder();
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    static class CountingSubscriber implements Subscriber<Void> {
+        private final Senders senders;
+
+        CountingSubscriber(Senders senders) {
+            this.senders = senders;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Void aVoid) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            senders.errors.increment();
+        }
+
+        @Override
+        public void onComplete() {
+            senders.accepted.increment();
+        }
+    }
+
+    /**
+     * A snapshot of the frames counted by each layer of the transport, summed over the servers' workers.
+     */
+    static class Layers {
+        private long queued;
+        private long sent;
+        private long notSent;
+        private long received;
+        private long dropped;
+        private long handled;
+
+        static Layers read() {
+            final Layers layers = new Layers();
+            final File file = TransportCounters.getInstance().getFile();
+            TransportCounters.read(file, (id, label, value) -> {
+                if ("client: frames queued".equals(label)) {
+                    layers.queued += value;
+                } else if ("client: frames sent".equals(label)) {
+                    layers.sent += value;
+                } else if ("client: frames not sent".equals(label)) {
+                    layers.notSent += value;
+                } else if (label.startsWith("server port ") && label.endsWith(": frames received")) {
+                    layers.received += value;
+                } else if (label.startsWith("server port ") && label.endsWith(": frames dropped")) {
+                    layers.dropped += value;
+                }
+            });
+            layers.handled = FireAndForgetThroughput.handled.sum();
+
+            return layers;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.example.load;
+
+import io.reactivesocket.ConnectionSetupPayload;
+import io.reactivesocket.Frame;
+import io.reactivesocket.Payload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.client.AeronClientDuplexConnection;
+import io.reactivesocket.aeron.client.AeronClientDuplexConnectionFactory;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rx.RxReactiveStreams;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load generator, to run against a {@link LoadServer}. Requests are sent at a fixed rate whether or not
+ * earlier requests have been answered, and latency is measured from when each request should have been sent,
+ * so time spent queued behind a slow response, or behind the generator falling behind its schedule, is counted
+ * rather than hidden. The time from when each request was actually sent is recorded as the service time.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ *     <li>server - the host of the server, defaults to localhost</li>
+ *     <li>ports - comma separated ports of the server to make a connection to each of, defaults to 39790. Every
+ *     connection needs a port of its own, because Aeron shares one publication for everything a process sends
+ *     to the same channel</li>
+ *     <li>rate - the requests per second to send across all the connections, defaults to 10000</li>
+ *     <li>warmup - the seconds to send before recording, defaults to 10</li>
+ *     <li>duration - the seconds to send and record for, defaults to 60</li>
+ *     <li>payloadSize - the length of the request data, defaults to 64</li>
+ *     <li>mix - the weight of each kind of request, defaults to requestResponse=8,requestStream=1,fireAndForget=1</li>
+ *     <li>maxOutstanding - the requests that can be waiting for a response before further requests are dropped
+ *     rather than sent, defaults to 100000</li>
+ *     <li>logPrefix - the prefix of the HdrHistogram log file written for each kind of request, defaults to
+ *     load</li>
+ *     <li>reportInterval - the seconds between interval histograms, defaults to 1</li>
+ * </ul>
+ * Latencies are recorded in nanoseconds. The logs can be plotted with HdrHistogram's HistogramLogProcessor.
+ */
+public class LoadGenerator {
+    private static final AtomicLong outstanding = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+
+    public static void main(String... args) throws Exception {
+        final String server = System.getProperty("server", "localhost");
+        final String[] ports = System.getProperty("ports", "39790").split(",");
+        final long rate = Long.getLong("rate", 10_000);
+        final long warmup = Long.getLong("warmup", 10);
+        final long duration = Long.getLong("duration", 60);
+        final int payloadSize = Integer.getInteger("payloadSize", 64);
+        final String mix = System.getProperty("mix", "requestResponse=8,requestStream=1,fireAndForget=1");
+        final long maxOutstanding = Long.getLong("maxOutstanding", 100_000);
+        final String logPrefix = System.getProperty("logPrefix", "load");
+        final long reportInterval = Long.getLong("reportInterval", 1);
+
+        final RequestType[] schedule = schedule(mix);
+        final byte[] data = new byte[payloadSize];
+        new Random().nextBytes(data);
+
+        final ReactiveSocket[] sockets = connect(server, ports);
+
+        final List<RequestStats> stats = new ArrayList<>();
+        for (RequestType type : RequestType.values()) {
+            stats.add(new RequestStats(type, logPrefix));
+        }
+
+        System.out.println("Sending " + rate + " requests per second of " + mix + " to " + sockets.length
+            + " connections, warming up for " + warmup + " seconds and then recording for " + duration + " seconds");
+
+        final long start = System.nanoTime();
+        final long recordFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        final long end = recordFrom + TimeUnit.SECONDS.toNanos(duration);
+
+        final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> {
+            final boolean recording = System.nanoTime() > recordFrom;
+            for (RequestStats s : stats) {
+                s.report(recording);
+            }
+        }, reportInterval, reportInterval, TimeUnit.SECONDS);
+
+        for (long sent = 0; ; sent++) {
+            final long intended = start + sent * 1_000_000_000L / rate;
+            if (intended - end >= 0) {
+                break;
+            }
+
+            long now;
+            while ((now = System.nanoTime()) - intended < 0) {
+                if (intended - now > TimeUnit.MICROSECONDS.toNanos(100)) {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                }
+            }
+
+            if (outstanding.get() >= maxOutstanding) {
+                dropped.incrementAndGet();
+                continue;
+            }
+
+            final RequestType type = schedule[(int) (sent % schedule.length)];
+            final ReactiveSocket socket = sockets[(int) (sent % sockets.length)];
+            final RequestStats requestStats = stats.get(type.ordinal());
+            outstanding.incrementAndGet();
+            requestStats.sent.incrementAndGet();
+            type.send(socket, payload(data)).subscribe(new ResponseSubscriber(requestStats, intended, now));
+        }
+
+        final long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (outstanding.get() > 0 && System.nanoTime() - drainDeadline < 0) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        reporter.shutdown();
+        reporter.awaitTermination(reportInterval + 1, TimeUnit.SECONDS);
+
+        System.out.println();
+        System.out.println("Dropped => " + dropped.get() + ", still outstanding => " + outstanding.get());
+        for (RequestStats s : stats) {
+            s.report(true);
+            s.summarise(System.out, duration);
+        }
+
+        System.exit(0);
+    }
+
+    private static ReactiveSocket[] connect(String server, String[] ports) {
+        final AeronClientDuplexConnectionFactory cf = AeronClientDuplexConnectionFactory.getInstance();
+        final ReactiveSocket[] sockets = new ReactiveSocket[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            final InetSocketAddress address = new InetSocketAddress(server, Integer.parseInt(ports[i].trim()));
+            cf.addSocketAddressToHandleResponses(address);
+
+            System.out.println("Creating connection to => " + address);
+            final AeronClientDuplexConnection connection = RxReactiveStreams
+                .toObservable(cf.createAeronClientDuplexConnection(address))
+                .toBlocking()
+                .single();
+
+            sockets[i] = ReactiveSocket.fromClientConnection(connection, ConnectionSetupPayload.create("UTF-8", "UTF-8", ConnectionSetupPayload.NO_FLAGS));
+            sockets[i].startAndWait();
+        }
+
+        return sockets;
+    }
+
+    /**
+     * Spreads the kinds of request evenly over a schedule as long as the sum of their weights.
+     */
+    static RequestType[] schedule(String mix) {
+        final int[] weights = new int[RequestType.values().length];
+        int total = 0;
+        for (String entry : mix.split(",")) {
+            final String[] nameAndWeight = entry.split("=");
+            final RequestType type = RequestType.from(nameAndWeight[0].trim());
+            final int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1].trim()) : 1;
+            weights[type.ordinal()] += weight;
+            total += weight;
+        }
+
+        if (total <= 0) {
+            throw new IllegalArgumentException("No requests in mix => " + mix);
+        }
+
+        final RequestType[] schedule = new RequestType[total];
+        final int[] scheduled = new int[weights.length];
+        for (int i = 0; i < total; i++) {
+            // pick the kind furthest behind its share so far
+            int next = 0;
+            double furthestBehind = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < weights.length; t++) {
+                final double behind = (double) weights[t] * (i + 1) / total - scheduled[t];
+                if (weights[t] > scheduled[t] && behind > furthestBehind) {
+                    furthestBehind = behind;
+                    next = t;
+                }
+            }
+            scheduled[next]++;
+            schedule[i] = RequestType.values()[next];
+        }
+
+        return schedule;
+    }
+
+    private static Payload payload(byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        return new Payload() {
+            @Override
+            public ByteBuffer getData() {
+                return buffer;
+            }
+
+            @Override
+            public ByteBuffer getMetadata() {
+                return Frame.NULL_BYTEBUFFER;
+            }
+        };
+    }
+
+    enum RequestType {
+        REQUEST_RESPONSE("requestResponse"),
+        REQUEST_STREAM("requestStream"),
+        FIRE_AND_FORGET("fireAndForget");
+
+        private final String property;
+
+        RequestType(String property) {
+            this.property = property;
+        }
+
+        Publisher<?> send(ReactiveSocket socket, Payload payload) {
+            switch (this) {
+                case REQUEST_RESPONSE:
+                    return socket.requestResponse(payload);
+                case REQUEST_STREAM:
+                    return socket.requestStream(payload);
+                default:
+                    return socket.fireAndForget(payload);
+            }
+        }
+
+        static RequestType from(String property) {
+            for (RequestType type : values()) {
+                if (type.property.equalsIgnoreCase(property)) {
+                    return type;
+                }
+            }
+
+            throw new IllegalArgumentException("Unknown request type => " + property);
+        }
+    }
+
+    /**
+     * The latencies of one kind of request. Interval histograms are written to a log file of its own once the
+     * warmup is over, and added up for the summary.
+     */
+    static class RequestStats {
+        private final RequestType type;
+        private final Recorder latency = new Recorder(3);
+        private final Recorder serviceTime = new Recorder(3);
+        private final Histogram totalLatency = new Histogram(3);
+        private final Histogram totalServiceTime = new Histogram(3);
+        private final HistogramLogWriter log;
+
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        private Histogram intervalLatency;
+        private Histogram intervalServiceTime;
+
+        RequestStats(RequestType type, String logPrefix) throws FileNotFoundException {
+            this.type = type;
+            this.log = new HistogramLogWriter(new PrintStream(logPrefix + "-" + type.property + ".hlog"));
+
+            final long now = System.currentTimeMillis();
+            log.outputComment("[Latency of " + type.property + " from its intended send time in nanoseconds]");
+            log.outputLogFormatVersion();
+            log.outputStartTime(now);
+            log.setBaseTime(now);
+            log.outputLegend();
+        }
+
+        void record(long latencyNs, long serviceTimeNs) {
+            latency.recordValue(Math.max(0, latencyNs));
+            serviceTime.recordValue(Math.max(0, serviceTimeNs));
+            completed.incrementAndGet();
+        }
+
+        synchronized void report(boolean recording) {
+            intervalLatency = latency.getIntervalHistogram(intervalLatency);
+            intervalServiceTime = serviceTime.getIntervalHistogram(intervalServiceTime);
+            if (!recording) {
+                return;
+            }
+
+            totalLatency.add(intervalLatency);
+            totalServiceTime.add(intervalServiceTime);
+            if (intervalLatency.getTotalCount() > 0) {
+                log.outputIntervalHistogram(intervalLatency);
+            }
+        }
+
+        synchronized void summarise(PrintStream out, long durationSeconds) {
+            out.println();
+            out.println("---- " + type.property + " ----");
+            out.format("sent => %d, completed => %d, errors => %d, recorded rate => %.1f/s%n",
+                sent.get(), completed.get(), errors.get(), (double) totalLatency.getTotalCount() / durationSeconds);
+            if (totalLatency.getTotalCount() > 0) {
+                out.format("service time in us => p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                    totalServiceTime.getValueAtPercentile(50) / 1000.0,
+                    totalServiceTime.getValueAtPercentile(99) / 1000.0,
+                    totalServiceTime.getValueAtPercentile(99.9) / 1000.0,
+                    totalServiceTime.getMaxValue() / 1000.0);
+                out.println("latency in us:");
+                totalLatency.outputPercentileDistribution(out, 5, 1000.0, false);
+            }
+        }
+    }
+
+    static class ResponseSubscriber implements Subscriber<Object> {
+        private final RequestStats stats;
+        private final long intendedNs;
+        private final long sentNs;
+
+        ResponseSubscriber(RequestStats stats, long intendedNs, long sentNs) {
+            this.stats = stats;
+            this.intendedNs = intendedNs;
+            this.sentNs = sentNs;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Object o) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            stats.errors.incrementAndGet();
+            outstanding.decrementAndGet();
+        }
+
+        @Override
+        public void onComplete() {
+            final long now = System.nanoTime();
+            stats.record(now - intendedNs, now - sentNs);
+            outstanding.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.example.load;
+
+import io.reactivesocket.Frame;
+import io.reactivesocket.Payload;
+import io.reactivesocket.RequestHandler;
+import io.reactivesocket.aeron.server.ReactiveSocketAeronServer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Server for the {@link LoadGenerator}, answering request-response, request-stream and fire-and-forget.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ *     <li>host - the address to listen on, defaults to localhost</li>
+ *     <li>ports - comma separated ports to listen on, one for each connection the load generator makes,
+ *     defaults to 39790</li>
+ *     <li>payloadSize - the length of the response data, defaults to 64</li>
+ *     <li>streamLength - the number of responses to a request-stream, defaults to 10</li>
+ * </ul>
+ */
+public class LoadServer {
+
+    public static void main(String... args) throws Exception {
+        final String host = System.getProperty("host", "localhost");
+        final String[] ports = System.getProperty("ports", "39790").split(",");
+        final int payloadSize = Integer.getInteger("payloadSize", 64);
+        final int streamLength = Integer.getInteger("streamLength", 10);
+
+        final byte[] response = new byte[payloadSize];
+        new Random().nextBytes(response);
+
+        final RequestHandler handler = new RequestHandler.Builder()
+            .withRequestResponse(payload -> respond(response, 1))
+            .withRequestStream(payload -> respond(response, streamLength))
+            .withFireAndForget(payload -> LoadServer::complete)
+            .build();
+
+        for (String port : ports) {
+            System.out.println("Listening on => " + host + ":" + port.trim());
+            ReactiveSocketAeronServer.create(host, Integer.parseInt(port.trim()), setupPayload -> handler);
+        }
+
+        new CountDownLatch(1).await();
+    }
+
+    /**
+     * @return a Publisher that emits count responses, as they are requested
+     */
+    private static Publisher<Payload> respond(byte[] response, int count) {
+        return s -> s.onSubscribe(new Subscription() {
+            private long emitted;
+            private boolean cancelled;
+
+            @Override
+            public void request(long n) {
+                for (long i = 0; i < n && emitted < count && !cancelled; i++) {
+                    emitted++;
+                    s.onNext(payload(response));
+                }
+
+                if (emitted == count && !cancelled) {
+                    cancelled = true;
+                    s.onComplete();
+                }
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        });
+    }
+
+    private static void complete(Subscriber<? super Void> s) {
+        s.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        s.onComplete();
+    }
+
+    private static Payload payload(byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        return new Payload() {
+            @Override
+            public ByteBuffer getData() {
+                return buffer;
+            }
+
+            @Override
+            public ByteBuffer getMetadata() {
+                return Frame.NULL_BYTEBUFFER;
+            }
+        };
+    }
+}
@@ -20,7 +20,7 @@ import io.reactivesocket.Payload;
 import io.reactivesocket.ReactiveSocket;
 import io.reactivesocket.aeron.client.AeronClientDuplexConnection;
 import io.reactivesocket.aeron.client.AeronClientDuplexConnectionFactory;
-import io.reactivesocket.aeron.client.FrameHolder;
+import io.reactivesocket.aeron.internal.LatencyMetrics;
 import org.HdrHistogram.Recorder;
 import org.reactivestreams.Publisher;
 import rx.Observable;
@@ -77,9 +77,10 @@ public class Ping {
             .computation()
             .createWorker()
             .schedulePeriodically(() -> {
-                System.out.println("---- FRAME HOLDER HISTO ----");
-                FrameHolder.histogram.getIntervalHistogram().outputPercentileDistribution(System.out, 5, 1000.0, false);
-                System.out.println("---- FRAME HOLDER HISTO ----");
+                for (LatencyMetrics.Snapshot snapshot : LatencyMetrics.getInstance().getIntervalSnapshot()) {
+                    System.out.println("---- " + snapshot.getConnection() + " " + snapshot.getFrameType() + " " + snapshot.getStage() + " HISTO ----");
+                    snapshot.getHistogram().outputPercentileDistribution(System.out, 5, 1000.0, false);
+                }
 
                 System.out.println("---- PING/ PONG HISTO ----");
                 histogram.getIntervalHistogram().outputPercentileDistribution(System.out, 5, 1000.0, false);
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.example.stats;
+
+import io.reactivesocket.aeron.internal.TransportCounters;
+import uk.co.real_logic.agrona.IoUtil;
+
+import java.io.File;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the transport counters of a running client or server. Reads the counters file they map, so it can
+ * run in a separate process without slowing them down.
+ * <p>
+ * Pass the counters file as the first argument, or leave it out to read the most recently modified
+ * counters file in the temp directory. Set the period between prints with -Dperiod=&lt;seconds&gt;.
+ */
+public class TransportStat {
+
+    public static void main(String... args) throws Exception {
+        final long period = Long.getLong("period", 1);
+        final File file = args.length > 0 ? new File(args[0]) : newestCountersFile();
+
+        if (file == null || !file.exists()) {
+            System.err.println("No counters file found, pass the file to read as the first argument");
+            System.exit(1);
+        }
+
+        System.out.println("Reading counters from => " + file);
+
+        for (;;) {
+            System.out.println("---- " + new Date() + " ----");
+            TransportCounters.read(file, (id, label, value) ->
+                System.out.format("%3d: %,20d - %s%n", id, value, label));
+
+            TimeUnit.SECONDS.sleep(period);
+        }
+    }
+
+    private static File newestCountersFile() {
+        final File[] files = new File(IoUtil.tmpDirName())
+            .listFiles((dir, name) -> name.startsWith("reactivesocket-aeron-") && name.endsWith(".counters"));
+
+        File newest = null;
+        if (files != null) {
+            for (File file : files) {
+                if (newest == null || file.lastModified() > newest.lastModified()) {
+                    newest = file;
+                }
+            }
+        }
+
+        return newest;
+    }
+}
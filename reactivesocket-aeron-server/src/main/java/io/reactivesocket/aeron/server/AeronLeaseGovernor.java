@@ -0,0 +1,285 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.server;
+
+import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
+import io.reactivesocket.LeaseGovernor;
+import io.reactivesocket.aeron.internal.AeronUtil;
+import io.reactivesocket.aeron.internal.Constants;
+import io.reactivesocket.aeron.internal.Loggable;
+import io.reactivesocket.aeron.internal.PublicationStats;
+import io.reactivesocket.aeron.internal.TransportCounters;
+import io.reactivesocket.internal.Responder;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A LeaseGovernor that sizes leases from the load on the server's transport, so clients are throttled while the
+ * server is overloaded rather than once its latency has collapsed.
+ * <p>
+ * Every reactivesocket.aeron.server.lease.ttlMs the governor samples the load over the last interval: the share of
+ * the workers' duty cycles that did work, how often sends to clients were back pressured, how often an image had
+ * more fragments waiting than the polling quota, and the average handler latency of the requests answered in the
+ * interval, from a request arriving to the first frame of its response being sent. The workers are shared by every
+ * server in the process, so this is the load of the whole transport. The number of requests accepted per interval
+ * is halved when any signal is over its target, and otherwise grows by a tenth of
+ * reactivesocket.aeron.server.lease.maxRequests, up to that maximum. It is split equally between the connected
+ * sessions, each of which is sent a lease for its share, and requests beyond a session's lease are rejected.
+ * <p>
+ * A session's leases are sent from the worker that owns its connection, so only that worker emits frames on it. The
+ * worker is looked up from the connection's session id every time leases are sent, so a session that is resumed on
+ * another worker has its leases sent from there. Responders that don't register while a connection is being set up
+ * by a ReactiveSocketAeronServer have their leases sent from the first worker.
+ */
+public class AeronLeaseGovernor implements LeaseGovernor, AutoCloseable, Loggable {
+    private final ServerAeronManager manager;
+    private final ConcurrentHashMap<Responder, Lease> leases = new ConcurrentHashMap<>();
+    private final TransportLoad load = new TransportLoad();
+    private final ServerAeronManager.ServerAction leaseAction = this::issueLeasesIfDue;
+    private final int ttlMs;
+    private final long ttlNs;
+    private final int maxRequests;
+    private final double targetUtilisation;
+    private final long targetLatencyNs;
+
+    private final AtomicCounter capacityCounter;
+    private final AtomicCounter overloadedCounter;
+    private final AtomicCounter rejectedCounter;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private volatile int capacity;
+    private long nextLeaseNs;
+
+    /**
+     * Creates a governor that samples the load of the transport, and issues leases, from a server worker.
+     */
+    public AeronLeaseGovernor() {
+        this(ServerAeronManager.getInstance(), Constants.SERVER_LEASE_TTL_MS, Constants.SERVER_LEASE_MAX_REQUESTS);
+        manager.addServerAction(leaseAction);
+    }
+
+    /**
+     * @param manager the manager to sample the load of, or null if leases are only issued by calling
+     *                {@link #issueLeases(boolean)}
+     */
+    AeronLeaseGovernor(ServerAeronManager manager, int ttlMs, int maxRequests) {
+        this.manager = manager;
+        this.ttlMs = ttlMs;
+        this.ttlNs = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxRequests = maxRequests;
+        this.targetUtilisation = Constants.SERVER_LEASE_TARGET_UTILISATION_PERCENT / 100.0;
+        this.targetLatencyNs = TimeUnit.MILLISECONDS.toNanos(Constants.SERVER_LEASE_TARGET_LATENCY_MS);
+        this.capacity = maxRequests;
+        this.nextLeaseNs = System.nanoTime() + ttlNs;
+
+        final TransportCounters counters = TransportCounters.getInstance();
+        this.capacityCounter = counters.newCounter("server lease: capacity");
+        this.overloadedCounter = counters.newCounter("server lease: overloaded intervals");
+        this.rejectedCounter = counters.newCounter("server lease: rejected requests");
+        capacityCounter.setOrdered(capacity);
+    }
+
+    @Override
+    public void register(Responder responder) {
+        final int share = share(leases.size() + 1);
+        final AeronServerDuplexConnection connection = AeronServerDuplexConnection.settingUp();
+        if (connection == null && manager != null) {
+            error("Responder registered outside of a connection's setup, its leases are sent from the first worker", null);
+        }
+        leases.put(responder, new Lease(share, connection));
+        responder.sendLease(ttlMs, share);
+    }
+
+    @Override
+    public void unregister(Responder responder) {
+        leases.remove(responder);
+    }
+
+    /**
+     * Takes a request from the session's lease. Frames that aren't requests are always accepted.
+     *
+     * @return false if the session has used up its lease, or isn't registered
+     */
+    @Override
+    public boolean accept(Responder responder, Frame frame) {
+        if (!isRequest(frame.getType())) {
+            return true;
+        }
+
+        final Lease lease = leases.get(responder);
+        if (lease == null || lease.remaining.decrementAndGet() < 0) {
+            rejectedCounter.orderedIncrement();
+            return false;
+        }
+
+        return true;
+    }
+
+    /*
+     * Run by the first worker every duty cycle, so the load is sampled from a single thread.
+     */
+    private int issueLeasesIfDue(int workerId) {
+        final long nowNs = System.nanoTime();
+        if (workerId != 0 || nowNs - nextLeaseNs < 0) {
+            return 0;
+        }
+
+        nextLeaseNs = nowNs + ttlNs;
+        sampleLoad();
+        return issueLeases(load.isOverloaded(targetUtilisation, targetLatencyNs));
+    }
+
+    private void sampleLoad() {
+        long sends = 0;
+        long backPressured = 0;
+        for (PublicationStats stats : AeronUtil.getPublicationStats()) {
+            if (stats.getStreamId() == Constants.CLIENT_STREAM_ID) {
+                sends += stats.getSends();
+                backPressured += stats.getBackPressured();
+            }
+        }
+
+        long quotaExhausted = 0;
+        for (ImagePollStats stats : manager.getImagePollStats()) {
+            quotaExhausted += stats.getQuotaExhaustedCount();
+        }
+
+        load.sample(manager.getDutyCycles(), manager.getIdleCycles(), sends, backPressured, quotaExhausted,
+            manager.getHandlerLatencyNs(), manager.getHandlerResponses());
+    }
+
+    /**
+     * Adjusts the capacity for the load of the last interval, and sends every session a lease for its share. The
+     * leases of sessions owned by other workers are handed to those workers to send.
+     *
+     * @param overloaded true if the transport was overloaded in the last interval
+     * @return the number of leases sent from the calling thread
+     */
+    int issueLeases(boolean overloaded) {
+        if (overloaded) {
+            capacity = Math.max(1, capacity / 2);
+            overloadedCounter.orderedIncrement();
+            debug("Transport overloaded, reducing lease capacity to {}, load => {}", capacity, load);
+        } else {
+            capacity = Math.min(maxRequests, capacity + Math.max(1, maxRequests / 10));
+        }
+        capacityCounter.setOrdered(capacity);
+
+        final int share = share(leases.size());
+        if (manager == null) {
+            return sendLeases(-1, share);
+        }
+
+        for (int i = 1; i < manager.getWorkerCount(); i++) {
+            final int workerId = i;
+            manager.executeOnWorker(workerId, () -> sendLeases(workerId, share));
+        }
+
+        return sendLeases(0, share);
+    }
+
+    /*
+     * Sends the leases of the sessions owned by a worker, or of every session if workerId is -1. The first worker
+     * also sends the leases of sessions that don't know their connection.
+     */
+    private int sendLeases(int workerId, int share) {
+        int sent = 0;
+        for (Map.Entry<Responder, Lease> entry : leases.entrySet()) {
+            final Lease lease = entry.getValue();
+            if (workerId != -1 && lease.workerId(manager) != workerId) {
+                continue;
+            }
+
+            lease.remaining.set(share);
+            try {
+                entry.getKey().sendLease(ttlMs, share);
+                sent++;
+            } catch (Throwable t) {
+                error("error sending lease", t);
+            }
+        }
+
+        return sent;
+    }
+
+    private int share(int sessions) {
+        return Math.max(1, capacity / Math.max(1, sessions));
+    }
+
+    private static boolean isRequest(FrameType type) {
+        return type == FrameType.REQUEST_RESPONSE
+            || type == FrameType.REQUEST_STREAM
+            || type == FrameType.REQUEST_SUBSCRIPTION
+            || type == FrameType.REQUEST_CHANNEL
+            || type == FrameType.FIRE_AND_FORGET;
+    }
+
+    /**
+     * @return the number of requests accepted per interval across all the sessions
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of sessions leases are issued to
+     */
+    public int getSessions() {
+        return leases.size();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        if (manager != null) {
+            manager.removeServerAction(leaseAction);
+        }
+
+        final TransportCounters counters = TransportCounters.getInstance();
+        counters.free(capacityCounter);
+        counters.free(overloadedCounter);
+        counters.free(rejectedCounter);
+    }
+
+    /**
+     * The requests left in a session's lease, and the connection its leases are sent on.
+     */
+    private static class Lease {
+        private final AtomicInteger remaining;
+        private final AeronServerDuplexConnection connection;
+
+        Lease(int remaining, AeronServerDuplexConnection connection) {
+            this.remaining = new AtomicInteger(remaining);
+            this.connection = connection;
+        }
+
+        /**
+         * @return the worker that owns the connection's current session, which changes when it is resumed
+         */
+        int workerId(ServerAeronManager manager) {
+            return connection != null ? manager.getWorkerId(connection.getSessionId()) : 0;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.reactivesocket.aeron.server;
 
 import io.reactivesocket.DuplexConnection;
 import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
 import io.reactivesocket.aeron.internal.*;
 import io.reactivesocket.rx.Completable;
 import io.reactivesocket.rx.Disposable;
@@ -25,20 +26,96 @@ import io.reactivesocket.rx.Observer;
 import org.reactivestreams.Publisher;
 import uk.co.real_logic.aeron.Publication;
 import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.collections.Long2LongHashMap;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
 
+import java.security.SecureRandom;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class AeronServerDuplexConnection implements DuplexConnection, Loggable {
-    private final Publication publication;
+    private static final SecureRandom TOKENS = new SecureRandom();
+    private static final int MAX_TRACKED_REQUESTS = 4096;
+    private static final AtomicIntegerFieldUpdater<AeronServerDuplexConnection> SCHEDULED =
+        AtomicIntegerFieldUpdater.newUpdater(AeronServerDuplexConnection.class, "scheduled");
+
+    /**
+     * The connection whose ReactiveSocket is being set up on the calling thread, so a LeaseGovernor can tell which
+     * connection a Responder registers for.
+     */
+    private static final ThreadLocal<AeronServerDuplexConnection> SETTING_UP = new ThreadLocal<>();
+
+    private volatile Publication publication;
+    private volatile int sessionId;
     private final CopyOnWriteArrayList<Observer<Frame>> subjects;
+    private final CopyOnWriteArrayList<ServerSubscription> outputs;
+    private final ResumeState resumeState = new ResumeState();
+    private final ConnectionLatency latency;
+    private volatile boolean isClosing;
     private volatile boolean isClosed;
+    private volatile boolean isDetached;
+    private volatile long closeDeadlineNs;
+    private boolean resumeResponsePending;
+    private SessionLiveness liveness;
+    private MetadataDictionary metadataDictionary;
+    private volatile ReadyListener readyListener;
+
+    /**
+     * 1 while the connection is waiting to be drained by the polling thread, so it's only handed over once.
+     */
+    private volatile int scheduled;
+
+    /**
+     * When each request that hasn't been answered yet was received, by stream id. Only used from the server's
+     * polling thread.
+     */
+    private final Long2LongHashMap requestReceivedNs = new Long2LongHashMap(-1);
 
+    private final AeronUtil.BufferFiller resumeResponse = (offset, buffer) -> {
+        buffer.putShort(offset, resumeState.getLastReceived());
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.RESUME_RESPONSE.getEncodedType());
+        buffer.putInt(offset + BitUtil.SIZE_OF_INT, sessionId);
+        buffer.putInt(offset + 2 * BitUtil.SIZE_OF_INT, 1);
+    };
+
+    /**
+     * @param publication the publication to the client
+     * @param sessionId   the session id of the client's publication
+     */
     public AeronServerDuplexConnection(
-        Publication publication) {
+        Publication publication, int sessionId) {
         this.publication = publication;
+        this.sessionId = sessionId;
         this.subjects = new CopyOnWriteArrayList<>();
+        this.outputs = new CopyOnWriteArrayList<>();
+        this.latency = LatencyMetrics.getInstance().newConnection("server session " + sessionId);
+
+        long token;
+        do {
+            token = TOKENS.nextLong();
+        } while (token == 0);
+        resumeState.setToken(token);
+    }
+
+    /**
+     * @return the connection whose ReactiveSocket is being set up on the calling thread, or null
+     */
+    static AeronServerDuplexConnection settingUp() {
+        return SETTING_UP.get();
+    }
+
+    /**
+     * Marks the connection whose ReactiveSocket is being set up on the calling thread, or clears it if null.
+     */
+    static void settingUp(AeronServerDuplexConnection connection) {
+        if (connection == null) {
+            SETTING_UP.remove();
+        } else {
+            SETTING_UP.set(connection);
+        }
     }
 
     public List<? extends Observer<Frame>> getSubscriber() {
@@ -71,36 +148,410 @@ public class AeronServerDuplexConnection implements DuplexConnection, Loggable {
 
     @Override
     public void addOutput(Publisher<Frame> o, Completable callback) {
-        o.subscribe(new ServerSubscription(publication, callback));
+        final ServerSubscription serverSubscription = new ServerSubscription(this, callback);
+        outputs.add(serverSubscription);
+        o.subscribe(serverSubscription);
+    }
+
+    Publication getPublication() {
+        return publication;
+    }
+
+    /**
+     * @return the session id of the client's publication, which changes when the session is resumed
+     */
+    int getSessionId() {
+        return sessionId;
+    }
+
+    ResumeState getResumeState() {
+        return resumeState;
+    }
+
+    /**
+     * The latency histograms of the connection. Only recorded from the server's polling thread.
+     */
+    public ConnectionLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * Sets the listener of the polling thread that owns the connection, which drains it straight away. Called from
+     * the thread that hands the connection to a polling thread, and with null by the polling thread giving it up
+     * when the session is resumed on another polling thread.
+     */
+    void setReadyListener(ReadyListener readyListener) {
+        this.readyListener = readyListener;
+        if (readyListener != null) {
+            scheduled = 1;
+            readyListener.onReady(this);
+        }
+    }
+
+    ReadyListener getReadyListener() {
+        return readyListener;
+    }
+
+    /**
+     * Asks the polling thread that owns the connection to drain it, because it has frames to send, an ack to send,
+     * or has started closing. Can be called from any thread.
+     */
+    void schedule() {
+        if (scheduled == 0 && SCHEDULED.compareAndSet(this, 0, 1)) {
+            final ReadyListener readyListener = this.readyListener;
+            if (readyListener != null) {
+                readyListener.onReady(this);
+            }
+        }
+    }
+
+    /**
+     * Keeps the connection scheduled after it has been drained, because it still has work to do. Must only be called
+     * from the server's polling thread.
+     *
+     * @return true if the connection should be drained again, or false if it has already been scheduled
+     */
+    boolean reschedule() {
+        return SCHEDULED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * @return true if the connection still has frames or an ack to send, or is closing, so it needs to be drained
+     * again. Must only be called from the server's polling thread.
+     */
+    boolean needsDrain() {
+        if (isClosing) {
+            return true;
+        } else if (isDetached) {
+            return false;
+        } else if (resumeResponsePending || resumeState.isReplaying() || resumeState.isAckPending()) {
+            return true;
+        }
+
+        for (int i = 0; i < outputs.size(); i++) {
+            if (outputs.get(i).hasQueuedFrames()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Sends frames queued by the outputs of this connection. Must only be called from the server's polling thread.
+     * After the session is resumed the response to the client and the frames it missed are sent first.
+     *
+     * @return the number of frames sent
+     */
+    int drain() {
+        // signals after this point schedule the connection again
+        scheduled = 0;
+
+        if (isDetached) {
+            return 0;
+        }
+
+        final Publication publication = this.publication;
+        if (resumeResponsePending) {
+            if (!AeronUtil.tryClaimOrOfferOnce(publication, resumeResponse, 4 * BitUtil.SIZE_OF_INT)) {
+                return 0;
+            }
+            resumeResponsePending = false;
+        }
+
+        int sent = 0;
+        if (resumeState.isReplaying()) {
+            sent = resumeState.replay(publication);
+            if (resumeState.isReplaying()) {
+                return sent;
+            }
+        }
+
+        resumeState.sendAck(publication);
+
+        // indexed, so draining doesn't allocate an iterator. Outputs are only removed here, and added at the end
+        for (int i = 0; i < outputs.size(); i++) {
+            final ServerSubscription output = outputs.get(i);
+            sent += output.drain();
+
+            if (output.isTerminated()) {
+                outputs.remove(i--);
+            }
+        }
+
+        return sent;
+    }
+
+    /**
+     * Makes a single, non-blocking attempt to ack the establish connection request. Called from the server's
+     * polling thread, which keeps retrying until the publication connects or the handshake times out.
+     *
+     * @param ackSessionId   the session id of the client that sent the establish connection request
+     * @param dictionarySize the negotiated size of the metadata dictionary, or 0 if there isn't one
+     * @return true if the ack was sent, otherwise false
+     */
+    boolean ackEstablishConnection(int ackSessionId, int dictionarySize) {
+        final long token = resumeState.getToken();
+        final boolean sent = AeronUtil.tryClaimOrOfferOnce(publication, (offset, buffer) -> {
+            buffer.putShort(offset, (short) 0);
+            buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.ESTABLISH_CONNECTION_RESPONSE.getEncodedType());
+            buffer.putInt(offset + BitUtil.SIZE_OF_INT, ackSessionId);
+            buffer.putLong(offset + 2 * BitUtil.SIZE_OF_INT, token);
+            buffer.putInt(offset + 2 * BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG, dictionarySize);
+        }, 3 * BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG);
+
+        if (sent) {
+            // The client only sends frames using the dictionary once it has received the ack
+            metadataDictionary = dictionarySize > 0 ? new MetadataDictionary(dictionarySize) : null;
+            EventLog.getInstance().record(EventCode.HANDSHAKE_ACKED, ackSessionId);
+            debug("Ack sent for session id => {}", ackSessionId);
+        }
+
+        return sent;
+    }
+
+    /**
+     * Makes a single, non-blocking attempt to tell the client its session can't be resumed. Called from the
+     * server's polling thread, which keeps retrying like it does for {@link #ackEstablishConnection(int, int)}.
+     */
+    boolean rejectResume(int ackSessionId) {
+        final boolean sent = AeronUtil.tryClaimOrOfferOnce(publication, (offset, buffer) -> {
+            buffer.putShort(offset, (short) -1);
+            buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.RESUME_RESPONSE.getEncodedType());
+            buffer.putInt(offset + BitUtil.SIZE_OF_INT, ackSessionId);
+            buffer.putInt(offset + 2 * BitUtil.SIZE_OF_INT, 0);
+        }, 4 * BitUtil.SIZE_OF_INT);
+
+        if (sent) {
+            debug("Resume rejected for session id => {}", ackSessionId);
+        }
+
+        return sent;
     }
 
-    // TODO - this is bad - I need to queue this up somewhere and process this on the polling thread so it doesn't just block everything
-    void ackEstablishConnection(int ackSessionId) {
-        debug("Acking establish connection for session id => {}", ackSessionId);
-        for (;;) {
+    /**
+     * Notes when a request was received, so the handler latency can be recorded when the first frame in response
+     * is sent. Must only be called from the server's polling thread.
+     */
+    void onFrameReceived(Frame frame) {
+        final FrameType type = frame.getType();
+        if (type == FrameType.REQUEST_RESPONSE
+            || type == FrameType.REQUEST_STREAM
+            || type == FrameType.REQUEST_SUBSCRIPTION
+            || type == FrameType.REQUEST_CHANNEL) {
+            if (requestReceivedNs.size() < MAX_TRACKED_REQUESTS) {
+                requestReceivedNs.put(frame.getStreamId(), System.nanoTime());
+            }
+        } else if (type == FrameType.CANCEL) {
+            requestReceivedNs.remove(frame.getStreamId());
+        }
+    }
+
+    /**
+     * Records the handler latency of a request when the first frame in response to it has been sent. Must only be
+     * called from the server's polling thread.
+     */
+    void onFrameSent(Frame frame) {
+        if (!requestReceivedNs.isEmpty()) {
+            final long receivedNs = requestReceivedNs.remove(frame.getStreamId());
+            if (receivedNs != -1) {
+                ServerAeronManager.getInstance().onHandlerLatency(sessionId, System.nanoTime() - receivedNs);
+            }
+        }
+    }
+
+    /**
+     * Stops sending to a client that has gone away, keeping the session so it can be resumed. Must only be called
+     * from the server's polling thread.
+     */
+    void detach() {
+        isDetached = true;
+        if (liveness != null) {
+            liveness.cancel();
+            liveness = null;
+        }
+    }
+
+    boolean isDetached() {
+        return isDetached;
+    }
+
+    /**
+     * Resumes a detached session on the publication to the client's new session, closing the old publication.
+     * The frames sent after the last one the client received are replayed once the client has been told the
+     * session was resumed. Must only be called from the polling thread of the new session.
+     *
+     * @param newPublication     the publication to the client's new session
+     * @param newSessionId       the session id of the client's new publication
+     * @param clientLastReceived the sequence number of the last frame the client received
+     */
+    void resume(Publication newPublication, int newSessionId, short clientLastReceived) {
+        final Publication previous = publication;
+        debug("Resuming session id {} as session id {}", sessionId, newSessionId);
+
+        publication = newPublication;
+        sessionId = newSessionId;
+        resumeState.onResumed(clientLastReceived);
+        resumeResponsePending = true;
+        isDetached = false;
+
+        if (previous != newPublication) {
+            AeronUtil.removePublicationStats(previous);
             try {
-                AeronUtil.tryClaimOrOffer(publication, (offset, buffer) -> {
-                    buffer.putShort(offset, (short) 0);
-                    buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.ESTABLISH_CONNECTION_RESPONSE.getEncodedType());
-                    buffer.putInt(offset + BitUtil.SIZE_OF_INT, ackSessionId);
-                }, 2 * BitUtil.SIZE_OF_INT, Constants.SERVER_ACK_ESTABLISH_CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
-                debug("Ack sent for session i => {}", ackSessionId);
-            } catch (NotConnectedException ne) {
-                continue;
+                previous.close();
+            } catch (Throwable t) {}
+        }
+    }
+
+    /**
+     * Sends a ping, or answers one, without blocking. Must only be called from the server's polling thread.
+     */
+    boolean sendPing() {
+        return !isClosing && !isDetached && SessionLiveness.sendPing(publication);
+    }
+
+    boolean sendPong() {
+        return !isClosing && !isDetached && SessionLiveness.sendPong(publication);
+    }
+
+    /**
+     * The liveness of the client, or null if it isn't tracked. Only used from the server's polling thread.
+     */
+    SessionLiveness getLiveness() {
+        return liveness;
+    }
+
+    void setLiveness(SessionLiveness liveness) {
+        this.liveness = liveness;
+    }
+
+    /**
+     * Puts the metadata of a received METADATA_INDEXED_FRAME back into the frame. If it can't be, the client's
+     * dictionary is no longer the same as this connection's and none of the frames it sends can be trusted, so the
+     * connection is aborted and the client has to reconnect. Must only be called from the server's polling thread.
+     *
+     * @param offset      the offset of the message after its transport header
+     * @param length      the length of the message after its transport header
+     * @param frameBuffer the buffer the frame is decoded into, from its start, which is reused for every frame and
+     *                    only grown when a frame doesn't fit
+     * @return the length of the decoded frame, or -1 if it couldn't be decoded and the connection was aborted
+     */
+    int decodeMetadataIndexedFrame(DirectBuffer buffer, int offset, int length, UnsafeBuffer frameBuffer) {
+        try {
+            if (metadataDictionary == null) {
+                throw new IllegalStateException("No metadata dictionary was negotiated");
             }
-            break;
+
+            final int frameLength = metadataDictionary.decodedLength(buffer, offset, length);
+            if (frameBuffer.capacity() < frameLength) {
+                frameBuffer.wrap(new byte[BitUtil.findNextPositivePowerOfTwo(frameLength)]);
+            }
+            metadataDictionary.decode(buffer, offset, length, frameBuffer, 0);
+            return frameLength;
+        } catch (RuntimeException e) {
+            error("Unable to decode metadata for session id => " + sessionId + ", aborting the connection", e);
+            EventLog.getInstance().record(EventCode.METADATA_DESYNC, sessionId);
+            abort();
+            return -1;
         }
     }
 
+    /**
+     * @return true once the connection has been closed, or has started closing
+     */
+    public boolean isClosing() {
+        return isClosing;
+    }
+
     public boolean isClosed() {
         return isClosed;
     }
 
+    /**
+     * Starts closing the connection. The server's polling thread keeps sending the frames already queued by
+     * the outputs, and closes the publication once they have all been sent, or after
+     * SERVER_CLOSE_DRAIN_TIMEOUT_MS.
+     */
     @Override
     public void close() {
+        if (!isClosing) {
+            closeDeadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.SERVER_CLOSE_DRAIN_TIMEOUT_MS);
+            isClosing = true;
+            schedule();
+        }
+    }
+
+    /**
+     * Closes the connection without sending the frames that are still queued, for when the client has gone away.
+     */
+    void abort() {
+        closeDeadlineNs = System.nanoTime();
+        isClosing = true;
+        schedule();
+    }
+
+    /**
+     * Finishes closing the connection once it has drained. Must only be called from the server's polling thread.
+     *
+     * @return true if the connection is closed
+     */
+    boolean closeIfDrained() {
+        if (isClosed) {
+            return true;
+        } else if (!isClosing) {
+            return false;
+        }
+
+        final Publication publication = this.publication;
+        boolean drained = isDetached || !publication.hasBeenConnected() || System.nanoTime() - closeDeadlineNs >= 0;
+        if (!drained) {
+            drained = true;
+            for (ServerSubscription output : outputs) {
+                if (output.hasQueuedFrames()) {
+                    drained = false;
+                    break;
+                }
+            }
+        }
+
+        if (drained) {
+            debug("Closing drained connection for publication session id => {}", publication.sessionId());
+            isClosed = true;
+            outputs.clear();
+            if (liveness != null) {
+                liveness.cancel();
+            }
+            AeronUtil.removePublicationStats(publication);
+            LatencyMetrics.getInstance().remove(latency);
+            try {
+                publication.close();
+            } catch (Throwable t) {}
+        }
+
+        return drained;
+    }
+
+    /**
+     * Closes a connection whose publication has been handed to the session it resumed, without closing the
+     * publication. Must only be called from the server's polling thread.
+     */
+    void discard() {
+        isClosing = true;
         isClosed = true;
-        try {
-            publication.close();
-        } catch (Throwable t) {}
+        outputs.clear();
+        if (liveness != null) {
+            liveness.cancel();
+        }
+        LatencyMetrics.getInstance().remove(latency);
+    }
+
+    /**
+     * Told when a connection needs to be drained by the polling thread that owns it.
+     */
+    interface ReadyListener {
+        /**
+         * Called at most once until the connection has been drained, from any thread.
+         */
+        void onReady(AeronServerDuplexConnection connection);
     }
 }
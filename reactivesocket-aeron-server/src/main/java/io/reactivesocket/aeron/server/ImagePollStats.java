@@ -0,0 +1,72 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.server;
+
+/**
+ * Polling statistics for an Aeron image. Only written by the worker that polls the image, but can be read
+ * from any thread.
+ */
+public class ImagePollStats {
+    private final int sessionId;
+    private final int streamId;
+    private volatile long fragmentsRead;
+    private volatile long quotaExhaustedCount;
+
+    ImagePollStats(int sessionId, int streamId) {
+        this.sessionId = sessionId;
+        this.streamId = streamId;
+    }
+
+    void onPoll(int fragmentsRead, int fragmentQuota) {
+        this.fragmentsRead += fragmentsRead;
+
+        if (fragmentsRead >= fragmentQuota) {
+            this.quotaExhaustedCount++;
+        }
+    }
+
+    public int getSessionId() {
+        return sessionId;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * @return the number of fragments read from the image
+     */
+    public long getFragmentsRead() {
+        return fragmentsRead;
+    }
+
+    /**
+     * @return the number of polls that read the full fragment quota, and so left fragments in the image
+     */
+    public long getQuotaExhaustedCount() {
+        return quotaExhaustedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ImagePollStats{" +
+            "sessionId=" + sessionId +
+            ", streamId=" + streamId +
+            ", fragmentsRead=" + fragmentsRead +
+            ", quotaExhaustedCount=" + quotaExhaustedCount +
+            '}';
+    }
+}
@@ -17,18 +17,34 @@ package io.reactivesocket.aeron.server;
 
 import io.reactivesocket.ConnectionSetupHandler;
 import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
 import io.reactivesocket.LeaseGovernor;
 import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.internal.EventCode;
+import io.reactivesocket.aeron.internal.EventLog;
+import io.reactivesocket.aeron.internal.LatencyStage;
+import io.reactivesocket.aeron.internal.LatencyStamp;
 import io.reactivesocket.aeron.internal.Loggable;
 import io.reactivesocket.aeron.internal.MessageType;
+import io.reactivesocket.aeron.internal.MetadataDictionary;
+import io.reactivesocket.aeron.internal.NotConnectedException;
+import io.reactivesocket.aeron.internal.ResumeState;
+import io.reactivesocket.aeron.internal.SessionLiveness;
+import io.reactivesocket.aeron.internal.TimedOutException;
+import io.reactivesocket.aeron.internal.TransportCounters;
 import io.reactivesocket.rx.Observer;
 import uk.co.real_logic.aeron.*;
 import uk.co.real_logic.aeron.logbuffer.Header;
 import uk.co.real_logic.agrona.BitUtil;
 import uk.co.real_logic.agrona.DirectBuffer;
+import uk.co.real_logic.agrona.TimerWheel;
+import uk.co.real_logic.agrona.collections.Int2ObjectHashMap;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
+import uk.co.real_logic.agrona.concurrent.ManyToOneConcurrentArrayQueue;
 import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -37,20 +53,27 @@ import java.util.function.Consumer;
 import static io.reactivesocket.aeron.internal.Constants.*;
 
 public class ReactiveSocketAeronServer implements AutoCloseable, Loggable {
-    private static final UnsafeBuffer BUFFER = new UnsafeBuffer(ByteBuffer.allocate(0));
     private static final ServerAeronManager manager = ServerAeronManager.getInstance();
     private final int port;
-    private final ConcurrentHashMap<Integer, AeronServerDuplexConnection> connections = new ConcurrentHashMap<>();
+    private final Shard[] shards;
     private final ConcurrentHashMap<Integer, ReactiveSocket> sockets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, AeronServerDuplexConnection> detachedConnections = new ConcurrentHashMap<>();
     private final Subscription subscription;
     private final ConnectionSetupHandler connectionSetupHandler;
     private final LeaseGovernor leaseGovernor;
+    private final ServerAeronManager.ServerAction handshakeAction = this::ackPendingHandshakes;
+    private final ServerAeronManager.ServerAction drainAction = this::drainConnections;
 
     private ReactiveSocketAeronServer(String host, int port, ConnectionSetupHandler connectionSetupHandler, LeaseGovernor leaseGovernor) {
         this.port = port;
         this.connectionSetupHandler = connectionSetupHandler;
         this.leaseGovernor = leaseGovernor;
 
+        this.shards = new Shard[manager.getWorkerCount()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(port, i);
+        }
+
         manager.addAvailableImageHander(this::availableImageHandler);
         manager.addUnavailableImageHandler(this::unavailableImage);
 
@@ -60,8 +83,9 @@ public class ReactiveSocketAeronServer implements AutoCloseable, Loggable {
         info("Starting new ReactiveSocketAeronServer on channel {}", serverChannel);
         subscription = aeron.addSubscription(serverChannel, SERVER_STREAM_ID);
 
-        FragmentAssembler fragmentAssembler = new FragmentAssembler(this::fragmentHandler);
-        manager.addSubscription(subscription, fragmentAssembler);
+        manager.addSubscription(subscription, this::fragmentHandler);
+        manager.addServerAction(handshakeAction);
+        manager.addServerAction(drainAction);
     }
 
     /*
@@ -97,62 +121,288 @@ public class ReactiveSocketAeronServer implements AutoCloseable, Loggable {
             short messageTypeInt = buffer.getShort(offset + BitUtil.SIZE_OF_SHORT);
             MessageType type = MessageType.from(messageTypeInt);
 
-            if (MessageType.FRAME == type) {
-                AeronServerDuplexConnection connection = connections.get(sessionId);
-                if (connection != null && !connection.isClosed()) {
-                    List<? extends Observer<Frame>> subscribers = connection.getSubscriber();
+            final Shard shard = shard(sessionId);
+            final AeronServerDuplexConnection connection = shard.connection(sessionId);
+            if (connection != null) {
+                final SessionLiveness liveness = connection.getLiveness();
+                if (liveness != null) {
+                    liveness.onReceive();
+                }
+            }
 
-                    ByteBuffer bb = ByteBuffer.allocate(length);
-                    BUFFER.wrap(bb);
-                    buffer.getBytes(offset, BUFFER, 0, length);
+            if (MessageType.FRAME == type || MessageType.STAMPED_FRAME == type || MessageType.METADATA_INDEXED_FRAME == type) {
+                final short sequence = buffer.getShort(offset);
+                if (connection == null || connection.isClosing()) {
+                    shard.framesDropped.orderedIncrement();
+                    EventLog.getInstance().record(EventCode.FRAME_DROPPED, sessionId);
+                } else if (!connection.getResumeState().onReceive(sequence)) {
+                    shard.framesDropped.orderedIncrement();
+                    EventLog.getInstance().record(EventCode.DUPLICATE_DROPPED, sessionId, sequence);
+                } else {
+                    shard.framesReceived.orderedIncrement();
+                    if (ResumeState.isEnabled()) {
+                        // the frame has to be acked
+                        connection.schedule();
+                    }
 
-                    final Frame frame = Frame.from(BUFFER, BitUtil.SIZE_OF_INT, length - BitUtil.SIZE_OF_INT);
+                    List<? extends Observer<Frame>> subscribers = connection.getSubscriber();
+
+                    final UnsafeBuffer frameBuffer = shard.buffer;
+                    final Frame frame;
+                    if (MessageType.METADATA_INDEXED_FRAME == type) {
+                        final int frameLength = connection.decodeMetadataIndexedFrame(
+                            buffer, offset + BitUtil.SIZE_OF_INT, length - BitUtil.SIZE_OF_INT, shard.decodeBuffer);
+                        if (frameLength < 0) {
+                            // the connection has been aborted, so the rest of the client's frames are dropped
+                            shard.framesDropped.orderedIncrement();
+                            closeReactiveSocket(sessionId, true);
+                            return;
+                        }
+                        frame = Frame.from(shard.decodeBuffer, 0, frameLength);
+                    } else {
+                        ByteBuffer bb = ByteBuffer.allocate(length);
+                        frameBuffer.wrap(bb);
+                        buffer.getBytes(offset, frameBuffer, 0, length);
+
+                        final int headerLength = LatencyStamp.headerLength(type);
+                        frame = Frame.from(frameBuffer, headerLength, length - headerLength);
+                    }
+                    if (MessageType.STAMPED_FRAME == type) {
+                        LatencyStamp.record(buffer, offset + BitUtil.SIZE_OF_INT, frame.getType(), connection.getLatency());
+                    }
 
                     if (isTraceEnabled()) {
                         trace("server received frame payload {} on session id {}", frame.getData(), sessionId);
                     }
 
-                    subscribers.forEach(s -> {
-                        try {
-                            s.onNext(frame);
-                        } catch (Throwable t) {
-                            s.onError(t);
+                    connection.onFrameReceived(frame);
+
+                    // the session's Responder registers with the LeaseGovernor while the setup frame is handled
+                    final boolean setup = frame.getType() == FrameType.SETUP;
+                    if (setup) {
+                        AeronServerDuplexConnection.settingUp(connection);
+                    }
+
+                    final long dispatchStartNs = LATENCY_METRICS_ENABLED ? System.nanoTime() : 0;
+                    final int size = subscribers.size();
+                    try {
+                        for (int i = 0; i < size; i++) {
+                            final Observer<Frame> s = subscribers.get(i);
+                            try {
+                                s.onNext(frame);
+                            } catch (Throwable t) {
+                                s.onError(t);
+                            }
+                        }
+                    } finally {
+                        if (setup) {
+                            AeronServerDuplexConnection.settingUp(null);
                         }
-                    });
-                }
-            } else if (MessageType.ESTABLISH_CONNECTION_REQUEST == type) {
-                final long start = System.nanoTime();
-                AeronServerDuplexConnection connection = null;
-                debug("Looking for an AeronServerDuplexConnection connection to ack establish connection for session id => {}", sessionId);
-                while (connection == null) {
-                    final long current = System.nanoTime();
-
-                    if ((current - start) > TimeUnit.MILLISECONDS.toNanos(SERVER_ESTABLISH_CONNECTION_REQUEST_TIMEOUT_MS)) {
-                        throw new RuntimeException("unable to find connection to ack establish connection for session id => " + sessionId);
                     }
 
-                    connection = connections.get(sessionId);
+                    if (LATENCY_METRICS_ENABLED) {
+                        connection.getLatency().record(frame.getType(), LatencyStage.INBOUND_DISPATCH, System.nanoTime() - dispatchStartNs);
+                    }
+                }
+            } else if (MessageType.ESTABLISH_CONNECTION_REQUEST == type) {
+                debug("Received establish connection request for session id => {}", sessionId);
+                shard.handshakesReceived.orderedIncrement();
+                EventLog.getInstance().record(EventCode.HANDSHAKE_RECEIVED, sessionId);
+                // Clients that don't support the metadata dictionary don't send the size they want
+                final int dictionarySize = length >= 2 * BitUtil.SIZE_OF_INT ? buffer.getInt(offset + BitUtil.SIZE_OF_INT) : 0;
+                addPendingHandshake(sessionId, 0, (short) -1, MetadataDictionary.negotiate(dictionarySize));
+            } else if (MessageType.RESUME_REQUEST == type && length >= BitUtil.SIZE_OF_INT + BitUtil.SIZE_OF_LONG) {
+                final long token = buffer.getLong(offset + BitUtil.SIZE_OF_INT);
+                debug("Received resume request for session id => {}", sessionId);
+                shard.handshakesReceived.orderedIncrement();
+                EventLog.getInstance().record(EventCode.HANDSHAKE_RECEIVED, sessionId, 1);
+                addPendingHandshake(sessionId, token, buffer.getShort(offset), 0);
+            } else if (MessageType.ACK == type) {
+                if (connection != null) {
+                    connection.getResumeState().onAck(buffer.getShort(offset));
                 }
-                debug("Found a connection to ack establish connection for session id => {}", sessionId);
-                connection.ackEstablishConnection(sessionId);
             } else if (MessageType.CONNECTION_DISCONNECT == type) {
-                closeReactiveSocket(sessionId);
+                closeReactiveSocket(sessionId, false);
+            } else if (MessageType.PING == type) {
+                if (connection != null) {
+                    connection.sendPong();
+                }
+            }
+
+    }
+
+    /*
+     * The connection for a session might not be available, or its publication might not be connected yet,
+     * when the establish connection request arrives. Rather than blocking the polling thread the request is
+     * queued, and acked by the polling loop once the connection is ready. The TimerWheel gives up on it after
+     * SERVER_ESTABLISH_CONNECTION_REQUEST_TIMEOUT_MS. Resume requests are queued the same way, because the
+     * client resumes on a new session that needs its own connection before the old session can be moved to it.
+     */
+    private void addPendingHandshake(int sessionId, long resumeToken, short clientLastReceived, int dictionarySize) {
+        final int workerId = manager.getWorkerId(sessionId);
+        final Shard shard = shards[workerId];
+        final ArrayList<PendingHandshake> pendingHandshakes = shard.pendingHandshakes;
+        for (int i = 0; i < pendingHandshakes.size(); i++) {
+            if (pendingHandshakes.get(i).sessionId == sessionId) {
+                debug("Establish connection request already pending for session id => {}", sessionId);
+                return;
+            }
+        }
+
+        final PendingHandshake pendingHandshake = new PendingHandshake(sessionId, resumeToken, clientLastReceived, dictionarySize);
+        pendingHandshake.timer = manager
+            .getTimerWheel(workerId)
+            .newTimeout(SERVER_ESTABLISH_CONNECTION_REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS, () -> {
+                if (pendingHandshakes.remove(pendingHandshake)) {
+                    shard.handshakesTimedOut.orderedIncrement();
+                    EventLog.getInstance().record(EventCode.HANDSHAKE_TIMED_OUT, sessionId);
+                    error("unable to ack establish connection for session id => " + sessionId, new TimedOutException());
+                }
+            });
+        pendingHandshakes.add(pendingHandshake);
+    }
+
+    int ackPendingHandshakes(int workerId) {
+        final Shard shard = shards[workerId];
+        final ArrayList<PendingHandshake> pendingHandshakes = shard.pendingHandshakes;
+        int acked = 0;
+        for (int i = pendingHandshakes.size() - 1; i >= 0; i--) {
+            final PendingHandshake pendingHandshake = pendingHandshakes.get(i);
+            final int sessionId = pendingHandshake.sessionId;
+            final AeronServerDuplexConnection connection = shard.connection(sessionId);
+
+            if (connection == null) {
+                continue;
+            }
+
+            boolean done;
+            try {
+                if (connection.isClosing()) {
+                    done = true;
+                } else if (pendingHandshake.resumeToken != 0) {
+                    done = resumeSession(pendingHandshake, connection);
+                } else {
+                    done = connection.ackEstablishConnection(sessionId, pendingHandshake.dictionarySize);
+                }
+            } catch (NotConnectedException e) {
+                debug("Publication closed before establish connection was acked for session id => {}", sessionId);
+                done = true;
             }
 
+            if (done) {
+                pendingHandshake.timer.cancel();
+                pendingHandshakes.remove(i);
+                acked++;
+            }
+        }
+
+        if (acked > 0) {
+            shard.handshakesAcked.addOrdered(acked);
+        }
+        shard.pendingHandshakesDepth.setOrdered(pendingHandshakes.size());
+
+        return acked;
+    }
+
+    /*
+     * Sends the frames queued on this worker's connections, and finishes closing the connections that have
+     * drained. Only the connections that have been scheduled since they were last drained, and the ones that
+     * couldn't send everything last time, are drained, so idle connections cost nothing.
+     */
+    int drainConnections(int workerId) {
+        final Shard shard = shards[workerId];
+        final ArrayList<AeronServerDuplexConnection> busy = shard.busy;
+        shard.busy = shard.spare;
+        shard.spare = busy;
+
+        int sent = 0;
+        if (shard.readyOverflowed) {
+            // connections were left out of the full ready queue, so every connection is drained once
+            shard.readyOverflowed = false;
+            for (AeronServerDuplexConnection connection : shard.connections.values()) {
+                sent += drainConnection(shard, connection);
+            }
+        }
+
+        AeronServerDuplexConnection connection;
+        for (int i = shard.ready.size(); i > 0 && (connection = shard.ready.poll()) != null; i--) {
+            sent += drainConnection(shard, connection);
+        }
+
+        for (int i = 0; i < busy.size(); i++) {
+            sent += drainConnection(shard, busy.get(i));
+        }
+        busy.clear();
+
+        if (sent > 0) {
+            shard.framesSent.addOrdered(sent);
+        }
+
+        return sent;
+    }
+
+    private int drainConnection(Shard shard, AeronServerDuplexConnection connection) {
+        if (connection.getReadyListener() != shard) {
+            // the session was resumed on another worker
+            return 0;
+        }
+
+        int sent = 0;
+        if (!connection.isClosed()) {
+            sent = connection.drain();
+        }
+
+        if (connection.isClosing() && connection.closeIfDrained()) {
+            final int sessionId = connection.getSessionId();
+            debug("closed connection for session id => {}", sessionId);
+            EventLog.getInstance().record(EventCode.CONNECTION_CLOSED, sessionId);
+            if (shard.remove(sessionId, connection)) {
+                shard.sessions.add(-1);
+            }
+            sockets.remove(sessionId);
+            detachedConnections.remove(connection.getResumeState().getToken(), connection);
+        } else if (connection.needsDrain() && connection.reschedule()) {
+            shard.busy.add(connection);
+        }
+
+        return sent;
     }
 
     void availableImageHandler(Image image, Subscription subscription, long joiningPosition, String sourceIdentity) {
+        if (this.subscription != subscription) {
+            return;
+        }
+
         final int streamId = subscription.streamId();
         final int sessionId = image.sessionId();
         if (SERVER_STREAM_ID == streamId) {
-            debug("Handling new image for session id => {} and stream id => {}", streamId, sessionId);
-            final AeronServerDuplexConnection connection = connections.computeIfAbsent(sessionId, (_s) -> {
-                final String responseChannel = "udp://" + sourceIdentity.substring(0, sourceIdentity.indexOf(':')) + ":" + port;
-                Publication publication = manager.getAeron().addPublication(responseChannel, CLIENT_STREAM_ID);
-                int responseSessionId = publication.sessionId();
-                debug("Creating new connection for responseChannel => {}, streamId => {}, and sessionId => {}", responseChannel, streamId, responseSessionId);
-                return new AeronServerDuplexConnection(publication);
-            });
+            debug("Handling new image for session id => {} and stream id => {}", sessionId, streamId);
+            manager
+                .getSetupExecutor()
+                .execute(() -> setupConnection(image, sessionId, sourceIdentity));
+        } else {
+            debug("Unsupported stream id {}", streamId);
+        }
+    }
+
+    /*
+     * Runs on the setup executor rather than in Aeron's image callback because creating the response
+     * publication is a round trip to the media driver. The connection only becomes visible to the polling
+     * thread, and so can ack the establish connection request, once the ReactiveSocket has started.
+     */
+    private void setupConnection(Image image, int sessionId, String sourceIdentity) {
+        final Shard shard = shard(sessionId);
+        if (shard.connections.containsKey(sessionId)) {
+            debug("Connection already exists for session id => {}", sessionId);
+            return;
+        }
+
+        try {
+            final String responseChannel = "udp://" + sourceIdentity.substring(0, sourceIdentity.indexOf(':')) + ":" + port;
+            final Publication publication = manager.getAeron().addPublication(responseChannel, CLIENT_STREAM_ID);
+            debug("Creating new connection for responseChannel => {}, streamId => {}, and sessionId => {}", responseChannel, CLIENT_STREAM_ID, publication.sessionId());
+            final AeronServerDuplexConnection connection = new AeronServerDuplexConnection(publication, sessionId);
+
             debug("Accepting ReactiveSocket connection");
             ReactiveSocket socket = ReactiveSocket.fromServerConnection(
                 connection,
@@ -161,45 +411,389 @@ public class ReactiveSocketAeronServer implements AutoCloseable, Loggable {
                 new Consumer<Throwable>() {
                     @Override
                     public void accept(Throwable throwable) {
-                        error(String.format("Error creating ReactiveSocket for Aeron session id => %d and stream id => %d", streamId, sessionId), throwable);
+                        error(String.format("Error creating ReactiveSocket for Aeron session id => %d and stream id => %d", sessionId, SERVER_STREAM_ID), throwable);
                     }
                 });
 
+            AeronServerDuplexConnection.settingUp(connection);
+            try {
+                socket.startAndWait();
+            } finally {
+                AeronServerDuplexConnection.settingUp(null);
+            }
+
+            if (image.isClosed()) {
+                debug("Image closed while setting up connection for session id => {}", sessionId);
+                connection.abort();
+                socket.close();
+                // the connection was never visible to a worker, so it can be closed from here
+                connection.closeIfDrained();
+                return;
+            }
+
             sockets.put(sessionId, socket);
+            shard.connections.put(sessionId, connection);
+            shard.sessions.increment();
+            connection.setReadyListener(shard);
+            if (SessionLiveness.isEnabled()) {
+                manager.execute(sessionId, () -> trackLiveness(sessionId, connection));
+            }
+            debug("Accepted ReactiveSocket connection for session id => {}", sessionId);
+        } catch (Throwable t) {
+            error("error setting up connection for session id => " + sessionId, t);
+        }
+    }
 
-            socket.startAndWait();
-        } else {
-            debug("Unsupported stream id {}", streamId);
+    /*
+     * Runs on the worker that owns the session, which probes the client when it goes quiet and closes the
+     * session if it doesn't hear from the client for LIVENESS_TIMEOUT_MS.
+     */
+    private void trackLiveness(int sessionId, AeronServerDuplexConnection connection) {
+        if (connection.isClosing()) {
+            return;
         }
+
+        final int workerId = manager.getWorkerId(sessionId);
+        final Shard shard = shards[workerId];
+        connection.setLiveness(new SessionLiveness(manager.getTimerWheel(workerId), sessionId, new SessionLiveness.Listener() {
+            @Override
+            public void onIdle() {
+                try {
+                    connection.sendPing();
+                } catch (NotConnectedException e) {
+                    debug("Publication closed before ping for session id => {}", sessionId);
+                }
+            }
+
+            @Override
+            public void onDead() {
+                shard.livenessTimeouts.orderedIncrement();
+                EventLog.getInstance().record(EventCode.PEER_DEAD, sessionId);
+                error("no traffic from client, closing session id => " + sessionId, new TimedOutException());
+                closeOrDetach(sessionId);
+            }
+        }));
     }
 
     void unavailableImage(Image image, Subscription subscription, long position) {
-        closeReactiveSocket(image.sessionId());
+        if (this.subscription == subscription) {
+            closeOrDetach(image.sessionId());
+        }
+    }
+
+    /*
+     * Called when the client has gone away. Unless sessions can be resumed the session is closed. Otherwise it is
+     * detached, keeping its ReactiveSocket and replay buffer for RESUME_WINDOW_MS so the client can resume it from
+     * a new session, after which it is closed.
+     */
+    private void closeOrDetach(int sessionId) {
+        if (!ResumeState.isEnabled()) {
+            closeReactiveSocket(sessionId, true);
+            return;
+        }
+
+        final int workerId = manager.getWorkerId(sessionId);
+        manager.execute(sessionId, () -> {
+            final AeronServerDuplexConnection connection = shards[workerId].connection(sessionId);
+            if (connection == null) {
+                closeReactiveSocket(sessionId, true);
+                return;
+            } else if (connection.isClosing() || connection.isDetached()) {
+                return;
+            }
+
+            debug("detaching connection for session id => {}", sessionId);
+            connection.detach();
+            EventLog.getInstance().record(EventCode.SESSION_DETACHED, sessionId);
+            final long token = connection.getResumeState().getToken();
+            detachedConnections.put(token, connection);
+            manager
+                .getTimerWheel(workerId)
+                .newTimeout(RESUME_WINDOW_MS, TimeUnit.MILLISECONDS, () -> {
+                    if (detachedConnections.remove(token, connection)) {
+                        debug("session id {} wasn't resumed, closing it", sessionId);
+                        closeReactiveSocket(sessionId, true);
+                    }
+                });
+        });
+    }
+
+    /*
+     * Moves a detached session to the client's new session. The new session already has a connection and a
+     * ReactiveSocket of its own, which are discarded once the detached connection has been handed from the worker
+     * that owned it to the worker that owns the new session.
+     *
+     * @return true if the resume request has been dealt with
+     */
+    private boolean resumeSession(PendingHandshake pendingHandshake, AeronServerDuplexConnection connection) {
+        final int sessionId = pendingHandshake.sessionId;
+        final AeronServerDuplexConnection detached = detachedConnections.remove(pendingHandshake.resumeToken);
+        if (detached == null || detached.isClosing()) {
+            return connection.rejectResume(sessionId);
+        }
+
+        final int previousSessionId = detached.getSessionId();
+        manager.execute(previousSessionId, () -> {
+            final Shard previousShard = shard(previousSessionId);
+            if (previousShard.remove(previousSessionId, detached)) {
+                previousShard.sessions.add(-1);
+            }
+            // stops this worker draining the connection before the new session's worker starts to
+            detached.setReadyListener(null);
+            final ReactiveSocket socket = sockets.remove(previousSessionId);
+
+            manager.execute(sessionId, () ->
+                attachResumedSession(sessionId, connection, detached, socket, pendingHandshake.clientLastReceived));
+        });
+
+        return true;
+    }
+
+    private void attachResumedSession(
+        int sessionId,
+        AeronServerDuplexConnection connection,
+        AeronServerDuplexConnection detached,
+        ReactiveSocket socket,
+        short clientLastReceived) {
+        final Shard shard = shard(sessionId);
+        if (socket == null || connection.isClosing() || shard.connection(sessionId) != connection
+            || !detached.getResumeState().canResumeAfter(clientLastReceived)) {
+            debug("unable to resume session id {} as session id {}", detached.getSessionId(), sessionId);
+            connection.rejectResume(sessionId);
+            detached.abort();
+            if (socket != null) {
+                closeSocket(sessionId, socket);
+            }
+            detached.closeIfDrained();
+            return;
+        }
+
+        final ReactiveSocket replaced = sockets.put(sessionId, socket);
+        shard.put(sessionId, detached);
+        EventLog.getInstance().record(EventCode.SESSION_RESUMED, detached.getSessionId(), sessionId);
+        detached.resume(connection.getPublication(), sessionId, clientLastReceived);
+        detached.setReadyListener(shard);
+        // the new session's own connection is no longer in the map, so this worker stops draining it
+        connection.setReadyListener(null);
+        shard.sessionsResumed.orderedIncrement();
+
+        if (replaced != null) {
+            closeSocket(sessionId, replaced);
+        }
+        // the connection's publication now belongs to the resumed session, so it isn't closed with it
+        connection.discard();
+
+        if (SessionLiveness.isEnabled()) {
+            trackLiveness(sessionId, detached);
+        }
+        debug("Resumed session for session id => {}", sessionId);
     }
 
-    private void closeReactiveSocket(int sessionId) {
-        ServerAeronManager.getInstance().getTimerWheel().newTimeout(200, TimeUnit.MILLISECONDS, () -> {
+    /*
+     * Closes the ReactiveSocket for a session on the worker that owns it. The connection then drains on that
+     * worker before it is removed, unless the client has gone away, in which case there's nobody to send
+     * the queued frames to and it is aborted.
+     */
+    private void closeReactiveSocket(int sessionId, boolean abort) {
+        final int workerId = manager.getWorkerId(sessionId);
+        manager.execute(sessionId, () -> {
             debug("closing connection for session id => " + sessionId);
-            ReactiveSocket socket = sockets.remove(sessionId);
-            connections.remove(sessionId);
+            final AeronServerDuplexConnection connection = shards[workerId].connection(sessionId);
+            if (connection != null && abort) {
+                connection.abort();
+            }
 
+            final ReactiveSocket socket = sockets.get(sessionId);
             if (socket != null) {
-                try {
-                    socket.close();
-                } catch (Throwable t) {
-                    error("error closing socket for session id => " + sessionId, t);
-                }
+                closeSocket(sessionId, socket);
+            }
+
+            if (connection != null) {
+                connection.close();
             }
         });
     }
 
+    private void closeSocket(int sessionId, ReactiveSocket socket) {
+        try {
+            socket.close();
+        } catch (Throwable t) {
+            error("error closing socket for session id => " + sessionId, t);
+        }
+    }
+
     public boolean hasConnections() {
-        return !connections.isEmpty();
+        for (Shard shard : shards) {
+            if (!shard.connections.isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private Shard shard(int sessionId) {
+        return shards[manager.getWorkerId(sessionId)];
     }
 
+    /**
+     * Closes the server. Every connection is closed and given up to SERVER_CLOSE_DRAIN_TIMEOUT_MS to send the
+     * frames it has queued before the server stops polling.
+     */
     @Override
     public void close() throws Exception {
+        for (Shard shard : shards) {
+            for (Integer sessionId : shard.connections.keySet()) {
+                closeReactiveSocket(sessionId, false);
+            }
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SERVER_CLOSE_DRAIN_TIMEOUT_MS);
+        while (hasConnections() && System.nanoTime() - deadline < 0) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+
         manager.removeSubscription(subscription);
+        manager.removeServerAction(handshakeAction);
+        manager.removeServerAction(drainAction);
+
+        for (Shard shard : shards) {
+            shard.closeCounters();
+        }
+    }
+
+    /*
+     * Inner Classes
+     */
+
+    /**
+     * The sessions owned by one of the ServerAeronManager's workers. Apart from the connections map, the ready
+     * queue and the sessions counter, which are written to by other threads, only accessed from that worker's
+     * thread.
+     */
+    private static class Shard implements AeronServerDuplexConnection.ReadyListener {
+        private final ConcurrentHashMap<Integer, AeronServerDuplexConnection> connections = new ConcurrentHashMap<>();
+
+        /**
+         * The connections this worker has looked up, by session id, so looking one up doesn't box the id.
+         */
+        private final Int2ObjectHashMap<AeronServerDuplexConnection> owned = new Int2ObjectHashMap<>();
+        private final ArrayList<PendingHandshake> pendingHandshakes = new ArrayList<>();
+        private final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocate(0));
+
+        /**
+         * The frames received as METADATA_INDEXED_FRAMEs are decoded into, reused for every frame.
+         */
+        private final UnsafeBuffer decodeBuffer = new UnsafeBuffer(new byte[0]);
+
+        /**
+         * Connections that have been scheduled to be drained, by the threads emitting their frames.
+         */
+        private final ManyToOneConcurrentArrayQueue<AeronServerDuplexConnection> ready =
+            new ManyToOneConcurrentArrayQueue<>(SERVER_READY_QUEUE_CAPACITY);
+        private volatile boolean readyOverflowed;
+
+        /**
+         * Connections that still had work to do when they were last drained, and a list to swap them with.
+         */
+        private ArrayList<AeronServerDuplexConnection> busy = new ArrayList<>();
+        private ArrayList<AeronServerDuplexConnection> spare = new ArrayList<>();
+
+        private final AtomicCounter framesReceived;
+        private final AtomicCounter framesDropped;
+        private final AtomicCounter framesSent;
+        private final AtomicCounter handshakesReceived;
+        private final AtomicCounter handshakesAcked;
+        private final AtomicCounter handshakesTimedOut;
+        private final AtomicCounter pendingHandshakesDepth;
+        private final AtomicCounter sessions;
+        private final AtomicCounter livenessTimeouts;
+        private final AtomicCounter sessionsResumed;
+
+        public Shard(int port, int workerId) {
+            final TransportCounters counters = TransportCounters.getInstance();
+            final String prefix = "server port " + port + " worker " + workerId + ": ";
+            this.framesReceived = counters.newCounter(prefix + "frames received");
+            this.framesDropped = counters.newCounter(prefix + "frames dropped");
+            this.framesSent = counters.newCounter(prefix + "frames sent");
+            this.handshakesReceived = counters.newCounter(prefix + "handshakes received");
+            this.handshakesAcked = counters.newCounter(prefix + "handshakes acked");
+            this.handshakesTimedOut = counters.newCounter(prefix + "handshakes timed out");
+            this.pendingHandshakesDepth = counters.newCounter(prefix + "pending handshakes");
+            this.sessions = counters.newCounter(prefix + "sessions");
+            this.livenessTimeouts = counters.newCounter(prefix + "liveness timeouts");
+            this.sessionsResumed = counters.newCounter(prefix + "sessions resumed");
+        }
+
+        /*
+         * Connections are added to the connections map by the setup executor, so they are only cached here the
+         * first time this worker looks them up. Only called from this worker's thread.
+         */
+        private AeronServerDuplexConnection connection(int sessionId) {
+            AeronServerDuplexConnection connection = owned.get(sessionId);
+            if (connection == null) {
+                connection = connections.get(sessionId);
+                if (connection != null) {
+                    owned.put(sessionId, connection);
+                }
+            }
+
+            return connection;
+        }
+
+        private void put(int sessionId, AeronServerDuplexConnection connection) {
+            connections.put(sessionId, connection);
+            owned.put(sessionId, connection);
+        }
+
+        private boolean remove(int sessionId, AeronServerDuplexConnection connection) {
+            if (owned.get(sessionId) == connection) {
+                owned.remove(sessionId);
+            }
+
+            return connections.remove(sessionId, connection);
+        }
+
+        @Override
+        public void onReady(AeronServerDuplexConnection connection) {
+            if (!ready.offer(connection)) {
+                readyOverflowed = true;
+            }
+        }
+
+        private void closeCounters() {
+            final TransportCounters counters = TransportCounters.getInstance();
+            counters.free(framesReceived);
+            counters.free(framesDropped);
+            counters.free(framesSent);
+            counters.free(handshakesReceived);
+            counters.free(handshakesAcked);
+            counters.free(handshakesTimedOut);
+            counters.free(pendingHandshakesDepth);
+            counters.free(sessions);
+            counters.free(livenessTimeouts);
+            counters.free(sessionsResumed);
+        }
+    }
+
+    private static class PendingHandshake {
+        private final int sessionId;
+        private final long resumeToken;
+        private final short clientLastReceived;
+        private final int dictionarySize;
+        private TimerWheel.Timer timer;
+
+        /**
+         * @param resumeToken        the token of the session to resume, or 0 to establish a new session
+         * @param clientLastReceived the sequence number of the last frame the client received when resuming
+         * @param dictionarySize     the negotiated size of the metadata dictionary, or 0 if there isn't one
+         */
+        public PendingHandshake(int sessionId, long resumeToken, short clientLastReceived, int dictionarySize) {
+            this.sessionId = sessionId;
+            this.resumeToken = resumeToken;
+            this.clientLastReceived = clientLastReceived;
+            this.dictionarySize = dictionarySize;
+        }
     }
 
 }
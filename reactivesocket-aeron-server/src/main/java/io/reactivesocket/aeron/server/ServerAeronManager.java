@@ -18,16 +18,22 @@ package io.reactivesocket.aeron.server;
 import io.reactivesocket.aeron.internal.Constants;
 import io.reactivesocket.aeron.internal.Loggable;
 import uk.co.real_logic.aeron.*;
+import uk.co.real_logic.aeron.logbuffer.FragmentHandler;
 import uk.co.real_logic.agrona.TimerWheel;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.TimeUnit;
-
-import static io.reactivesocket.aeron.internal.Constants.SERVER_IDLE_STRATEGY;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Class that manages the Aeron instance and the server's polling thread. Lets you register more
+ * Class that manages the Aeron instance and the server's polling threads. Lets you register more
  * than one NewImageHandler to Aeron after the it's the Aeron instance has started
+ * <p>
+ * Sessions are sharded across {@link Constants#SERVER_WORKER_THREADS} workers by session id. The worker that
+ * owns a session polls its image, and is the only thread that touches the session's state and publication.
  */
 public class ServerAeronManager implements Loggable {
     private static final ServerAeronManager INSTANCE = new ServerAeronManager();
@@ -38,9 +44,11 @@ public class ServerAeronManager implements Loggable {
 
     private CopyOnWriteArrayList<UnavailableImageHandler> unavailableImageHandlers = new CopyOnWriteArrayList<>();
 
-    private CopyOnWriteArrayList<FragmentAssemblerHolder> fragmentAssemblerHolders = new CopyOnWriteArrayList<>();
+    private CopyOnWriteArrayList<ServerAction> serverActions = new CopyOnWriteArrayList<>();
+
+    private final ServerAeronWorker[] workers;
 
-    private TimerWheel timerWheel;
+    private final ExecutorService setupExecutor;
 
     public ServerAeronManager() {
         final Aeron.Context ctx = new Aeron.Context();
@@ -50,7 +58,18 @@ public class ServerAeronManager implements Loggable {
 
         aeron = Aeron.connect(ctx);
 
-        this.timerWheel = new TimerWheel(Constants.SERVER_TIMER_WHEEL_TICK_DURATION_MS, TimeUnit.MILLISECONDS, Constants.SERVER_TIMER_WHEEL_BUCKETS);
+        this.workers = new ServerAeronWorker[Math.max(1, Constants.SERVER_WORKER_THREADS)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new ServerAeronWorker(i, workers.length, serverActions);
+        }
+
+        final AtomicInteger setupThreadCount = new AtomicInteger();
+        this.setupExecutor = Executors.newFixedThreadPool(Constants.SERVER_SETUP_THREADS, r -> {
+            Thread setupThread = new Thread(r);
+            setupThread.setName("reactive-socket-aeron-server-setup-" + setupThreadCount.getAndIncrement());
+            setupThread.setDaemon(true);
+            return setupThread;
+        });
 
         poll();
     }
@@ -67,22 +86,54 @@ public class ServerAeronManager implements Loggable {
         unavailableImageHandlers.add(handler);
     }
 
-    public void addSubscription(Subscription subscription, FragmentAssembler fragmentAssembler) {
+    /**
+     * Adds a subscription to be polled by every worker. Each worker polls the images for the sessions it owns
+     * using its own {@link FragmentAssembler}, so the fragmentHandler is called on the worker that owns the
+     * session of the fragment.
+     *
+     * @param subscription the subscription to poll
+     * @param fragmentHandler handler for re-assembled messages
+     */
+    public void addSubscription(Subscription subscription, FragmentHandler fragmentHandler) {
         debug("Adding subscription with session id {}", subscription.streamId());
-        fragmentAssemblerHolders.add(new FragmentAssemblerHolder(subscription, fragmentAssembler));
+        for (ServerAeronWorker worker : workers) {
+            worker.addSubscription(subscription, fragmentHandler);
+        }
     }
 
     public void removeSubscription(Subscription subscription) {
         debug("Removing subscription with session id {}", subscription.streamId());
-        fragmentAssemblerHolders.removeIf(s -> s.subscription == subscription);
+        for (ServerAeronWorker worker : workers) {
+            worker.removeSubscription(subscription);
+        }
+    }
+
+    /**
+     * Adds a ServerAction on the list that is run by the polling loop of every worker.
+     *
+     * @param serverAction the {@link io.reactivesocket.aeron.server.ServerAeronManager.ServerAction} to add
+     */
+    public void addServerAction(ServerAction serverAction) {
+        serverActions.add(serverAction);
+    }
+
+    public void removeServerAction(ServerAction serverAction) {
+        serverActions.remove(serverAction);
     }
 
     private void availableImageHandler(Image image, Subscription subscription, long joiningPosition, String sourceIdentity) {
+        final ServerAeronWorker worker = workers[getWorkerId(image.sessionId())];
+        worker.execute(() -> worker.addImage(subscription, image));
+
         availableImageHandlers
                 .forEach(handler -> handler.onAvailableImage(image, subscription, joiningPosition, sourceIdentity));
     }
 
     private void unavailableImage(Image image, Subscription subscription, long position) {
+        final int sessionId = image.sessionId();
+        final ServerAeronWorker worker = workers[getWorkerId(sessionId)];
+        worker.execute(() -> worker.removeImage(subscription, sessionId));
+
         unavailableImageHandlers
                 .forEach(handler -> handler.onUnavailableImage(image, subscription, position));
     }
@@ -91,57 +142,138 @@ public class ServerAeronManager implements Loggable {
         return aeron;
     }
 
-    public TimerWheel getTimerWheel() {
-        return timerWheel;
+    /**
+     * Executor used to set up new connections off Aeron's image callbacks and the polling threads.
+     */
+    public ExecutorService getSetupExecutor() {
+        return setupExecutor;
     }
 
-    void poll() {
-        Thread dutyThread = new Thread(() -> {
-            for (; ; ) {
-                try {
-                    int poll = 0;
-                    for (FragmentAssemblerHolder sh : fragmentAssemblerHolders) {
-                        try {
-                            if (sh.subscription.isClosed()) {
-                                continue;
-                            }
-
-                            poll += sh.subscription.poll(sh.fragmentAssembler, Integer.MAX_VALUE);
-                        } catch (Throwable t) {
-                            t.printStackTrace();
-                        }
-                    }
-
-                    SERVER_IDLE_STRATEGY.idle(poll);
-
-                    try {
-                        if (timerWheel.computeDelayInMs() < 0) {
-                            timerWheel.expireTimers();
-                        }
-                    } catch (Throwable t) {
-                        t.printStackTrace();
-                    }
-
-                } catch (Throwable t) {
-                    t.printStackTrace();
-                }
-
-            }
+    public int getWorkerCount() {
+        return workers.length;
+    }
 
+    /**
+     * @return the id of the worker that owns the session
+     */
+    public int getWorkerId(int sessionId) {
+        return ServerAeronWorker.workerId(sessionId, workers.length);
+    }
 
-        });
-        dutyThread.setName("reactive-socket-aeron-server");
-        dutyThread.setDaemon(true);
-        dutyThread.start();
+    /**
+     * Timer wheel of a worker. A TimerWheel isn't thread-safe, so only use it from that worker's thread, for
+     * example from a {@link ServerAction} or a command passed to {@link #execute(int, Runnable)}.
+     */
+    public TimerWheel getTimerWheel(int workerId) {
+        return workers[workerId].getTimerWheel();
+    }
+
+    /**
+     * Runs a command on the worker that owns the session.
+     *
+     * @param sessionId the session the command is for
+     * @param command the command to run
+     */
+    public void execute(int sessionId, Runnable command) {
+        workers[getWorkerId(sessionId)].execute(command);
+    }
+
+    /**
+     * Runs a command on a worker.
+     *
+     * @param workerId the worker to run the command on
+     * @param command the command to run
+     */
+    public void executeOnWorker(int workerId, Runnable command) {
+        workers[workerId].execute(command);
+    }
+
+    /**
+     * Per-image polling statistics for every image currently being polled, across all workers.
+     */
+    public List<ImagePollStats> getImagePollStats() {
+        final List<ImagePollStats> stats = new ArrayList<>();
+        for (ServerAeronWorker worker : workers) {
+            stats.addAll(worker.getImagePollStats());
+        }
+
+        return stats;
+    }
+
+    /**
+     * @return the number of duty cycles run by all the workers
+     */
+    public long getDutyCycles() {
+        long dutyCycles = 0;
+        for (ServerAeronWorker worker : workers) {
+            dutyCycles += worker.getDutyCycles();
+        }
+
+        return dutyCycles;
     }
 
-    private class FragmentAssemblerHolder {
-        private Subscription subscription;
-        private FragmentAssembler fragmentAssembler;
+    /**
+     * @return the number of duty cycles, across all the workers, that found no work to do
+     */
+    public long getIdleCycles() {
+        long idleCycles = 0;
+        for (ServerAeronWorker worker : workers) {
+            idleCycles += worker.getIdleCycles();
+        }
+
+        return idleCycles;
+    }
 
-        public FragmentAssemblerHolder(Subscription subscription, FragmentAssembler fragmentAssembler) {
-            this.subscription = subscription;
-            this.fragmentAssembler = fragmentAssembler;
+    /**
+     * @return the total time, across all the workers, from receiving a request to sending the first frame in
+     * response
+     */
+    public long getHandlerLatencyNs() {
+        long latencyNs = 0;
+        for (ServerAeronWorker worker : workers) {
+            latencyNs += worker.getHandlerLatencyNs();
         }
+
+        return latencyNs;
+    }
+
+    /**
+     * @return the number of requests answered across all the workers
+     */
+    public long getHandlerResponses() {
+        long responses = 0;
+        for (ServerAeronWorker worker : workers) {
+            responses += worker.getHandlerResponses();
+        }
+
+        return responses;
+    }
+
+    /**
+     * Records the handler latency of a request. Must be called from the worker that owns the session.
+     */
+    void onHandlerLatency(int sessionId, long latencyNs) {
+        workers[getWorkerId(sessionId)].onHandlerLatency(latencyNs);
+    }
+
+    void poll() {
+        for (ServerAeronWorker worker : workers) {
+            Thread dutyThread = new Thread(worker);
+            dutyThread.setName("reactive-socket-aeron-server-" + worker.getWorkerId());
+            dutyThread.setDaemon(true);
+            dutyThread.start();
+        }
+    }
+
+    /**
+     * Work that is run on every worker's polling thread every duty cycle.
+     */
+    @FunctionalInterface
+    public interface ServerAction {
+        /**
+         * @param workerId the id of the worker calling the action. Only do work for the sessions the worker owns.
+         * @return the amount of work done, used to decide if the polling thread should idle
+         */
+        int call(int workerId);
     }
 }
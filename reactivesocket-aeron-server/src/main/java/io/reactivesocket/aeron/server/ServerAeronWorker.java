@@ -0,0 +1,341 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.server;
+
+import io.reactivesocket.aeron.internal.Constants;
+import io.reactivesocket.aeron.internal.Loggable;
+import io.reactivesocket.aeron.internal.TransportCounters;
+import uk.co.real_logic.aeron.FragmentAssembler;
+import uk.co.real_logic.aeron.Image;
+import uk.co.real_logic.aeron.Subscription;
+import uk.co.real_logic.aeron.logbuffer.FragmentHandler;
+import uk.co.real_logic.agrona.TimerWheel;
+import uk.co.real_logic.agrona.concurrent.AtomicCounter;
+import uk.co.real_logic.agrona.concurrent.IdleStrategy;
+import uk.co.real_logic.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A server polling thread. Each worker polls only the images whose session id is assigned to it by the
+ * {@link ServerAeronManager}, and runs the timers, {@link ServerAeronManager.ServerAction}s and commands for
+ * those sessions, so all the state for a session is owned by a single thread.
+ */
+class ServerAeronWorker implements Runnable, Loggable {
+    private final int workerId;
+
+    private final int workerCount;
+
+    private final CopyOnWriteArrayList<FragmentAssemblerHolder> fragmentAssemblerHolders = new CopyOnWriteArrayList<>();
+
+    private final List<ServerAeronManager.ServerAction> serverActions;
+
+    private final ManyToOneConcurrentLinkedQueue<Runnable> commands = new ManyToOneConcurrentLinkedQueue<>();
+
+    private final TimerWheel timerWheel;
+
+    private final Set<ImagePollStats> imagePollStats = ConcurrentHashMap.newKeySet();
+
+    private final IdleStrategy idleStrategy;
+
+    private final AtomicCounter dutyCycles;
+
+    private final AtomicCounter idleCycles;
+
+    private final AtomicCounter idleTimeNs;
+
+    private final AtomicCounter handlerLatencyNs;
+
+    private final AtomicCounter handlerResponses;
+
+    public ServerAeronWorker(int workerId, int workerCount, List<ServerAeronManager.ServerAction> serverActions) {
+        this.workerId = workerId;
+        this.workerCount = workerCount;
+        this.serverActions = serverActions;
+        this.timerWheel = new TimerWheel(Constants.SERVER_TIMER_WHEEL_TICK_DURATION_MS, TimeUnit.MILLISECONDS, Constants.SERVER_TIMER_WHEEL_BUCKETS);
+        this.idleStrategy = Constants.newIdleStrategy(Constants.SERVER_AGENT);
+
+        final TransportCounters counters = TransportCounters.getInstance();
+        this.dutyCycles = counters.newCounter("server worker " + workerId + ": duty cycles");
+        this.idleCycles = counters.newCounter("server worker " + workerId + ": idle cycles");
+        this.idleTimeNs = counters.newCounter("server worker " + workerId + ": idle time ns");
+        this.handlerLatencyNs = counters.newCounter("server worker " + workerId + ": handler latency ns");
+        this.handlerResponses = counters.newCounter("server worker " + workerId + ": handler responses");
+    }
+
+    /**
+     * Maps a session id to the worker that owns it.
+     */
+    static int workerId(int sessionId, int workerCount) {
+        return (sessionId & Integer.MAX_VALUE) % workerCount;
+    }
+
+    public int getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Timer wheel for the sessions owned by this worker. Only use it from this worker's thread.
+     */
+    public TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
+    long getDutyCycles() {
+        return dutyCycles.get();
+    }
+
+    long getIdleCycles() {
+        return idleCycles.get();
+    }
+
+    /**
+     * @return the total time from receiving a request to sending the first frame in response, for the requests
+     * answered by the sessions owned by this worker
+     */
+    long getHandlerLatencyNs() {
+        return handlerLatencyNs.get();
+    }
+
+    /**
+     * @return the number of requests answered by the sessions owned by this worker
+     */
+    long getHandlerResponses() {
+        return handlerResponses.get();
+    }
+
+    /*
+     * Adds the handler latency of a request. Run on this worker's thread.
+     */
+    void onHandlerLatency(long latencyNs) {
+        handlerLatencyNs.addOrdered(latencyNs);
+        handlerResponses.orderedIncrement();
+    }
+
+    /*
+     * Images that became available before the subscription was added are picked up on this worker's thread,
+     * after any image added since is queued behind it, so none are missed.
+     */
+    void addSubscription(Subscription subscription, FragmentHandler fragmentHandler) {
+        final FragmentAssemblerHolder sh = new FragmentAssemblerHolder(subscription, new FragmentAssembler(fragmentHandler));
+        fragmentAssemblerHolders.add(sh);
+        execute(() -> subscription.images().forEach(image -> addImage(sh, image)));
+    }
+
+    void removeSubscription(Subscription subscription) {
+        execute(() -> fragmentAssemblerHolders.removeIf(s -> {
+            if (s.subscription == subscription) {
+                for (ImagePollStats stats : s.stats) {
+                    imagePollStats.remove(stats);
+                }
+                return true;
+            }
+
+            return false;
+        }));
+    }
+
+    /**
+     * Runs a command on this worker's thread.
+     */
+    void execute(Runnable command) {
+        commands.offer(command);
+    }
+
+    @Override
+    public void run() {
+        for (; ; ) {
+            try {
+                // indexed, so a duty cycle doesn't allocate iterators
+                int poll = 0;
+                for (int i = 0; i < fragmentAssemblerHolders.size(); i++) {
+                    final FragmentAssemblerHolder sh = fragmentAssemblerHolders.get(i);
+                    try {
+                        if (sh.subscription.isClosed()) {
+                            continue;
+                        }
+
+                        poll += poll(sh);
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                    }
+                }
+
+                Runnable command;
+                while ((command = commands.poll()) != null) {
+                    try {
+                        command.run();
+                        poll++;
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                    }
+                }
+
+                for (int i = 0; i < serverActions.size(); i++) {
+                    try {
+                        poll += serverActions.get(i).call(workerId);
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                    }
+                }
+
+                dutyCycles.orderedIncrement();
+                if (poll == 0) {
+                    final long start = System.nanoTime();
+                    idleStrategy.idle(0);
+                    idleTimeNs.addOrdered(System.nanoTime() - start);
+                    idleCycles.orderedIncrement();
+                } else {
+                    idleStrategy.idle(poll);
+                }
+
+                try {
+                    if (timerWheel.computeDelayInMs() < 0) {
+                        timerWheel.expireTimers();
+                    }
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+    }
+
+    /*
+     * Polls the images owned by this worker one at a time, reading at most SERVER_IMAGE_FRAGMENT_QUOTA fragments
+     * from each, and starting from a different image every duty cycle, so a single busy client can't starve
+     * the others.
+     */
+    private int poll(FragmentAssemblerHolder sh) {
+        final Image[] images = sh.images;
+        final int size = images.length;
+        if (size == 0) {
+            return 0;
+        }
+
+        final int fragmentQuota = Constants.SERVER_IMAGE_FRAGMENT_QUOTA;
+        final int start = sh.roundRobinIndex++ % size;
+        int poll = 0;
+        for (int i = 0; i < size; i++) {
+            final int index = (start + i) % size;
+            final Image image = images[index];
+            if (image.isClosed()) {
+                continue;
+            }
+
+            final int fragments = image.poll(sh.fragmentAssembler, fragmentQuota);
+            sh.stats[index].onPoll(fragments, fragmentQuota);
+            poll += fragments;
+        }
+
+        if (sh.roundRobinIndex == Integer.MAX_VALUE) {
+            sh.roundRobinIndex = 0;
+        }
+
+        return poll;
+    }
+
+    /*
+     * Starts polling an image owned by this worker. Run on this worker's thread.
+     */
+    void addImage(Subscription subscription, Image image) {
+        for (FragmentAssemblerHolder sh : fragmentAssemblerHolders) {
+            if (sh.subscription == subscription) {
+                addImage(sh, image);
+            }
+        }
+    }
+
+    private void addImage(FragmentAssemblerHolder sh, Image image) {
+        final int sessionId = image.sessionId();
+        if (workerId(sessionId, workerCount) != workerId || sh.indexOf(sessionId) >= 0) {
+            return;
+        }
+
+        final int size = sh.images.length;
+        final ImagePollStats stats = new ImagePollStats(sessionId, sh.subscription.streamId());
+        sh.images = Arrays.copyOf(sh.images, size + 1);
+        sh.images[size] = image;
+        sh.stats = Arrays.copyOf(sh.stats, size + 1);
+        sh.stats[size] = stats;
+        imagePollStats.add(stats);
+    }
+
+    /*
+     * Stops polling an image that has gone away, and removes its stats. Run on this worker's thread.
+     */
+    void removeImage(Subscription subscription, int sessionId) {
+        for (FragmentAssemblerHolder sh : fragmentAssemblerHolders) {
+            if (sh.subscription != subscription) {
+                continue;
+            }
+
+            final int index = sh.indexOf(sessionId);
+            if (index < 0) {
+                continue;
+            }
+
+            imagePollStats.remove(sh.stats[index]);
+            sh.images = remove(sh.images, index, new Image[sh.images.length - 1]);
+            sh.stats = remove(sh.stats, index, new ImagePollStats[sh.stats.length - 1]);
+        }
+    }
+
+    private static <T> T[] remove(T[] array, int index, T[] result) {
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    Collection<ImagePollStats> getImagePollStats() {
+        return imagePollStats;
+    }
+
+    /*
+     * The images of a subscription owned by this worker, and their stats at the same index. Only changed on
+     * this worker's thread, so polling them doesn't allocate.
+     */
+    private static class FragmentAssemblerHolder {
+        private final Subscription subscription;
+        private final FragmentAssembler fragmentAssembler;
+        private int roundRobinIndex;
+        private Image[] images = new Image[0];
+        private ImagePollStats[] stats = new ImagePollStats[0];
+
+        public FragmentAssemblerHolder(Subscription subscription, FragmentAssembler fragmentAssembler) {
+            this.subscription = subscription;
+            this.fragmentAssembler = fragmentAssembler;
+        }
+
+        private int indexOf(int sessionId) {
+            for (int i = 0; i < images.length; i++) {
+                if (images[i].sessionId() == sessionId) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    }
+}
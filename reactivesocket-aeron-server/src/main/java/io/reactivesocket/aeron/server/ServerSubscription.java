@@ -15,87 +15,351 @@
  */
 package io.reactivesocket.aeron.server;
 
+import io.reactivesocket.aeron.internal.Constants;
+import io.reactivesocket.aeron.internal.LatencyStage;
+import io.reactivesocket.aeron.internal.LatencyStamp;
 import io.reactivesocket.aeron.internal.Loggable;
 import io.reactivesocket.rx.Completable;
 import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
 import io.reactivesocket.aeron.internal.AeronUtil;
-import io.reactivesocket.aeron.internal.MessageType;
+import io.reactivesocket.aeron.internal.ConnectionLatency;
+import io.reactivesocket.aeron.internal.PublicationStats;
+import io.reactivesocket.aeron.internal.ResumeState;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 import uk.co.real_logic.aeron.Publication;
 import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.MutableDirectBuffer;
+import uk.co.real_logic.agrona.concurrent.OneToOneConcurrentArrayQueue;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Subscription used by the AeronServerDuplexConnection to handle incoming frames and send them
- * on a publication.
+ * on the connection's publication, which changes when the session is resumed by a new client publication.
+ * <p>
+ * Frames are buffered in a small bounded queue and sent from the server's polling thread, so the thread
+ * emitting frames never spins on Aeron. Demand is only issued for frames the publication has accepted, which
+ * propagates back pressure from Aeron to the Publisher.
+ * <p>
+ * Lease frames are sent by the Responder whether or not they were requested, so the queue keeps a few slots for
+ * them beyond the requested frames, and they aren't requested again once sent. A lease that finds those slots
+ * taken is dropped, as the client still gets the leases ahead of it.
+ * <p>
+ * Only the polling thread takes frames from the queue and completes the Completable. An error from the
+ * Publisher is stored and handled by the next {@link #drain()}, which releases the frames that will never be sent.
  *
  * @see AeronServerDuplexConnection
  */
 class ServerSubscription implements Subscriber<Frame>, Loggable {
+    private static final AtomicIntegerFieldUpdater<ServerSubscription> TERMINATED =
+        AtomicIntegerFieldUpdater.newUpdater(ServerSubscription.class, "terminated");
 
     /**
-     * Count is used to by the client to round-robin request between threads.
+     * Slots kept in the queue for lease frames, which aren't counted against the requested frames.
      */
-    private short count;
+    private static final int LEASE_SLOTS = 2;
 
-    private final Publication publication;
+    private final AeronServerDuplexConnection connection;
 
     private final Completable completable;
 
-    public ServerSubscription(Publication publication, Completable completable) {
-        this.publication = publication;
+    private final OneToOneConcurrentArrayQueue<Frame> frames;
+
+    private volatile Subscription s;
+
+    private volatile boolean completed;
+
+    private volatile Throwable error;
+
+    private volatile int terminated;
+
+    private Publication statsPublication;
+
+    private PublicationStats publicationStats;
+
+    /**
+     * When the frame at the head of the queue was first back pressured, or 0 if it hasn't been.
+     */
+    private long blockedSince;
+
+    private long blockedAttempts;
+
+    /**
+     * When each queued frame was queued, indexed like the queue by the number of frames queued and sent. Written
+     * by the thread emitting frames once it has checked there is space for the frame, and read by the polling
+     * thread after the frame has been taken from the queue.
+     */
+    private final long[] enqueuedNs;
+
+    private long framesQueued;
+
+    private long framesSent;
+
+    /**
+     * Frames other than leases queued by the thread emitting frames, and sent by the polling thread, so the thread
+     * emitting frames can tell when the Publisher has sent more frames than were requested.
+     */
+    private long requestedFramesQueued;
+
+    private volatile long requestedFramesSent;
+
+    /**
+     * Lease frames queued by the thread emitting frames, and sent by the polling thread, which are limited to
+     * LEASE_SLOTS.
+     */
+    private long leasesQueued;
+
+    private volatile long leasesSent;
+
+    /**
+     * When the frame at the head of the queue was first tried, or 0 if it hasn't been.
+     */
+    private long firstAttemptNs;
+
+    private final AeronUtil.BufferFiller frameWriter = this::writeFrame;
+
+    /**
+     * The frame being written by the frameWriter, and what it writes with it. Only used from the polling thread.
+     */
+    private Frame sending;
+
+    private short sendingSequence;
+
+    private long sendingQueuedNs;
+
+    public ServerSubscription(AeronServerDuplexConnection connection, Completable completable) {
+        this.connection = connection;
         this.completable = completable;
+        this.frames = new OneToOneConcurrentArrayQueue<>(Constants.SERVER_SUBSCRIPTION_BUFFER_SIZE + LEASE_SLOTS);
+        this.enqueuedNs = LatencyStamp.TIMED ? new long[frames.capacity()] : null;
     }
 
     @Override
     public void onSubscribe(Subscription s) {
-        s.request(Long.MAX_VALUE);
+        this.s = s;
+        s.request(Constants.SERVER_SUBSCRIPTION_BUFFER_SIZE);
     }
 
     @Override
     public void onNext(Frame frame) {
-
         if (isTraceEnabled()) {
-            trace("Server with publication session id {} sending frame => {}", publication.sessionId(), frame.toString());
+            trace("Server with session id {} queueing frame => {}", connection.getSessionId(), frame.toString());
         }
 
-        final ByteBuffer byteBuffer = frame.getByteBuffer();
-        final int length = frame.length() + BitUtil.SIZE_OF_INT;
+        if (error != null || terminated == 1) {
+            frame.release();
+            return;
+        }
 
-        try {
-            AeronUtil.tryClaimOrOffer(publication, (offset, buffer) -> {
-                buffer.putShort(offset, getCount());
-                buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.FRAME.getEncodedType());
-                buffer.putBytes(offset + BitUtil.SIZE_OF_INT, byteBuffer, frame.offset(), frame.length());
-            }, length);
-        } catch (Throwable t) {
-            onError(t);
+        final boolean lease = frame.getType() == FrameType.LEASE;
+        if (lease) {
+            if (leasesQueued - leasesSent >= LEASE_SLOTS) {
+                debug("Dropping lease for session id {}, its lease slots are full", connection.getSessionId());
+                frame.release();
+                return;
+            }
+        } else if (requestedFramesQueued - requestedFramesSent >= Constants.SERVER_SUBSCRIPTION_BUFFER_SIZE) {
+            frame.release();
+            s.cancel();
+            onError(new IllegalStateException("Publisher sent more frames than were requested for session id " + connection.getSessionId()));
+            return;
         }
 
-        if (isTraceEnabled()) {
-            trace("Server with publication session id {} sent frame  with ReactiveSocket stream id => {}", publication.sessionId(), frame.getStreamId());
+        // The checks above leave at most the queue's capacity of frames queued, so the offer can't fail, and the
+        // time can be written before it without overwriting the time of a frame that hasn't been sent
+        if (enqueuedNs != null) {
+            enqueuedNs[(int) framesQueued & (enqueuedNs.length - 1)] = System.nanoTime();
         }
 
+        if (!frames.offer(frame)) {
+            frame.release();
+            s.cancel();
+            onError(new IllegalStateException("Queue full for session id " + connection.getSessionId()));
+            return;
+        }
 
+        framesQueued++;
+        if (lease) {
+            leasesQueued++;
+        } else {
+            requestedFramesQueued++;
+        }
+        connection.schedule();
     }
 
     @Override
     public void onError(Throwable t) {
-        completable.error(t);
+        if (error == null) {
+            error = t;
+        }
+        connection.schedule();
     }
 
     @Override
     public void onComplete() {
         if (isTraceEnabled()) {
-            trace("Server with publication session id {} completing", publication.sessionId());
+            trace("Server with session id {} completing", connection.getSessionId());
         }
-        completable.success();
+        completed = true;
+        connection.schedule();
     }
 
-    private short getCount() {
-        return count++;
+    /**
+     * Sends queued frames until the queue is empty or Aeron signals back pressure, and then requests as many
+     * frames as were sent. Must only be called from the server's polling thread, when the connection has been
+     * scheduled by a signal from the Publisher or still has frames queued.
+     *
+     * @return the number of frames sent
+     */
+    int drain() {
+        if (error != null) {
+            terminate(error);
+            return 0;
+        }
+
+        int sent = 0;
+        int requested = 0;
+        try {
+            Frame frame;
+            while ((frame = frames.peek()) != null) {
+                if (!send(frame)) {
+                    break;
+                }
+
+                frames.poll();
+                if (frame.getType() == FrameType.LEASE) {
+                    leasesSent++;
+                } else {
+                    requested++;
+                }
+                frame.release();
+                framesSent++;
+                sent++;
+            }
+        } catch (Throwable t) {
+            s.cancel();
+            terminate(t);
+            return sent;
+        }
+
+        if (requested > 0) {
+            requestedFramesSent += requested;
+            if (!completed) {
+                s.request(requested);
+            }
+        }
+
+        if (completed && frames.isEmpty() && TERMINATED.compareAndSet(this, 0, 1)) {
+            completable.success();
+        }
+
+        return sent;
+    }
+
+    /**
+     * Releases the frames that are still queued and signals the error, unless the Completable has already been
+     * completed. Must only be called from the server's polling thread.
+     */
+    private void terminate(Throwable t) {
+        Frame frame;
+        while ((frame = frames.poll()) != null) {
+            frame.release();
+        }
+
+        if (TERMINATED.compareAndSet(this, 0, 1)) {
+            completable.error(t);
+        }
+    }
+
+    boolean isTerminated() {
+        return terminated == 1;
+    }
+
+    boolean hasQueuedFrames() {
+        return !frames.isEmpty();
+    }
+
+    private boolean send(Frame frame) {
+        final Publication publication = connection.getPublication();
+        final ResumeState resumeState = connection.getResumeState();
+        final ByteBuffer byteBuffer = frame.getByteBuffer();
+        final int headerLength = LatencyStamp.headerLength();
+        final int length = frame.length() + headerLength;
+        final short sequence = resumeState.nextSequence();
+        long enqueued = 0;
+        if (enqueuedNs != null) {
+            enqueued = enqueuedNs[(int) framesSent & (enqueuedNs.length - 1)];
+            if (firstAttemptNs == 0) {
+                firstAttemptNs = System.nanoTime();
+            }
+        }
+
+        final long queuedNs = enqueued;
+        sending = frame;
+        sendingSequence = sequence;
+        sendingQueuedNs = queuedNs;
+        final boolean sent;
+        try {
+            sent = AeronUtil.tryClaimOrOfferOnce(publication, frameWriter, length);
+        } finally {
+            sending = null;
+        }
+
+        if (sent) {
+            resumeState.onSent(sequence, byteBuffer, frame.offset(), frame.length());
+            connection.onFrameSent(frame);
+
+            if (Constants.LATENCY_METRICS_ENABLED) {
+                final ConnectionLatency latency = connection.getLatency();
+                final FrameType type = frame.getType();
+                latency.record(type, LatencyStage.SEND_QUEUE_WAIT, firstAttemptNs - queuedNs);
+                latency.record(type, LatencyStage.CLAIM, System.nanoTime() - firstAttemptNs);
+            }
+            firstAttemptNs = 0;
+
+            if (blockedSince != 0) {
+                getPublicationStats(publication).onBlocked(System.nanoTime() - blockedSince, blockedAttempts + 1);
+                blockedSince = 0;
+                blockedAttempts = 0;
+            }
+
+            if (isTraceEnabled()) {
+                trace("Server with session id {} sent frame  with ReactiveSocket stream id => {}", connection.getSessionId(), frame.getStreamId());
+            }
+        } else {
+            if (blockedSince == 0) {
+                blockedSince = System.nanoTime();
+            }
+            blockedAttempts++;
+        }
+
+        return sent;
+    }
+
+    /*
+     * Writes the frame being sent into the claimed buffer, from the fields set by send, so sending a frame doesn't
+     * allocate a lambda.
+     */
+    private void writeFrame(int offset, MutableDirectBuffer buffer) {
+        final Frame frame = sending;
+        buffer.putShort(offset, sendingSequence);
+        buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) LatencyStamp.frameType().getEncodedType());
+        if (LatencyStamp.ENABLED) {
+            LatencyStamp.write(buffer, offset + BitUtil.SIZE_OF_INT, sendingQueuedNs, firstAttemptNs);
+        }
+        buffer.putBytes(offset + LatencyStamp.headerLength(), frame.getByteBuffer(), frame.offset(), frame.length());
+    }
+
+    private PublicationStats getPublicationStats(Publication publication) {
+        if (publication != statsPublication) {
+            statsPublication = publication;
+            publicationStats = AeronUtil.getPublicationStats(publication);
+        }
+
+        return publicationStats;
     }
 
 }
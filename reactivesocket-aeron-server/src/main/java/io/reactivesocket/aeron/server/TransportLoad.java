@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.server;
+
+/**
+ * The load on the server's transport over the interval between two samples, worked out from the change in
+ * cumulative counters. Only used from one thread.
+ */
+class TransportLoad {
+    /**
+     * The share of attempts to send to clients that can be back pressured before the transport is overloaded.
+     */
+    static final double MAX_BACK_PRESSURE_RATIO = 0.01;
+
+    /**
+     * The share of duty cycles that can leave fragments waiting in an image before the transport is overloaded.
+     */
+    static final double MAX_BACKLOG_RATIO = 0.5;
+
+    private long dutyCycles;
+    private long idleCycles;
+    private long sends;
+    private long backPressured;
+    private long quotaExhausted;
+    private long handlerLatencyTotalNs;
+    private long handlerResponses;
+
+    private double utilisation;
+    private double backPressureRatio;
+    private double backlogRatio;
+    private long handlerLatencyNs;
+
+    /**
+     * @param dutyCycles       the duty cycles run by the workers
+     * @param idleCycles       the duty cycles that found no work to do
+     * @param sends            the frames sent to clients
+     * @param backPressured    the attempts to send to clients that were back pressured
+     * @param quotaExhausted   the polls of an image that read the full fragment quota
+     * @param handlerLatencyNs the total time from receiving a request to sending the first frame in response
+     * @param handlerResponses the requests the handler latency was recorded for
+     */
+    void sample(long dutyCycles, long idleCycles, long sends, long backPressured, long quotaExhausted,
+                long handlerLatencyNs, long handlerResponses) {
+        final long cycles = Math.max(0, dutyCycles - this.dutyCycles);
+        final long idle = Math.min(cycles, Math.max(0, idleCycles - this.idleCycles));
+        // stats are removed with their publication, so the sums can go down between samples
+        final long sent = Math.max(0, sends - this.sends);
+        final long blocked = Math.max(0, backPressured - this.backPressured);
+        final long exhausted = Math.max(0, quotaExhausted - this.quotaExhausted);
+        final long responses = Math.max(0, handlerResponses - this.handlerResponses);
+
+        this.utilisation = cycles == 0 ? 0 : (double) (cycles - idle) / cycles;
+        this.backPressureRatio = sent + blocked == 0 ? 0 : (double) blocked / (sent + blocked);
+        this.backlogRatio = cycles == 0 ? 0 : Math.min(1, (double) exhausted / cycles);
+        // an interval without responses has no latency, so it doesn't keep the last busy interval's
+        this.handlerLatencyNs = responses == 0 ? 0 : Math.max(0, handlerLatencyNs - this.handlerLatencyTotalNs) / responses;
+
+        this.dutyCycles = dutyCycles;
+        this.idleCycles = idleCycles;
+        this.sends = sends;
+        this.backPressured = backPressured;
+        this.quotaExhausted = quotaExhausted;
+        this.handlerLatencyTotalNs = handlerLatencyNs;
+        this.handlerResponses = handlerResponses;
+    }
+
+    /**
+     * @return the share of duty cycles that did work
+     */
+    double getUtilisation() {
+        return utilisation;
+    }
+
+    double getBackPressureRatio() {
+        return backPressureRatio;
+    }
+
+    double getBacklogRatio() {
+        return backlogRatio;
+    }
+
+    /**
+     * @return the average handler latency of the requests answered in the interval
+     */
+    long getHandlerLatencyNs() {
+        return handlerLatencyNs;
+    }
+
+    /**
+     * @return true if any of the signals in the last sample was over its target
+     */
+    boolean isOverloaded(double targetUtilisation, long targetLatencyNs) {
+        return utilisation > targetUtilisation
+            || backPressureRatio > MAX_BACK_PRESSURE_RATIO
+            || backlogRatio > MAX_BACKLOG_RATIO
+            || handlerLatencyNs > targetLatencyNs;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportLoad{" +
+            "utilisation=" + utilisation +
+            ", backPressureRatio=" + backPressureRatio +
+            ", backlogRatio=" + backlogRatio +
+            ", handlerLatencyNs=" + handlerLatencyNs +
+            '}';
+    }
+}
@@ -1,80 +1,92 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package io.reactivesocket.aeron.client;
 
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.co.real_logic.aeron.ScriptedSubscription;
 
-public class PollingActionPerf {
-/*
-    @State(Scope.Benchmark)
-    public static class TestState {
-        PollingAction pa;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-        AtomicLong counter = new AtomicLong();
+/**
+ * Measures a duty cycle of the client polling thread, polling scripted subscriptions instead of Aeron, so the
+ * result is the overhead of the polling loop itself. With no fragments per poll it is the cost of an idle duty
+ * cycle.
+ * <p>
+ * Run with ./gradlew :reactivesocket-aeron-tests:jmh -Pjmh=PollingActionPerf
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PollingActionPerf {
+    @Param({"1", "4"})
+    public int subscriptionGroups;
 
-        @Setup
-        public void init() {
-            ClientAeronManager.SubscriptionGroup sg
-                = new ClientAeronManager
-                .SubscriptionGroup("foo",
-                new Subscription[]{new DummySubscription()}, new Func1<Integer, ClientAeronManager.ThreadIdAwareFragmentHandler>() {
-                @Override
-                public ClientAeronManager.ThreadIdAwareFragmentHandler call(Integer integer) {
-                    return new ClientAeronManager.ThreadIdAwareFragmentHandler(0) {
-                        @Override
-                        public void onFragment(DirectBuffer buffer, int offset, int length, Header header) {
-                            counter.getAndIncrement();
-                        }
-                    };
-                }
-            });
+    @Param({"1", "16"})
+    public int clientActions;
 
-            // 5 connections ....
-            for (int i = 0; i < 5; i++) {
-                sg.getClientActions().add(new ClientAeronManager.ClientAction(0) {
-                    @Override
-                    void call(int threadId) {
-                        counter.getAndIncrement();
-                    }
+    @Param({"0", "1", "16"})
+    public int fragmentsPerPoll;
 
-                    @Override
-                    public void close() throws Exception {
+    @Param({"64"})
+    public int messageLength;
 
-                    }
-                });
-            }
+    private PollingAction pollingAction;
 
-            List<ClientAeronManager.SubscriptionGroup> group = new CopyOnWriteArrayList<>();
-            group.add(sg);
+    @Setup
+    public void setup(Blackhole bh) {
+        // The polling loop polls a subscription until it has nothing left, so every other poll is empty
+        final int[] script = fragmentsPerPoll == 0 ? new int[] {0} : new int[] {fragmentsPerPoll, 0};
 
-            pa = new PollingAction(0, new ReentrantLock(), new ReentrantLock(), group);
+        final List<ClientAeronManager.SubscriptionGroup> groups = new ArrayList<>();
+        for (int i = 0; i < subscriptionGroups; i++) {
+            groups.add(new ClientAeronManager.SubscriptionGroup(
+                "scripted " + i,
+                new ScriptedSubscription(messageLength, script),
+                (buffer, offset, length, header) -> bh.consume(buffer.getByte(offset))));
         }
-    }
-
-    @Benchmark
-    @BenchmarkMode(Mode.Throughput)
-    @Threads(1)
-    public void call1(TestState state) {
-        state.pa.call();
-    }
 
-    @Benchmark
-    @BenchmarkMode(Mode.Throughput)
-    @Threads(2)
-    public void call2(TestState state) {
-        state.pa.call();
-    }
+        final List<ClientAeronManager.ClientAction> actions = new ArrayList<>();
+        for (int i = 0; i < clientActions; i++) {
+            actions.add(() -> {
+                bh.consume(this);
+                return 0;
+            });
+        }
 
-    @Benchmark
-    @BenchmarkMode(Mode.Throughput)
-    @Threads(3)
-    public void call3(TestState state) {
-        state.pa.call();
+        pollingAction = new PollingAction(groups, actions);
     }
 
     @Benchmark
-    @BenchmarkMode(Mode.Throughput)
-    @Threads(4)
-    public void call4(TestState state) {
-        state.pa.call();
+    public int call() {
+        return pollingAction.call();
     }
-    */
-
 }
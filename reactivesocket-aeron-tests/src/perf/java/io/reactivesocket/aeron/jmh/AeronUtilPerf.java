@@ -0,0 +1,143 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.jmh;
+
+import io.reactivesocket.aeron.internal.AeronUtil;
+import io.reactivesocket.aeron.internal.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.co.real_logic.aeron.Aeron;
+import uk.co.real_logic.aeron.Publication;
+import uk.co.real_logic.aeron.Subscription;
+import uk.co.real_logic.aeron.driver.MediaDriver;
+import uk.co.real_logic.aeron.logbuffer.FragmentHandler;
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures sending a frame with {@link AeronUtil} on a loopback publication, including writing the transport
+ * header, at lengths either side of {@link AeronUtil#MAX_CLAIM_LENGTH}, where tryClaimOrOffer switches from
+ * tryClaim to offer. Comparing tryClaimOrOffer with offer at the same length shows what tryClaim saves. A
+ * thread polls the subscription so the publication isn't back pressured for long.
+ * <p>
+ * Run with ./gradlew :reactivesocket-aeron-tests:jmh -Pjmh='AeronUtilPerf -prof gc' to see the allocation rate,
+ * or run the main method, which adds the GC profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AeronUtilPerf {
+    private static final String CHANNEL = "udp://localhost:39990";
+    private static final int STREAM_ID = 10;
+
+    @Param({"32", "1024", "4072", "4073", "16384"})
+    public int messageLength;
+
+    private MediaDriver mediaDriver;
+    private Aeron aeron;
+    private Publication publication;
+    private Subscription subscription;
+    private Thread poller;
+    private volatile boolean running;
+
+    private UnsafeBuffer payload;
+    private AeronUtil.BufferFiller filler;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final MediaDriver.Context context = new MediaDriver.Context();
+        context.dirsDeleteOnStart(true);
+        mediaDriver = MediaDriver.launch(context);
+        aeron = Aeron.connect(new Aeron.Context());
+
+        subscription = aeron.addSubscription(CHANNEL, STREAM_ID);
+        publication = aeron.addPublication(CHANNEL, STREAM_ID);
+
+        final FragmentHandler handler = (buffer, offset, length, header) -> {};
+        running = true;
+        poller = new Thread(() -> {
+            while (running) {
+                subscription.poll(handler, Integer.MAX_VALUE);
+            }
+        });
+        poller.setName("aeron-util-perf-poller");
+        poller.setDaemon(true);
+        poller.start();
+
+        while (!publication.hasBeenConnected()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        final int payloadLength = messageLength - BitUtil.SIZE_OF_INT;
+        payload = new UnsafeBuffer(ByteBuffer.allocate(payloadLength));
+        filler = (offset, buffer) -> {
+            buffer.putShort(offset, (short) 0);
+            buffer.putShort(offset + BitUtil.SIZE_OF_SHORT, (short) MessageType.FRAME.getEncodedType());
+            buffer.putBytes(offset + BitUtil.SIZE_OF_INT, payload, 0, payloadLength);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        poller.join();
+
+        AeronUtil.removePublicationStats(publication);
+        publication.close();
+        subscription.close();
+        aeron.close();
+        mediaDriver.close();
+    }
+
+    @Benchmark
+    public void tryClaimOrOffer() {
+        AeronUtil.tryClaimOrOffer(publication, filler, messageLength);
+    }
+
+    @Benchmark
+    public void offer() {
+        AeronUtil.offer(publication, filler, messageLength, 1, TimeUnit.SECONDS);
+    }
+
+    public static void main(String... args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(AeronUtilPerf.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
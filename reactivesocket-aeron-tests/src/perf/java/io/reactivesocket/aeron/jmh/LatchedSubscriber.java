@@ -17,32 +17,48 @@ package io.reactivesocket.aeron.jmh;
  */
 
 import org.openjdk.jmh.infra.Blackhole;
-import rx.Observer;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class LatchedObserver<T> implements Observer<T> {
+/**
+ * Subscriber that requests everything, consumes it in a Blackhole, and counts down a latch when it terminates,
+ * so a benchmark can wait for a batch of requests to finish. The first error is kept so the benchmark can fail
+ * rather than report the throughput of failed requests.
+ */
+public class LatchedSubscriber<T> implements Subscriber<T> {
 
-    public CountDownLatch latch = new CountDownLatch(1);
+    private final CountDownLatch latch;
     private final Blackhole bh;
+    private final AtomicReference<Throwable> error;
 
-    public LatchedObserver(Blackhole bh) {
+    public LatchedSubscriber(CountDownLatch latch, Blackhole bh, AtomicReference<Throwable> error) {
+        this.latch = latch;
         this.bh = bh;
+        this.error = error;
     }
 
     @Override
-    public void onCompleted() {
-        latch.countDown();
+    public void onSubscribe(Subscription s) {
+        s.request(Long.MAX_VALUE);
     }
 
     @Override
-    public void onError(Throwable e) {
+    public void onNext(T t) {
+        bh.consume(t);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        error.compareAndSet(null, t);
         latch.countDown();
     }
 
     @Override
-    public void onNext(T t) {
-        bh.consume(t);
+    public void onComplete() {
+        latch.countDown();
     }
 
 }
\ No newline at end of file
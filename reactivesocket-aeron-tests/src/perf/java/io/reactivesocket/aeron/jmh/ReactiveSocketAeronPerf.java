@@ -0,0 +1,224 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.jmh;
+
+import io.reactivesocket.ConnectionSetupPayload;
+import io.reactivesocket.Frame;
+import io.reactivesocket.Payload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.RequestHandler;
+import io.reactivesocket.aeron.client.AeronClientDuplexConnection;
+import io.reactivesocket.aeron.client.AeronClientDuplexConnectionFactory;
+import io.reactivesocket.aeron.server.ReactiveSocketAeronServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Publisher;
+import rx.Observable;
+import rx.RxReactiveStreams;
+import uk.co.real_logic.aeron.driver.MediaDriver;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures requests end to end, between a client and ReactiveSocketAeronServers in the same process, over an
+ * embedded media driver. Each operation sends a batch of concurrency requests, spread over the connections, and
+ * waits for all of them to finish, so the throughput in requests is the score times the concurrency. The sample
+ * time of a batch of one is the round trip latency.
+ * <p>
+ * Aeron shares a publication between everything in a process that sends to the same channel, so each connection
+ * is to a server of its own, listening on consecutive ports from {@link #BASE_PORT}. The client and server
+ * transports are singletons, so every set of parameters needs a JVM of its own, which is what JMH does unless
+ * it is run with -f 0.
+ * <p>
+ * Run with ./gradlew :reactivesocket-aeron-tests:jmh -Pjmh=ReactiveSocketAeronPerf
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReactiveSocketAeronPerf {
+    public static final int BASE_PORT = 39890;
+
+    private static final long TIMEOUT_NS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * The length of the request and response data. 4096 is the default AERON_MTU_SIZE, so it and anything larger
+     * are sent with offer rather than tryClaim, and are fragmented by Aeron.
+     */
+    @Param({"32", "1024", "4096", "16384"})
+    public int payloadSize;
+
+    @Param({"1", "4"})
+    public int connections;
+
+    @Param({"1", "16"})
+    public int concurrency;
+
+    @Param({"100"})
+    public int streamLength;
+
+    private MediaDriver mediaDriver;
+    private ReactiveSocketAeronServer[] servers;
+    private ReactiveSocket[] sockets;
+    private byte[] data;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong firedAndForgotten = new AtomicLong();
+    private final AtomicLong fired = new AtomicLong();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final MediaDriver.Context context = new MediaDriver.Context();
+        context.dirsDeleteOnStart(true);
+        mediaDriver = MediaDriver.launch(context);
+
+        data = new byte[payloadSize];
+        final AeronClientDuplexConnectionFactory cf = AeronClientDuplexConnectionFactory.getInstance();
+
+        servers = new ReactiveSocketAeronServer[connections];
+        sockets = new ReactiveSocket[connections];
+        for (int i = 0; i < connections; i++) {
+            servers[i] = ReactiveSocketAeronServer.create(BASE_PORT + i, setupPayload ->
+                new RequestHandler.Builder()
+                    .withRequestResponse(payload -> RxReactiveStreams.toPublisher(Observable.just(newPayload())))
+                    .withRequestStream(payload ->
+                        RxReactiveStreams.toPublisher(Observable.range(0, streamLength).map(n -> newPayload())))
+                    .withFireAndForget(payload -> {
+                        firedAndForgotten.incrementAndGet();
+                        return RxReactiveStreams.toPublisher(Observable.<Void>empty());
+                    })
+                    .build());
+
+            final InetSocketAddress address = new InetSocketAddress("localhost", BASE_PORT + i);
+            cf.addSocketAddressToHandleResponses(address);
+            final AeronClientDuplexConnection connection = RxReactiveStreams
+                .toObservable(cf.createAeronClientDuplexConnection(address))
+                .toBlocking()
+                .single();
+
+            sockets[i] = ReactiveSocket.fromClientConnection(connection, ConnectionSetupPayload.create("UTF-8", "UTF-8", ConnectionSetupPayload.NO_FLAGS));
+            sockets[i].startAndWait();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (ReactiveSocket socket : sockets) {
+            socket.close();
+        }
+
+        for (ReactiveSocketAeronServer server : servers) {
+            server.close();
+        }
+
+        mediaDriver.close();
+    }
+
+    @Benchmark
+    public void requestResponse(Blackhole bh) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            nextSocket().requestResponse(newPayload()).subscribe(new LatchedSubscriber<>(latch, bh, error));
+        }
+
+        await(latch);
+    }
+
+    @Benchmark
+    public void requestStream(Blackhole bh) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            nextSocket().requestStream(newPayload()).subscribe(new LatchedSubscriber<>(latch, bh, error));
+        }
+
+        await(latch);
+    }
+
+    /**
+     * Fires a batch and waits until the servers have received all of it, rather than until it has been sent.
+     */
+    @Benchmark
+    public void fireAndForget(Blackhole bh) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            final Publisher<Void> publisher = nextSocket().fireAndForget(newPayload());
+            publisher.subscribe(new LatchedSubscriber<>(latch, bh, error));
+        }
+
+        await(latch);
+
+        final long expected = fired.addAndGet(concurrency);
+        final long start = System.nanoTime();
+        while (firedAndForgotten.get() < expected) {
+            if (System.nanoTime() - start > TIMEOUT_NS) {
+                throw new IllegalStateException("Servers received " + firedAndForgotten.get() + " of " + expected + " fire and forget requests");
+            }
+            LockSupport.parkNanos(1);
+        }
+    }
+
+    private ReactiveSocket nextSocket() {
+        return sockets[(next.getAndIncrement() & Integer.MAX_VALUE) % sockets.length];
+    }
+
+    private Payload newPayload() {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        return new Payload() {
+            @Override
+            public ByteBuffer getData() {
+                return buffer;
+            }
+
+            @Override
+            public ByteBuffer getMetadata() {
+                return Frame.NULL_BYTEBUFFER;
+            }
+        };
+    }
+
+    private void await(CountDownLatch latch) throws InterruptedException {
+        if (!latch.await(TIMEOUT_NS, TimeUnit.NANOSECONDS)) {
+            throw new IllegalStateException(latch.getCount() + " of " + concurrency + " requests didn't finish");
+        }
+
+        final Throwable t = error.get();
+        if (t != null) {
+            throw new IllegalStateException("Request failed", t);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.jmh;
+
+import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
+import io.reactivesocket.aeron.TestUtil;
+import io.reactivesocket.aeron.internal.MessageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.co.real_logic.aeron.FragmentAssembler;
+import uk.co.real_logic.aeron.logbuffer.FrameDescriptor;
+import uk.co.real_logic.aeron.logbuffer.Header;
+import uk.co.real_logic.aeron.protocol.DataHeaderFlyweight;
+import uk.co.real_logic.agrona.BitUtil;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parts of the transport codec that don't need a media driver: writing the transport header and
+ * frame into a claimed buffer, reassembling a message from fragments with a {@link FragmentAssembler}, and the
+ * copies the client and server fragment handlers make to hand a received frame to ReactiveSocket.
+ * <p>
+ * Run with ./gradlew :reactivesocket-aeron-tests:jmh -Pjmh='TransportCodecPerf -prof gc' to see the allocation
+ * rate, or run the main method, which adds the GC profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransportCodecPerf {
+    @Param({"32", "1024", "4072", "16384"})
+    public int messageLength;
+
+    private UnsafeBuffer claimBuffer;
+    private UnsafeBuffer frameBuffer;
+    private int frameLength;
+    private UnsafeBuffer messageBuffer;
+
+    private final UnsafeBuffer serverBuffer = new UnsafeBuffer(ByteBuffer.allocate(0));
+
+    @Setup
+    public void setup() {
+        final byte[] data = new byte[messageLength];
+        Arrays.fill(data, (byte) 'x');
+        final Frame frame = Frame.Response.from(1, FrameType.NEXT, TestUtil.utf8EncodedPayload(new String(data), null));
+        frameLength = frame.length();
+        frameBuffer = new UnsafeBuffer(ByteBuffer.allocate(frameLength));
+        TestUtil.copyFrame(frameBuffer, 0, frame);
+
+        claimBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(BitUtil.SIZE_OF_INT + frameLength));
+
+        messageBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(BitUtil.SIZE_OF_INT + frameLength));
+        messageBuffer.putShort(0, (short) 0);
+        messageBuffer.putShort(BitUtil.SIZE_OF_SHORT, (short) MessageType.FRAME.getEncodedType());
+        messageBuffer.putBytes(BitUtil.SIZE_OF_INT, frameBuffer, 0, frameLength);
+    }
+
+    /**
+     * Writes the transport header and the frame, like the send paths do into a claimed buffer.
+     */
+    @Benchmark
+    public UnsafeBuffer encode() {
+        claimBuffer.putShort(0, (short) 0);
+        claimBuffer.putShort(BitUtil.SIZE_OF_SHORT, (short) MessageType.FRAME.getEncodedType());
+        claimBuffer.putBytes(BitUtil.SIZE_OF_INT, frameBuffer, 0, frameLength);
+        return claimBuffer;
+    }
+
+    @Benchmark
+    public void reassemble(Fragments fragments) {
+        final int[] offsets = fragments.offsets;
+        for (int i = 0; i < fragments.count; i++) {
+            fragments.dataHeader.flags(fragments.flags[i]);
+            fragments.assembler.onFragment(messageBuffer, offsets[i], offsets[i + 1] - offsets[i], fragments.header);
+        }
+    }
+
+    /**
+     * The copy the client fragment handler makes of a received frame.
+     */
+    @Benchmark
+    public Frame clientFrameFrom() {
+        final int length = messageBuffer.capacity() - BitUtil.SIZE_OF_INT;
+        final ByteBuffer bytes = ByteBuffer.allocate(length);
+        messageBuffer.getBytes(BitUtil.SIZE_OF_INT, bytes, length);
+        return Frame.from(bytes);
+    }
+
+    /**
+     * The copy the server fragment handler makes of a received frame.
+     */
+    @Benchmark
+    public Frame serverFrameFrom() {
+        final int length = messageBuffer.capacity();
+        serverBuffer.wrap(ByteBuffer.allocate(length));
+        messageBuffer.getBytes(0, serverBuffer, 0, length);
+        return Frame.from(serverBuffer, BitUtil.SIZE_OF_INT, length - BitUtil.SIZE_OF_INT);
+    }
+
+    /**
+     * A message split into fragments, like Aeron splits messages longer than the MTU, for a FragmentAssembler to
+     * reassemble.
+     */
+    @State(Scope.Thread)
+    public static class Fragments {
+        @Param({"1", "2", "4", "16"})
+        public int count;
+
+        FragmentAssembler assembler;
+        Header header;
+        DataHeaderFlyweight dataHeader;
+        int[] offsets;
+        short[] flags;
+
+        @Setup
+        public void setup(TransportCodecPerf codec, Blackhole bh) {
+            final UnsafeBuffer headerBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(DataHeaderFlyweight.HEADER_LENGTH));
+            dataHeader = new DataHeaderFlyweight();
+            dataHeader.wrap(headerBuffer);
+            dataHeader.sessionId(1);
+            header = new Header(0, 0);
+            header.buffer(headerBuffer);
+            header.offset(0);
+
+            final int length = codec.messageBuffer.capacity();
+            offsets = new int[count + 1];
+            flags = new short[count];
+            for (int i = 0; i <= count; i++) {
+                offsets[i] = (int) ((long) length * i / count);
+            }
+            for (int i = 0; i < count; i++) {
+                int f = 0;
+                if (i == 0) {
+                    f |= FrameDescriptor.BEGIN_FRAG_FLAG & 0xFF;
+                }
+                if (i == count - 1) {
+                    f |= FrameDescriptor.END_FRAG_FLAG & 0xFF;
+                }
+                flags[i] = (short) f;
+            }
+
+            assembler = new FragmentAssembler((buffer, offset, len, h) -> bh.consume(len));
+        }
+    }
+
+    public static void main(String... args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(TransportCodecPerf.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.co.real_logic.aeron;
+
+import uk.co.real_logic.aeron.logbuffer.BlockHandler;
+import uk.co.real_logic.aeron.logbuffer.FileBlockHandler;
+import uk.co.real_logic.aeron.logbuffer.FragmentHandler;
+import uk.co.real_logic.aeron.logbuffer.FrameDescriptor;
+import uk.co.real_logic.aeron.logbuffer.Header;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stand-in for a subscription that doesn't need a media driver. Each poll delivers the next number of fragments
+ * in a script, which is repeated, so a benchmark can control how many fragments every duty cycle reads. The
+ * fragments are unfragmented messages of a fixed length, and are all delivered from the same buffer.
+ * <p>
+ * It is in Aeron's package because the Subscription constructor is package private.
+ */
+public class ScriptedSubscription extends Subscription {
+    private static final Header HEADER = new Header() {
+        @Override
+        public byte flags() {
+            return FrameDescriptor.UNFRAGMENTED;
+        }
+    };
+
+    private final UnsafeBuffer buffer;
+    private final int[] script;
+    private int next;
+
+    /**
+     * @param messageLength the length of every fragment delivered
+     * @param script        the number of fragments delivered by each poll, in turn
+     */
+    public ScriptedSubscription(int messageLength, int... script) {
+        super(null, "scripted", 0, 0);
+        this.buffer = new UnsafeBuffer(new byte[messageLength]);
+        this.script = script;
+    }
+
+    @Override
+    public int poll(FragmentHandler fragmentHandler, int fragmentLimit) {
+        final int fragments = Math.min(fragmentLimit, script[next]);
+        next = next + 1 == script.length ? 0 : next + 1;
+
+        for (int i = 0; i < fragments; i++) {
+            fragmentHandler.onFragment(buffer, 0, buffer.capacity(), HEADER);
+        }
+
+        return fragments;
+    }
+
+    @Override
+    public long blockPoll(BlockHandler blockHandler, int blockLengthLimit) {
+        return 0;
+    }
+
+    @Override
+    public long filePoll(FileBlockHandler fileBlockHandler, int blockLengthLimit) {
+        return 0;
+    }
+
+    @Override
+    public Image getImage(int sessionId) {
+        return null;
+    }
+
+    @Override
+    public List<Image> images() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,161 @@
+package io.reactivesocket.aeron.client;
+
+import io.reactivesocket.Payload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.TestUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReactiveSocketLoadBalancerTest {
+    private ReactiveSocketLoadBalancer loadBalancer;
+
+    @After
+    public void tearDown() {
+        if (loadBalancer != null) {
+            loadBalancer.close();
+        }
+    }
+
+    @Test
+    public void testPrefersSocketWithLowerLatency() {
+        ReactiveSocket fast = mock(ReactiveSocket.class);
+        ReactiveSocket slow = mock(ReactiveSocket.class);
+        loadBalancer = ReactiveSocketLoadBalancer.create("latency", Arrays.asList(fast, slow));
+
+        long now = System.nanoTime();
+        sample(loadBalancer.sockets[0], TimeUnit.MILLISECONDS.toNanos(1), now);
+        sample(loadBalancer.sockets[1], TimeUnit.MILLISECONDS.toNanos(100), now);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(fast, loadBalancer.select().getSocket());
+        }
+    }
+
+    @Test
+    public void testPrefersSocketWithFewerOutstandingRequests() {
+        ReactiveSocket busy = mock(ReactiveSocket.class);
+        ReactiveSocket idle = mock(ReactiveSocket.class);
+        loadBalancer = ReactiveSocketLoadBalancer.create("outstanding", Arrays.asList(busy, idle));
+
+        long now = System.nanoTime();
+        sample(loadBalancer.sockets[0], TimeUnit.MILLISECONDS.toNanos(1), now);
+        sample(loadBalancer.sockets[1], TimeUnit.MILLISECONDS.toNanos(1), now);
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.sockets[0].onStart(now);
+        }
+
+        Assert.assertSame(idle, loadBalancer.select().getSocket());
+    }
+
+    @Test
+    public void testRemovedSocketIsNoLongerSelected() {
+        ReactiveSocket first = mock(ReactiveSocket.class);
+        ReactiveSocket second = mock(ReactiveSocket.class);
+        loadBalancer = ReactiveSocketLoadBalancer.create("remove", Arrays.asList(first, second));
+
+        Assert.assertTrue(loadBalancer.removeSocket(first));
+        Assert.assertFalse(loadBalancer.removeSocket(first));
+        Assert.assertEquals(1, loadBalancer.getSize());
+        Assert.assertSame(second, loadBalancer.select().getSocket());
+
+        Assert.assertTrue(loadBalancer.removeSocket(second));
+        Assert.assertNull(loadBalancer.select());
+    }
+
+    @Test
+    public void testRemovedSocketClosesOnceActiveRequestsEnd() throws Exception {
+        ReactiveSocket first = mock(ReactiveSocket.class);
+        ReactiveSocket second = mock(ReactiveSocket.class);
+        loadBalancer = ReactiveSocketLoadBalancer.create("retire", Arrays.asList(first, second));
+        TrackedSocket tracked = loadBalancer.sockets[0];
+
+        long now = System.nanoTime();
+        Assert.assertTrue(tracked.onStart(now));
+        Assert.assertTrue(loadBalancer.removeSocket(first));
+        verify(first, never()).close();
+
+        tracked.onEnd(now);
+        verify(first).close();
+        Assert.assertFalse(tracked.onStart(now));
+    }
+
+    @Test
+    public void testLatencyTakesPeaksAndDecays() {
+        TrackedSocket socket = new TrackedSocket(mock(ReactiveSocket.class), TimeUnit.SECONDS.toNanos(1));
+        long now = System.nanoTime();
+
+        sample(socket, 1000, now);
+        Assert.assertEquals(1000, socket.getLatencyNs(now), 0.1);
+
+        sample(socket, 5000, now);
+        Assert.assertEquals(5000, socket.getLatencyNs(now), 0.1);
+
+        double decayed = socket.getLatencyNs(now + TimeUnit.SECONDS.toNanos(1));
+        Assert.assertEquals(5000 / Math.E, decayed, 1);
+    }
+
+    @Test
+    public void testUnansweredSocketIsPenalised() {
+        TrackedSocket socket = new TrackedSocket(mock(ReactiveSocket.class), TimeUnit.SECONDS.toNanos(1));
+        long now = System.nanoTime();
+
+        Assert.assertEquals(0, socket.getLoad(now), 0);
+        socket.onStart(now);
+        Assert.assertTrue(socket.getLoad(now) >= TrackedSocket.PENALTY);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOpenStreamDoesNotStarveItsSocket() {
+        List<Subscriber<? super Payload>> streams = new ArrayList<>();
+        Publisher<Payload> stream = s -> {
+            streams.add(s);
+            s.onSubscribe(mock(Subscription.class));
+        };
+        ReactiveSocket first = mock(ReactiveSocket.class);
+        ReactiveSocket second = mock(ReactiveSocket.class);
+        when(first.requestStream(any(Payload.class))).thenReturn(stream);
+        when(second.requestStream(any(Payload.class))).thenReturn(stream);
+        loadBalancer = ReactiveSocketLoadBalancer.create("stream", Arrays.asList(first, second));
+
+        loadBalancer.requestStream(TestUtil.utf8EncodedPayload("stream", null)).subscribe(mock(Subscriber.class));
+        TrackedSocket streaming = loadBalancer.sockets[0].getOutstanding() == 1 ? loadBalancer.sockets[0] : loadBalancer.sockets[1];
+        TrackedSocket other = streaming == loadBalancer.sockets[0] ? loadBalancer.sockets[1] : loadBalancer.sockets[0];
+
+        streams.get(0).onNext(TestUtil.utf8EncodedPayload("first element", null));
+        Assert.assertEquals(0, streaming.getOutstanding());
+        Assert.assertEquals(1, streaming.getActive());
+        Assert.assertEquals(0, loadBalancer.getOutstanding());
+
+        // the stream stays open, and the other socket is slow, so new requests should go to the streaming socket
+        sample(other, TimeUnit.MILLISECONDS.toNanos(100), System.nanoTime());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(streaming, loadBalancer.select());
+        }
+
+        streams.get(0).onComplete();
+        Assert.assertEquals(0, streaming.getActive());
+        Assert.assertEquals(1, loadBalancer.getLatencyHistogram().getTotalCount());
+    }
+
+    private static void sample(TrackedSocket socket, long latencyNs, long now) {
+        socket.onStart(now);
+        socket.onResponse(latencyNs, now);
+        socket.onEnd(now);
+    }
+}
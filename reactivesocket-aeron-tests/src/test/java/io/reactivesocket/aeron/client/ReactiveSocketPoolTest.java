@@ -0,0 +1,163 @@
+package io.reactivesocket.aeron.client;
+
+import io.reactivesocket.Payload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.aeron.TestUtil;
+import io.reactivesocket.aeron.internal.Constants;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReactiveSocketPoolTest {
+    private static final Subscription NO_OP = new Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+    };
+
+    private final List<Subscriber<? super Payload>> requests = new ArrayList<>();
+    private ReactiveSocketPool pool;
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testRoutesToSocketWithFewestOutstandingRequests() {
+        pool = ReactiveSocketPool.create("least-outstanding", this::newSocket, Runnable::run, 2, 2);
+        Assert.assertEquals(2, pool.getSize());
+
+        RecordingSubscriber first = request();
+        request();
+        Assert.assertArrayEquals(new int[] { 1, 1 }, pool.getOutstandingPerSocket());
+
+        request();
+        request();
+        Assert.assertArrayEquals(new int[] { 2, 2 }, pool.getOutstandingPerSocket());
+
+        complete(0);
+        Assert.assertTrue(first.completed);
+        Assert.assertEquals(3, pool.getOutstanding());
+
+        request();
+        Assert.assertArrayEquals(new int[] { 2, 2 }, pool.getOutstandingPerSocket());
+        Assert.assertEquals(1, pool.getLatencyHistogram().getTotalCount());
+    }
+
+    @Test
+    public void testGrowsWhenSocketsAreBusy() {
+        pool = ReactiveSocketPool.create("grow", this::newSocket, Runnable::run, 1, 2);
+        for (int i = 0; i < Constants.CLIENT_POOL_GROW_OUTSTANDING; i++) {
+            request();
+        }
+        Assert.assertEquals(1, pool.getSize());
+
+        request();
+        Assert.assertEquals(2, pool.getSize());
+
+        request();
+        Assert.assertArrayEquals(new int[] { Constants.CLIENT_POOL_GROW_OUTSTANDING + 1, 1 }, pool.getOutstandingPerSocket());
+    }
+
+    @Test
+    public void testGrowsOnExecutorWithoutExceedingMaxSize() {
+        List<Runnable> tasks = new ArrayList<>();
+        pool = ReactiveSocketPool.create("grow-async", this::newSocket, tasks::add, 1, 2);
+        Assert.assertEquals(0, pool.getSize());
+        Assert.assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        Assert.assertEquals(1, pool.getSize());
+
+        for (int i = 0; i < Constants.CLIENT_POOL_GROW_OUTSTANDING * 3; i++) {
+            request();
+        }
+        Assert.assertEquals(1, pool.getSize());
+        Assert.assertEquals(1, tasks.size());
+
+        tasks.remove(0).run();
+        Assert.assertEquals(2, pool.getSize());
+        request();
+        Assert.assertTrue(tasks.isEmpty());
+    }
+
+    @Test
+    public void testCancelledRequestIsNoLongerOutstanding() {
+        pool = ReactiveSocketPool.create("cancel", this::newSocket, Runnable::run, 1, 1);
+        RecordingSubscriber subscriber = request();
+        Assert.assertEquals(1, pool.getOutstanding());
+
+        subscriber.subscription.cancel();
+        subscriber.subscription.cancel();
+        Assert.assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    public void testFailsRequestsWhenPoolHasNoSockets() {
+        pool = ReactiveSocketPool.create("empty", () -> s -> s.onError(new RuntimeException()), Runnable::run, 1, 1);
+        RecordingSubscriber subscriber = request();
+        Assert.assertTrue(subscriber.error instanceof IllegalStateException);
+    }
+
+    private Publisher<ReactiveSocket> newSocket() {
+        final ReactiveSocket socket = mock(ReactiveSocket.class);
+        when(socket.requestResponse(any(Payload.class))).thenReturn(s -> {
+            requests.add(s);
+            s.onSubscribe(NO_OP);
+        });
+
+        return s -> {
+            s.onSubscribe(NO_OP);
+            s.onNext(socket);
+            s.onComplete();
+        };
+    }
+
+    private RecordingSubscriber request() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        pool.requestResponse(TestUtil.utf8EncodedPayload("request", null)).subscribe(subscriber);
+        return subscriber;
+    }
+
+    private void complete(int request) {
+        requests.get(request).onComplete();
+    }
+
+    private static class RecordingSubscriber implements Subscriber<Payload> {
+        private Subscription subscription;
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(Payload payload) {}
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
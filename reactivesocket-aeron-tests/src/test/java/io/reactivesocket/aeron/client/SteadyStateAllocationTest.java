@@ -0,0 +1,381 @@
+/**
+ * Copyright 2015 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.reactivesocket.aeron.client;
+
+import io.reactivesocket.ConnectionSetupPayload;
+import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
+import io.reactivesocket.Payload;
+import io.reactivesocket.ReactiveSocket;
+import io.reactivesocket.RequestHandler;
+import io.reactivesocket.aeron.server.ReactiveSocketAeronServer;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rx.RxReactiveStreams;
+import uk.co.real_logic.aeron.driver.MediaDriver;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Pushes a warm request-response and request-stream workload through a client and server in the same process,
+ * and fails if the client's or server's duty threads allocate more bytes per message than the budget of the path.
+ * The duty threads send, receive and dispatch every frame, so an allocation added to any of those paths shows up
+ * here. Only the duty threads are measured; the test thread that makes the requests, and the media driver, are not.
+ * <p>
+ * Sending, receiving and dispatching a frame doesn't allocate in the transport, apart from what the ReactiveSocket
+ * needs for every frame:
+ * <ul>
+ *     <li>Receiving, on both sides: a heap copy of the frame, because the Frame handed to the ReactiveSocket may be
+ *     kept after the fragment handler returns, and the Frame that wraps it.</li>
+ *     <li>Sending a response, on the server: the Frame the ReactiveSocket encodes the payload into.</li>
+ * </ul>
+ * and what starting a request costs: the handler's publisher and subscription, the ReactiveSocket's subscriber for
+ * the stream, and the server's queue for the stream's frames.
+ * <p>
+ * The request-stream budgets aren't fixed numbers, because the size of a Frame depends on the ReactiveSocket
+ * version and the JVM. Before the workload runs, the test measures how many bytes encoding a response, and copying
+ * and wrapping a received frame, allocate on its own thread, and each budget is that cost plus a quarter, which
+ * covers starting a request once every {@link #STREAM_LENGTH} elements. The cost of starting a request is mostly
+ * in the ReactiveSocket, so the request-response test only runs when its budgets are given.
+ * <p>
+ * Every budget can be set with the system property named by its test, or set to 0 to find the current allocation
+ * of a path from the failure. The allocation of every path is printed when the reactivesocket.aeron.test.printAllocation
+ * property is true.
+ */
+public class SteadyStateAllocationTest {
+    private static final int PORT = 39690;
+    private static final int IN_FLIGHT = 64;
+    private static final int STREAM_LENGTH = 100;
+    private static final int WARMUP_MESSAGES = 50_000;
+    private static final int MEASURED_MESSAGES = 100_000;
+    private static final int CALIBRATION_CALLS = 10_000;
+
+    private static final String REQUEST_RESPONSE_CLIENT_BUDGET = "reactivesocket.aeron.test.requestResponseClientBudget";
+    private static final String REQUEST_RESPONSE_SERVER_BUDGET = "reactivesocket.aeron.test.requestResponseServerBudget";
+
+    private static final boolean PRINT_ALLOCATION = Boolean.getBoolean("reactivesocket.aeron.test.printAllocation");
+
+    private static final String CLIENT_THREAD = "reactive-socket-aeron-client";
+    private static final String SERVER_THREAD = "reactive-socket-aeron-server-";
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+    private static MediaDriver mediaDriver;
+    private static ReactiveSocketAeronServer server;
+    private static ReactiveSocket reactiveSocket;
+    private static Payload payload;
+
+    /**
+     * Bytes allocated to copy and wrap a received response frame, and to encode one.
+     */
+    private static long receivedFrameBytes;
+    private static long encodedFrameBytes;
+
+    @BeforeClass
+    public static void init() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final MediaDriver.Context context = new MediaDriver.Context();
+        context.dirsDeleteOnStart(true);
+        mediaDriver = MediaDriver.launch(context);
+
+        payload = payload(new byte[64]);
+        calibrate();
+        server = ReactiveSocketAeronServer.create(PORT, setupPayload ->
+            new RequestHandler.Builder()
+                .withRequestResponse(request -> new RepeatingPublisher(payload, 1))
+                .withRequestStream(request -> new RepeatingPublisher(payload, STREAM_LENGTH))
+                .build());
+
+        final InetSocketAddress address = new InetSocketAddress("localhost", PORT);
+        final AeronClientDuplexConnectionFactory cf = AeronClientDuplexConnectionFactory.getInstance();
+        cf.addSocketAddressToHandleResponses(address);
+        final AeronClientDuplexConnection connection = RxReactiveStreams
+            .toObservable(cf.createAeronClientDuplexConnection(address))
+            .toBlocking()
+            .single();
+
+        reactiveSocket = ReactiveSocket.fromClientConnection(connection, ConnectionSetupPayload.create("UTF-8", "UTF-8", ConnectionSetupPayload.NO_FLAGS));
+        reactiveSocket.startAndWait();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        if (reactiveSocket != null) {
+            reactiveSocket.close();
+        }
+
+        if (server != null) {
+            server.close();
+        }
+
+        if (mediaDriver != null) {
+            mediaDriver.close();
+        }
+    }
+
+    @Test(timeout = 120_000)
+    public void testRequestResponseAllocation() throws Exception {
+        Assume.assumeTrue(System.getProperty(REQUEST_RESPONSE_CLIENT_BUDGET) != null
+            && System.getProperty(REQUEST_RESPONSE_SERVER_BUDGET) != null);
+
+        final long[] bytesPerMessage = measure(1, () -> reactiveSocket.requestResponse(payload));
+        assertWithinBudget("request-response", "client", bytesPerMessage[0], Long.getLong(REQUEST_RESPONSE_CLIENT_BUDGET));
+        assertWithinBudget("request-response", "server", bytesPerMessage[1], Long.getLong(REQUEST_RESPONSE_SERVER_BUDGET));
+    }
+
+    @Test(timeout = 120_000)
+    public void testRequestStreamAllocation() throws Exception {
+        final long[] bytesPerMessage = measure(STREAM_LENGTH, () -> reactiveSocket.requestStream(payload));
+        assertWithinBudget("request-stream", "client", bytesPerMessage[0],
+            Long.getLong("reactivesocket.aeron.test.requestStreamClientBudget", receivedFrameBytes * 5 / 4));
+        assertWithinBudget("request-stream", "server", bytesPerMessage[1],
+            Long.getLong("reactivesocket.aeron.test.requestStreamServerBudget", encodedFrameBytes * 5 / 4));
+    }
+
+    /*
+     * Measures the per frame allocation the ReactiveSocket needs, the same way the client receives a response and
+     * the server encodes one.
+     */
+    private static void calibrate() {
+        final Frame response = Frame.Response.from(1, FrameType.NEXT, payload);
+        final byte[] encoded = new byte[response.length()];
+        final ByteBuffer responseBuffer = response.getByteBuffer().duplicate();
+        responseBuffer.position(response.offset());
+        responseBuffer.get(encoded);
+
+        encodedFrameBytes = bytesPerCall(() -> Frame.Response.from(1, FrameType.NEXT, payload));
+        receivedFrameBytes = bytesPerCall(() -> {
+            final ByteBuffer copy = ByteBuffer.allocate(encoded.length);
+            copy.put(encoded);
+            copy.clear();
+            return Frame.from(copy);
+        });
+
+        if (PRINT_ALLOCATION) {
+            System.out.println("received frame " + receivedFrameBytes + " bytes, encoded frame " + encodedFrameBytes + " bytes");
+        }
+    }
+
+    /**
+     * @return the bytes this thread allocates per call, once warm. What each call returns is kept, so the JIT can't
+     * optimise the allocation away.
+     */
+    private static long bytesPerCall(Supplier<Object> allocation) {
+        final Object[] kept = new Object[CALIBRATION_CALLS];
+        final long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < CALIBRATION_CALLS; i++) {
+            kept[i] = allocation.get();
+        }
+
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < CALIBRATION_CALLS; i++) {
+            kept[i] = allocation.get();
+        }
+
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / CALIBRATION_CALLS;
+    }
+
+    private static void assertWithinBudget(String path, String side, long bytesPerMessage, long budget) {
+        if (PRINT_ALLOCATION) {
+            System.out.println(path + " " + side + " duty threads allocated " + bytesPerMessage + " bytes per message, budget " + budget);
+        }
+        Assert.assertTrue(path + " " + side + " duty threads allocated " + bytesPerMessage + " bytes per message, more than the budget of " + budget,
+            bytesPerMessage <= budget);
+    }
+
+    /**
+     * Warms the path up and then measures it.
+     *
+     * @param messagesPerRequest the responses each request gets
+     * @return the bytes allocated per message by the client's and by the server's duty threads
+     */
+    private static long[] measure(int messagesPerRequest, RequestMaker requestMaker) throws Exception {
+        run(WARMUP_MESSAGES / messagesPerRequest, requestMaker);
+
+        final long[] clientThreads = dutyThreads(CLIENT_THREAD);
+        final long[] serverThreads = dutyThreads(SERVER_THREAD);
+        Assert.assertTrue("No client duty thread", clientThreads.length > 0);
+        Assert.assertTrue("No server duty threads", serverThreads.length > 0);
+
+        final long clientBefore = allocatedBytes(clientThreads);
+        final long serverBefore = allocatedBytes(serverThreads);
+        run(MEASURED_MESSAGES / messagesPerRequest, requestMaker);
+        final long clientAllocated = allocatedBytes(clientThreads) - clientBefore;
+        final long serverAllocated = allocatedBytes(serverThreads) - serverBefore;
+
+        return new long[] { clientAllocated / MEASURED_MESSAGES, serverAllocated / MEASURED_MESSAGES };
+    }
+
+    /**
+     * Makes the requests with up to {@link #IN_FLIGHT} outstanding, and returns when they have all completed.
+     */
+    private static void run(int requests, RequestMaker requestMaker) throws Exception {
+        final Semaphore inFlight = new Semaphore(IN_FLIGHT);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int i = 0; i < requests; i++) {
+            Assert.assertTrue("Timed out waiting for responses", inFlight.tryAcquire(10, TimeUnit.SECONDS));
+            requestMaker.make().subscribe(new ReleasingSubscriber(inFlight, error));
+        }
+
+        Assert.assertTrue("Timed out waiting for responses", inFlight.tryAcquire(IN_FLIGHT, 10, TimeUnit.SECONDS));
+        if (error.get() != null) {
+            throw new AssertionError("Request failed", error.get());
+        }
+    }
+
+    private static long[] dutyThreads(String namePrefix) {
+        final List<Long> ids = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(namePrefix)) {
+                ids.add(thread.getId());
+            }
+        }
+
+        final long[] threadIds = new long[ids.size()];
+        for (int i = 0; i < threadIds.length; i++) {
+            threadIds[i] = ids.get(i);
+        }
+
+        return threadIds;
+    }
+
+    private static long allocatedBytes(long[] threadIds) {
+        long total = 0;
+        for (long allocated : threadMXBean.getThreadAllocatedBytes(threadIds)) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+
+        return total;
+    }
+
+    private static Payload payload(byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        return new Payload() {
+            @Override
+            public ByteBuffer getData() {
+                return buffer;
+            }
+
+            @Override
+            public ByteBuffer getMetadata() {
+                return Frame.NULL_BYTEBUFFER;
+            }
+        };
+    }
+
+    interface RequestMaker {
+        Publisher<Payload> make();
+    }
+
+    static class ReleasingSubscriber implements Subscriber<Payload> {
+        private final Semaphore inFlight;
+        private final AtomicReference<Throwable> error;
+
+        ReleasingSubscriber(Semaphore inFlight, AtomicReference<Throwable> error) {
+            this.inFlight = inFlight;
+            this.error = error;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(Payload payload) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error.compareAndSet(null, t);
+            inFlight.release();
+        }
+
+        @Override
+        public void onComplete() {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Emits the same payload a number of times as it is requested, so the server's handler only allocates its
+     * subscription, rather than the operators Rx would.
+     */
+    static class RepeatingPublisher implements Publisher<Payload> {
+        private final Payload payload;
+        private final int count;
+
+        RepeatingPublisher(Payload payload, int count) {
+            this.payload = payload;
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super Payload> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private long requested;
+                private int emitted;
+                private boolean emitting;
+                private boolean cancelled;
+
+                @Override
+                public void request(long n) {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    if (emitting) {
+                        return;
+                    }
+
+                    emitting = true;
+                    while (!cancelled && requested > 0 && emitted < count) {
+                        requested--;
+                        emitted++;
+                        subscriber.onNext(payload);
+                    }
+                    emitting = false;
+
+                    if (!cancelled && emitted == count) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package io.reactivesocket.aeron.server;
+
+import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
+import io.reactivesocket.internal.Responder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AeronLeaseGovernorTest {
+    private final AeronLeaseGovernor governor = new AeronLeaseGovernor(null, 1000, 100);
+
+    @After
+    public void tearDown() {
+        governor.close();
+    }
+
+    @Test
+    public void testSplitsCapacityBetweenSessions() {
+        Responder first = mock(Responder.class);
+        Responder second = mock(Responder.class);
+        governor.register(first);
+        verify(first).sendLease(1000, 100);
+
+        governor.register(second);
+        verify(second).sendLease(1000, 50);
+
+        Assert.assertEquals(2, governor.issueLeases(false));
+        verify(first).sendLease(1000, 50);
+    }
+
+    @Test
+    public void testRejectsRequestsBeyondLease() {
+        Responder responder = mock(Responder.class);
+        governor.register(responder);
+        governor.issueLeases(true);
+        Assert.assertEquals(50, governor.getCapacity());
+
+        Frame request = frame(FrameType.REQUEST_RESPONSE);
+        for (int i = 0; i < 50; i++) {
+            Assert.assertTrue(governor.accept(responder, request));
+        }
+        Assert.assertFalse(governor.accept(responder, request));
+        Assert.assertTrue(governor.accept(responder, frame(FrameType.CANCEL)));
+
+        governor.issueLeases(false);
+        Assert.assertTrue(governor.accept(responder, request));
+    }
+
+    @Test
+    public void testHalvesCapacityWhenOverloadedAndGrowsBack() {
+        governor.issueLeases(true);
+        governor.issueLeases(true);
+        Assert.assertEquals(25, governor.getCapacity());
+
+        governor.issueLeases(false);
+        Assert.assertEquals(35, governor.getCapacity());
+
+        for (int i = 0; i < 10; i++) {
+            governor.issueLeases(false);
+        }
+        Assert.assertEquals(100, governor.getCapacity());
+    }
+
+    @Test
+    public void testRejectsUnregisteredSessions() {
+        Responder responder = mock(Responder.class);
+        governor.register(responder);
+        governor.unregister(responder);
+        Assert.assertFalse(governor.accept(responder, frame(FrameType.REQUEST_STREAM)));
+        Assert.assertEquals(0, governor.getSessions());
+    }
+
+    @Test
+    public void testTransportLoadSignals() {
+        TransportLoad load = new TransportLoad();
+        load.sample(1000, 1000, 1000, 0, 0, 0, 0);
+        load.sample(2000, 1500, 2000, 0, 0, 0, 0);
+        Assert.assertEquals(0.5, load.getUtilisation(), 0.0001);
+        Assert.assertFalse(load.isOverloaded(0.9, 1000));
+
+        load.sample(3000, 1550, 2900, 100, 0, 0, 0);
+        Assert.assertEquals(0.95, load.getUtilisation(), 0.0001);
+        Assert.assertEquals(0.1, load.getBackPressureRatio(), 0.0001);
+        Assert.assertTrue(load.isOverloaded(0.9, 1000));
+
+        load.sample(4000, 2550, 3900, 100, 600, 0, 0);
+        Assert.assertEquals(0.6, load.getBacklogRatio(), 0.0001);
+        Assert.assertTrue(load.isOverloaded(0.9, 1000));
+
+        load.sample(5000, 3550, 4900, 100, 600, 4000, 2);
+        Assert.assertEquals(2000, load.getHandlerLatencyNs());
+        Assert.assertTrue(load.isOverloaded(0.9, 1000));
+
+        // stats removed with a publication make the sums go down
+        load.sample(6000, 4550, 100, 0, 600, 4000, 2);
+        Assert.assertEquals(0, load.getBackPressureRatio(), 0.0001);
+        Assert.assertFalse(load.isOverloaded(0.9, 1000));
+    }
+
+    @Test
+    public void testCapacityRecoversAfterLoadStops() {
+        TransportLoad load = new TransportLoad();
+        long handlerLatencyNs = 0;
+        long responses = 0;
+        for (int i = 1; i <= 10; i++) {
+            handlerLatencyNs += 100 * 2000;
+            responses += 100;
+            load.sample(i * 1000, i * 500, 0, 0, 0, handlerLatencyNs, responses);
+            governor.issueLeases(load.isOverloaded(0.9, 1000));
+        }
+        Assert.assertEquals(1, governor.getCapacity());
+
+        // nothing is answered once the load stops, which mustn't keep the last busy interval's latency
+        for (int i = 11; i <= 21; i++) {
+            load.sample(i * 1000, i * 1000 - 500, 0, 0, 0, handlerLatencyNs, responses);
+            Assert.assertEquals(0, load.getHandlerLatencyNs());
+            governor.issueLeases(load.isOverloaded(0.9, 1000));
+        }
+        Assert.assertEquals(100, governor.getCapacity());
+    }
+
+    private static Frame frame(FrameType type) {
+        Frame frame = mock(Frame.class);
+        when(frame.getType()).thenReturn(type);
+        return frame;
+    }
+}
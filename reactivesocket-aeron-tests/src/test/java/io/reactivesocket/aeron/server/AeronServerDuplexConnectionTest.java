@@ -0,0 +1,192 @@
+package io.reactivesocket.aeron.server;
+
+import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
+import io.reactivesocket.aeron.internal.AeronUtil;
+import io.reactivesocket.aeron.internal.EventCode;
+import io.reactivesocket.aeron.internal.EventLog;
+import io.reactivesocket.aeron.internal.LatencyMetrics;
+import io.reactivesocket.aeron.internal.MetadataDictionary;
+import io.reactivesocket.rx.Completable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import uk.co.real_logic.aeron.Publication;
+import uk.co.real_logic.aeron.logbuffer.BufferClaim;
+import uk.co.real_logic.aeron.protocol.DataHeaderFlyweight;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AeronServerDuplexConnectionTest {
+    private static final int SESSION_ID = 4711;
+    private static final String ROUTE = "route=/orders/v2/submit";
+
+    private final Publication publication = mock(Publication.class);
+    private final MetadataDictionary clientDictionary = new MetadataDictionary(4096);
+    private final UnsafeBuffer frameBuffer = new UnsafeBuffer(ByteBuffer.allocate(0));
+
+    private AeronServerDuplexConnection connection;
+
+    @Before
+    public void setUp() {
+        when(publication.tryClaim(anyInt(), any(BufferClaim.class))).thenAnswer(invocation -> {
+            final int length = (Integer) invocation.getArguments()[0];
+            final BufferClaim bufferClaim = (BufferClaim) invocation.getArguments()[1];
+            bufferClaim.wrap(new UnsafeBuffer(new byte[256]), 0, DataHeaderFlyweight.HEADER_LENGTH + length);
+            return 1L;
+        });
+
+        connection = new AeronServerDuplexConnection(publication, SESSION_ID);
+    }
+
+    @After
+    public void tearDown() {
+        AeronUtil.removePublicationStats(publication);
+        LatencyMetrics.getInstance().remove(connection.getLatency());
+    }
+
+    @Test
+    public void testDecodesMetadataSentAsId() {
+        Assert.assertTrue(connection.ackEstablishConnection(SESSION_ID, 4096));
+
+        byte[] first = frame("first");
+        Assert.assertEquals(first.length, receive(send(first)));
+        Assert.assertTrue(decoded(first));
+        final byte[] storage = frameBuffer.byteArray();
+
+        byte[] second = frame("second");
+        Assert.assertEquals(second.length, receive(send(second)));
+        Assert.assertTrue(decoded(second));
+        // the frame is decoded into the same buffer rather than a new one
+        Assert.assertSame(storage, frameBuffer.byteArray());
+        Assert.assertFalse(connection.isClosing());
+    }
+
+    @Test
+    public void testDiscardKeepsPublicationAndRemovesLatency() {
+        Assert.assertTrue(LatencyMetrics.getInstance().getConnections().contains(connection.getLatency()));
+
+        connection.discard();
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertFalse(LatencyMetrics.getInstance().getConnections().contains(connection.getLatency()));
+        verify(publication, never()).close();
+    }
+
+    @Test
+    public void testAbortsWhenDictionaryIsOutOfStep() {
+        Assert.assertTrue(connection.ackEstablishConnection(SESSION_ID, 4096));
+
+        // the server never sees the frame that added the metadata to the client's dictionary
+        send(frame("lost"));
+        Assert.assertEquals(-1, receive(send(frame("second"))));
+
+        Assert.assertTrue(connection.isClosing());
+        Assert.assertTrue(desyncRecorded());
+    }
+
+    @Test
+    public void testAbortsWhenNoDictionaryWasNegotiated() {
+        Assert.assertTrue(connection.ackEstablishConnection(SESSION_ID, 0));
+
+        Assert.assertEquals(-1, receive(send(frame("first"))));
+        Assert.assertTrue(connection.isClosing());
+    }
+
+    @Test
+    public void testIsScheduledOnceUntilDrained() {
+        List<AeronServerDuplexConnection> ready = new ArrayList<>();
+        connection.setReadyListener(ready::add);
+        Assert.assertEquals(1, ready.size());
+        connection.drain();
+
+        List<Subscriber<? super Frame>> outputs = new ArrayList<>();
+        connection.addOutput(s -> {
+            outputs.add(s);
+            s.onSubscribe(mock(Subscription.class));
+        }, mock(Completable.class));
+
+        outputs.get(0).onNext(frame(16));
+        outputs.get(0).onNext(frame(16));
+        Assert.assertEquals(2, ready.size());
+
+        // back pressured, so it has to be drained again
+        doReturn(Publication.BACK_PRESSURED).when(publication).tryClaim(anyInt(), any(BufferClaim.class));
+        Assert.assertEquals(0, connection.drain());
+        Assert.assertTrue(connection.needsDrain());
+        Assert.assertTrue(connection.reschedule());
+        outputs.get(0).onComplete();
+        Assert.assertEquals(2, ready.size());
+    }
+
+    /**
+     * Encodes the frame with the client's dictionary, returning the message after its transport header.
+     */
+    private UnsafeBuffer send(byte[] frameBytes) {
+        Frame frame = mock(Frame.class);
+        when(frame.getByteBuffer()).thenReturn(ByteBuffer.wrap(frameBytes));
+        when(frame.length()).thenReturn(frameBytes.length);
+        when(frame.getMetadata()).thenReturn(ByteBuffer.wrap(ROUTE.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertTrue(clientDictionary.prepare(frame));
+
+        UnsafeBuffer message = new UnsafeBuffer(new byte[clientDictionary.encodedLength(frameBytes.length)]);
+        clientDictionary.write(message, 0, frame.getByteBuffer(), 0, frameBytes.length);
+        clientDictionary.commit();
+        return message;
+    }
+
+    private int receive(UnsafeBuffer message) {
+        return connection.decodeMetadataIndexedFrame(message, 0, message.capacity(), frameBuffer);
+    }
+
+    private boolean decoded(byte[] frameBytes) {
+        byte[] decoded = new byte[frameBytes.length];
+        frameBuffer.getBytes(0, decoded);
+        return Arrays.equals(frameBytes, decoded);
+    }
+
+    private static Frame frame(int length) {
+        Frame frame = mock(Frame.class);
+        when(frame.getByteBuffer()).thenReturn(ByteBuffer.allocate(length));
+        when(frame.length()).thenReturn(length);
+        when(frame.getType()).thenReturn(FrameType.NEXT);
+        return frame;
+    }
+
+    private static boolean desyncRecorded() {
+        AtomicBoolean recorded = new AtomicBoolean();
+        EventLog.getInstance().read((timestampNs, code, sessionId, value1, value2) -> {
+            if (code == EventCode.METADATA_DESYNC && sessionId == SESSION_ID) {
+                recorded.set(true);
+            }
+        });
+        return recorded.get();
+    }
+
+    /**
+     * A frame with some header bytes, then the metadata, then the data.
+     */
+    private static byte[] frame(String data) {
+        byte[] metadataBytes = ROUTE.getBytes(StandardCharsets.UTF_8);
+        byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(12 + metadataBytes.length + dataBytes.length);
+        frame.putInt(frame.capacity()).putInt(7).putInt(metadataBytes.length).put(metadataBytes).put(dataBytes);
+        return frame.array();
+    }
+}
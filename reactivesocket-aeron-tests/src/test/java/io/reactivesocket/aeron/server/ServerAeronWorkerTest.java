@@ -0,0 +1,61 @@
+package io.reactivesocket.aeron.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+import uk.co.real_logic.aeron.Image;
+import uk.co.real_logic.aeron.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ServerAeronWorkerTest {
+    private final ServerAeronWorker worker = new ServerAeronWorker(0, 1, Collections.emptyList());
+
+    @Test
+    public void testKeepsPollStatsPerSubscription() {
+        Subscription first = subscription(1);
+        Subscription second = subscription(2);
+        worker.addSubscription(first, (buffer, offset, length, header) -> {});
+        worker.addSubscription(second, (buffer, offset, length, header) -> {});
+
+        worker.addImage(first, image(7));
+        worker.addImage(second, image(7));
+        worker.addImage(second, image(7));
+        Assert.assertEquals(2, worker.getImagePollStats().size());
+
+        worker.removeImage(first, 7);
+        ArrayList<ImagePollStats> stats = new ArrayList<>(worker.getImagePollStats());
+        Assert.assertEquals(1, stats.size());
+        Assert.assertEquals(2, stats.get(0).getStreamId());
+
+        worker.removeImage(second, 7);
+        Assert.assertTrue(worker.getImagePollStats().isEmpty());
+    }
+
+    @Test
+    public void testOnlyPollsImagesItOwns() {
+        ServerAeronWorker other = new ServerAeronWorker(1, 2, Collections.emptyList());
+        Subscription subscription = subscription(1);
+        other.addSubscription(subscription, (buffer, offset, length, header) -> {});
+
+        other.addImage(subscription, image(2));
+        Assert.assertTrue(other.getImagePollStats().isEmpty());
+        other.addImage(subscription, image(3));
+        Assert.assertEquals(1, other.getImagePollStats().size());
+    }
+
+    private static Subscription subscription(int streamId) {
+        Subscription subscription = mock(Subscription.class);
+        when(subscription.streamId()).thenReturn(streamId);
+        return subscription;
+    }
+
+    private static Image image(int sessionId) {
+        Image image = mock(Image.class);
+        when(image.sessionId()).thenReturn(sessionId);
+        return image;
+    }
+}
@@ -0,0 +1,218 @@
+package io.reactivesocket.aeron.server;
+
+import io.reactivesocket.Frame;
+import io.reactivesocket.FrameType;
+import io.reactivesocket.aeron.internal.AeronUtil;
+import io.reactivesocket.aeron.internal.ConnectionLatency;
+import io.reactivesocket.aeron.internal.LatencyMetrics;
+import io.reactivesocket.aeron.internal.ResumeState;
+import io.reactivesocket.rx.Completable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import uk.co.real_logic.aeron.Publication;
+import uk.co.real_logic.aeron.logbuffer.BufferClaim;
+import uk.co.real_logic.aeron.protocol.DataHeaderFlyweight;
+import uk.co.real_logic.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ServerSubscriptionTest {
+    private final Publication publication = mock(Publication.class);
+    private final AeronServerDuplexConnection connection = mock(AeronServerDuplexConnection.class);
+    private final Completable completable = mock(Completable.class);
+    private final Subscription subscription = mock(Subscription.class);
+    private final ConnectionLatency latency = LatencyMetrics.getInstance().newConnection("server subscription test");
+
+    private ServerSubscription serverSubscription;
+
+    @Before
+    public void setUp() {
+        when(connection.getPublication()).thenReturn(publication);
+        when(connection.getResumeState()).thenReturn(new ResumeState());
+        when(connection.getLatency()).thenReturn(latency);
+
+        serverSubscription = new ServerSubscription(connection, completable);
+        serverSubscription.onSubscribe(subscription);
+        verify(subscription).request(32);
+    }
+
+    @After
+    public void tearDown() {
+        AeronUtil.removePublicationStats(publication);
+        LatencyMetrics.getInstance().remove(latency);
+    }
+
+    @Test
+    public void testDrainStopsWhenBackPressured() {
+        backPressure();
+        Frame frame = frame();
+        serverSubscription.onNext(frame);
+
+        Assert.assertEquals(0, serverSubscription.drain());
+        Assert.assertTrue(serverSubscription.hasQueuedFrames());
+        verify(frame, never()).release();
+        verify(subscription, times(1)).request(anyInt());
+
+        accept();
+        Assert.assertEquals(1, serverSubscription.drain());
+        Assert.assertFalse(serverSubscription.hasQueuedFrames());
+        verify(frame).release();
+    }
+
+    @Test
+    public void testRequestsAsManyFramesAsWereSent() {
+        accept();
+        for (int i = 0; i < 3; i++) {
+            serverSubscription.onNext(frame());
+        }
+
+        Assert.assertEquals(3, serverSubscription.drain());
+        verify(subscription).request(3);
+
+        Assert.assertEquals(0, serverSubscription.drain());
+        verify(subscription, times(2)).request(anyInt());
+    }
+
+    @Test
+    public void testCompletesOnceQueueIsEmpty() {
+        backPressure();
+        serverSubscription.onNext(frame());
+        serverSubscription.onComplete();
+
+        serverSubscription.drain();
+        verify(completable, never()).success();
+        Assert.assertFalse(serverSubscription.isTerminated());
+
+        accept();
+        serverSubscription.drain();
+        serverSubscription.drain();
+        verify(completable, times(1)).success();
+        verify(completable, never()).error(any(Throwable.class));
+        Assert.assertTrue(serverSubscription.isTerminated());
+    }
+
+    @Test
+    public void testErrorsWhenPublisherSendsMoreThanRequested() {
+        backPressure();
+        for (int i = 0; i < 32; i++) {
+            serverSubscription.onNext(frame());
+        }
+        Frame overflow = frame();
+        serverSubscription.onNext(overflow);
+
+        verify(subscription).cancel();
+        verify(overflow).release();
+        verify(completable, never()).error(any(Throwable.class));
+
+        serverSubscription.drain();
+        verify(completable).error(any(IllegalStateException.class));
+        Assert.assertTrue(serverSubscription.isTerminated());
+        Assert.assertFalse(serverSubscription.hasQueuedFrames());
+    }
+
+    @Test
+    public void testLeasesAreQueuedBeyondRequestedFrames() {
+        backPressure();
+        for (int i = 0; i < 32; i++) {
+            serverSubscription.onNext(frame());
+        }
+        Frame lease = frame(FrameType.LEASE);
+        serverSubscription.onNext(lease);
+        verify(subscription, never()).cancel();
+        verify(lease, never()).release();
+
+        accept();
+        Assert.assertEquals(33, serverSubscription.drain());
+        verify(lease).release();
+        // the lease wasn't requested, so only the 32 other frames are requested again
+        verify(subscription, times(2)).request(32);
+        verify(subscription, times(2)).request(anyInt());
+        verify(completable, never()).error(any(Throwable.class));
+    }
+
+    @Test
+    public void testDropsLeasesBeyondLeaseSlots() {
+        backPressure();
+        Frame first = frame(FrameType.LEASE);
+        Frame second = frame(FrameType.LEASE);
+        Frame third = frame(FrameType.LEASE);
+        serverSubscription.onNext(first);
+        serverSubscription.onNext(second);
+        serverSubscription.onNext(third);
+        verify(first, never()).release();
+        verify(second, never()).release();
+        verify(third).release();
+
+        accept();
+        Assert.assertEquals(2, serverSubscription.drain());
+
+        // the slots are free again once the leases have been sent
+        Frame fourth = frame(FrameType.LEASE);
+        serverSubscription.onNext(fourth);
+        verify(fourth, never()).release();
+        Assert.assertEquals(1, serverSubscription.drain());
+        verify(subscription, never()).cancel();
+        verify(completable, never()).error(any(Throwable.class));
+    }
+
+    @Test
+    public void testErrorReleasesQueuedFramesOnDrain() {
+        backPressure();
+        Frame first = frame();
+        Frame second = frame();
+        serverSubscription.onNext(first);
+        serverSubscription.onNext(second);
+
+        RuntimeException error = new RuntimeException();
+        serverSubscription.onError(error);
+        serverSubscription.onComplete();
+        verify(first, never()).release();
+
+        accept();
+        Assert.assertEquals(0, serverSubscription.drain());
+        verify(first).release();
+        verify(second).release();
+        verify(publication, never()).tryClaim(anyInt(), any(BufferClaim.class));
+
+        serverSubscription.drain();
+        verify(completable, times(1)).error(error);
+        verify(completable, never()).success();
+        Assert.assertTrue(serverSubscription.isTerminated());
+    }
+
+    private void backPressure() {
+        when(publication.tryClaim(anyInt(), any(BufferClaim.class))).thenReturn(Publication.BACK_PRESSURED);
+    }
+
+    private void accept() {
+        when(publication.tryClaim(anyInt(), any(BufferClaim.class))).thenAnswer(invocation -> {
+            final int length = (Integer) invocation.getArguments()[0];
+            final BufferClaim bufferClaim = (BufferClaim) invocation.getArguments()[1];
+            bufferClaim.wrap(new UnsafeBuffer(new byte[256]), 0, DataHeaderFlyweight.HEADER_LENGTH + length);
+            return 1L;
+        });
+    }
+
+    private static Frame frame() {
+        return frame(FrameType.NEXT);
+    }
+
+    private static Frame frame(FrameType type) {
+        Frame frame = mock(Frame.class);
+        when(frame.getByteBuffer()).thenReturn(ByteBuffer.allocate(16));
+        when(frame.length()).thenReturn(16);
+        when(frame.getType()).thenReturn(type);
+        return frame;
+    }
+}